@@ -0,0 +1,137 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+
+/**
+ * An algorithm file which failed to compile or load, as of a given content.
+ * Exposed via JMX, so only open types are used.
+ */
+public class AlgorithmFailure {
+
+    public enum Kind {
+
+        /**
+         * The source itself is broken, e.g. it does not compile or does not
+         * provide an algorithm. Retried once the content changes.
+         */
+        CONTENT,
+
+        /**
+         * Loading failed for reasons outside of the source, e.g. the algorithm
+         * constructor could not reach a resource. Retried with exponential
+         * backoff.
+         */
+        ENVIRONMENT
+    }
+
+    private final File file;
+
+    private final String blobId;
+
+    private final Kind kind;
+
+    private final String diagnostics;
+
+    private final int attempts;
+
+    private final long firstFailure;
+
+    private final long lastFailure;
+
+    private final long nextRetry;
+
+    AlgorithmFailure(File file, String blobId, Kind kind, String diagnostics, int attempts, long firstFailure,
+            long lastFailure, long nextRetry) {
+        this.file = file;
+        this.blobId = blobId;
+        this.kind = kind;
+        this.diagnostics = diagnostics;
+        this.attempts = attempts;
+        this.firstFailure = firstFailure;
+        this.lastFailure = lastFailure;
+        this.nextRetry = nextRetry;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    public String getPath() {
+        return file.getPath();
+    }
+
+    /**
+     * @return the git blob id of the failed content
+     */
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the compiler errors or the stack trace of the failure
+     */
+    public String getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * @return how often the content failed in a row
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getFirstFailure() {
+        return firstFailure;
+    }
+
+    public long getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * @return the time from which on a failure of the environment is retried,
+     * <code>0</code> if the content has to change
+     */
+    public long getNextRetry() {
+        return nextRetry;
+    }
+
+    @Override
+    public String toString() {
+        return "AlgorithmFailure [file=" + file + ", blobId=" + blobId + ", kind=" + kind + ", attempts=" + attempts + "]";
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Negative cache of algorithm files which failed to compile or load, keyed by
+ * the git blob id of their content. A broken file is not compiled again on
+ * every change event or reload, but only once its content changed. Failures
+ * of the environment are retried with exponential backoff.
+ */
+class AlgorithmFailures {
+
+    static final long INITIAL_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+
+    static final long MAX_BACKOFF = TimeUnit.HOURS.toMillis(1);
+
+    private final Map<File, AlgorithmFailure> failures = new ConcurrentHashMap<>();
+
+    private final LongSupplier clock;
+
+    AlgorithmFailures() {
+        this(System::currentTimeMillis);
+    }
+
+    AlgorithmFailures(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Records a failure. Attempts are counted as long as the content does not
+     * change.
+     *
+     * @param file the failed file
+     * @param blobId the blob id of the failed content
+     * @param kind what caused the failure
+     * @param diagnostics the compiler errors or the stack trace
+     * @return the recorded failure
+     */
+    AlgorithmFailure record(File file, ObjectId blobId, AlgorithmFailure.Kind kind, String diagnostics) {
+        long now = clock.getAsLong();
+        String id = blobId.name();
+        return failures.compute(file, (f, previous) -> {
+            boolean again = previous != null && previous.getBlobId().equals(id);
+            int attempts = again
+                    ? previous.getAttempts() + 1
+                    : 1;
+            long firstFailure = again
+                    ? previous.getFirstFailure()
+                    : now;
+            long nextRetry = kind == AlgorithmFailure.Kind.ENVIRONMENT
+                    ? now + getBackoff(attempts)
+                    : 0;
+            return new AlgorithmFailure(file, id, kind, diagnostics, attempts, firstFailure, now, nextRetry);
+        });
+    }
+
+    /**
+     * @return the backoff doubling with each attempt up to
+     * {@link #MAX_BACKOFF}
+     */
+    static long getBackoff(int attempts) {
+        int doublings = Math.min(attempts - 1, 62);
+        long backoff = INITIAL_BACKOFF << doublings;
+        return backoff > 0 && backoff < MAX_BACKOFF
+                ? backoff
+                : MAX_BACKOFF;
+    }
+
+    boolean contains(File file) {
+        return failures.containsKey(file);
+    }
+
+    /**
+     * @param file the file to load
+     * @param blobId the blob id of its current content
+     * @return <code>false</code> if the content failed before and neither
+     * changed nor is due for a retry
+     */
+    boolean isRetryDue(File file, ObjectId blobId) {
+        AlgorithmFailure failure = failures.get(file);
+        if (failure == null || !failure.getBlobId().equals(blobId.name())) {
+            return true;
+        }
+        return failure.getKind() == AlgorithmFailure.Kind.ENVIRONMENT
+                && failure.getNextRetry() <= clock.getAsLong();
+    }
+
+    /**
+     * @return the files whose failure of the environment is due for a retry
+     */
+    List<File> getDueRetries() {
+        long now = clock.getAsLong();
+        List<File> due = new ArrayList<>();
+        for (AlgorithmFailure failure : failures.values()) {
+            if (failure.getKind() == AlgorithmFailure.Kind.ENVIRONMENT && failure.getNextRetry() <= now) {
+                due.add(failure.getFile());
+            }
+        }
+        return due;
+    }
+
+    void remove(File file) {
+        failures.remove(file);
+    }
+
+    /**
+     * Forgets all failures.
+     *
+     * @return the files which failed
+     */
+    List<File> clear() {
+        List<File> files = new ArrayList<>(failures.keySet());
+        failures.keySet().removeAll(files);
+        return files;
+    }
+
+    boolean isEmpty() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return the current failures ordered by path
+     */
+    List<AlgorithmFailure> getFailures() {
+        List<AlgorithmFailure> current = new ArrayList<>(failures.values());
+        current.sort(Comparator.comparing(AlgorithmFailure::getPath));
+        return current;
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.n52.wps.server.IAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of instances of one algorithm, so that concurrent executions
+ * do not share mutable algorithm state. Instances are created on demand up
+ * to the maximum size, further borrowers wait until an instance is returned
+ * or discarded.
+ */
+public class AlgorithmInstancePool {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlgorithmInstancePool.class);
+
+    private static final long PREWARM_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final LinkedBlockingDeque<IAlgorithm> idle = new LinkedBlockingDeque<>();
+
+    /**
+     * One permit per instance which may be borrowed, released when an
+     * instance is given back or discarded.
+     */
+    private final Semaphore available;
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final Callable<IAlgorithm> factory;
+
+    private final int maxSize;
+
+    private final long timeout;
+
+    private final TimeUnit timeoutUnit;
+
+    /**
+     * @param factory creates a new instance of the algorithm
+     * @param maxSize the maximum number of instances
+     * @param timeout the maximum time to wait for an instance
+     * @param timeoutUnit the unit of the timeout
+     */
+    public AlgorithmInstancePool(Callable<IAlgorithm> factory, int maxSize, long timeout, TimeUnit timeoutUnit) {
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.available = new Semaphore(this.maxSize, true);
+        this.timeout = timeout;
+        this.timeoutUnit = timeoutUnit;
+    }
+
+    /**
+     * Creates instances until the pool is full.
+     *
+     * @throws IllegalStateException if an instance cannot be created
+     */
+    public void prewarm() {
+        while (tryReserve()) {
+            idle.offerFirst(create());
+        }
+    }
+
+    /**
+     * @return an idle instance, a new one if none is idle and the pool is not
+     * full yet
+     * @throws InterruptedException if interrupted while waiting for an
+     * instance to be returned
+     * @throws TimeoutException if no instance has been returned or discarded
+     * within the timeout
+     * @throws IllegalStateException if an instance cannot be created
+     */
+    public IAlgorithm borrow() throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + timeoutUnit.toNanos(timeout);
+        if ( !available.tryAcquire()) {
+            logger.debug("All {} instance(s) are busy, waiting for one to be returned.", maxSize);
+            if ( !available.tryAcquire(timeout, timeoutUnit)) {
+                throw busy();
+            }
+        }
+        try {
+            IAlgorithm instance = idle.pollFirst();
+            while (instance == null) {
+                if (tryReserve()) {
+                    return create();
+                }
+                // holding a permit, so the instance missing is being prewarmed
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw busy();
+                }
+                instance = idle.pollFirst(Math.min(remaining, PREWARM_POLL_NANOS), TimeUnit.NANOSECONDS);
+            }
+            return instance;
+        } catch (InterruptedException | TimeoutException | RuntimeException e) {
+            available.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @param instance the borrowed instance to make available again
+     */
+    public void giveBack(IAlgorithm instance) {
+        idle.offerFirst(instance);
+        available.release();
+    }
+
+    /**
+     * Drops a borrowed instance, e.g. as its state is unknown after a failed
+     * execution. A waiting borrower creates a new instance in its place.
+     *
+     * @param instance the borrowed instance to drop
+     */
+    public void discard(IAlgorithm instance) {
+        created.decrementAndGet();
+        available.release();
+    }
+
+    /**
+     * @return the number of instances currently not borrowed
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of instances created and not discarded
+     */
+    public int getSize() {
+        return created.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private TimeoutException busy() {
+        return new TimeoutException("All " + maxSize + " instance(s) have been busy for "
+                + timeout + " " + timeoutUnit.toString().toLowerCase());
+    }
+
+    private boolean tryReserve() {
+        int current;
+        do {
+            current = created.get();
+            if (current >= maxSize) {
+                return false;
+            }
+        } while ( !created.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private IAlgorithm create() {
+        try {
+            return factory.call();
+        } catch (Exception e) {
+            created.decrementAndGet();
+            throw new IllegalStateException("Could not create algorithm instance", e);
+        }
+    }
+
+}
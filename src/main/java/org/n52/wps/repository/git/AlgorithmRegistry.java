@@ -0,0 +1,236 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.n52.wps.server.IAlgorithm;
+import org.n52.wps.server.ProcessDescription;
+
+/**
+ * Immutable snapshot of all registered algorithms. Readers access a snapshot
+ * without locking, writers derive the next snapshot via {@link #toBuilder()}
+ * and publish it as a whole.
+ */
+public final class AlgorithmRegistry {
+
+    public static final AlgorithmRegistry EMPTY = new AlgorithmRegistry(new HashMap<>(), new HashMap<>(), 0);
+
+    private final Map<String, RegisteredAlgorithm> algorithms;
+
+    private final Map<File, String> file2Wkn;
+
+    private final Set<String> algorithmNames;
+
+    private final long generation;
+
+    private final long created = System.currentTimeMillis();
+
+    private AlgorithmRegistry(Map<String, RegisteredAlgorithm> algorithms, Map<File, String> file2Wkn, long generation) {
+        this.algorithms = algorithms;
+        this.file2Wkn = file2Wkn;
+        this.algorithmNames = Collections.unmodifiableSet(algorithms.keySet());
+        this.generation = generation;
+    }
+
+    /**
+     * @return the time this snapshot has been built, in milliseconds since
+     * the epoch
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * @return the generation of this snapshot, increasing with each published
+     * snapshot
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public boolean containsAlgorithm(String identifier) {
+        return algorithms.containsKey(identifier);
+    }
+
+    public IAlgorithm getAlgorithm(String identifier) {
+        RegisteredAlgorithm registered = algorithms.get(identifier);
+        return registered != null
+                ? registered.getAlgorithm()
+                : null;
+    }
+
+    public ProcessDescription getProcessDescription(String identifier) {
+        RegisteredAlgorithm registered = algorithms.get(identifier);
+        return registered != null
+                ? registered.getDescription()
+                : null;
+    }
+
+    /**
+     * @param identifier the algorithm identifier
+     * @return the class loader of the algorithm or <code>null</code> if no
+     * such algorithm is registered
+     */
+    public ClassLoader getClassLoader(String identifier) {
+        RegisteredAlgorithm registered = algorithms.get(identifier);
+        return registered != null
+                ? registered.getClassLoader()
+                : null;
+    }
+
+    /**
+     * @return an unmodifiable view of all algorithm identifiers
+     */
+    public Set<String> getAlgorithmNames() {
+        return algorithmNames;
+    }
+
+    /**
+     * @param file the file an algorithm has been loaded from
+     * @return the identifier of the algorithm or <code>null</code> if the file
+     * has not been registered
+     */
+    public String getAlgorithmName(File file) {
+        return file2Wkn.get(file);
+    }
+
+    /**
+     * @param identifier the algorithm identifier
+     * @return the registered algorithm or <code>null</code> if no such
+     * algorithm is registered
+     */
+    public RegisteredAlgorithm getRegisteredAlgorithm(String identifier) {
+        return algorithms.get(identifier);
+    }
+
+    /**
+     * @param file the file an algorithm has been loaded from
+     * @return the algorithm loaded from the file or <code>null</code> if the
+     * file has not been registered
+     */
+    public RegisteredAlgorithm getRegisteredAlgorithm(File file) {
+        String identifier = file2Wkn.get(file);
+        return identifier != null
+                ? algorithms.get(identifier)
+                : null;
+    }
+
+    /**
+     * @return an unmodifiable view of all registered algorithms
+     */
+    public Collection<RegisteredAlgorithm> getRegisteredAlgorithms() {
+        return Collections.unmodifiableCollection(algorithms.values());
+    }
+
+    /**
+     * @return an unmodifiable view of all files algorithms have been loaded
+     * from
+     */
+    public Set<File> getFiles() {
+        return Collections.unmodifiableSet(file2Wkn.keySet());
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * Builds the next snapshot from a copy of the previous one.
+     */
+    public static class Builder {
+
+        private final Map<String, RegisteredAlgorithm> algorithms;
+
+        private final Map<File, String> file2Wkn;
+
+        private final long generation;
+
+        private Builder(AlgorithmRegistry previous) {
+            algorithms = new HashMap<>(previous.algorithms);
+            file2Wkn = new HashMap<>(previous.file2Wkn);
+            generation = previous.generation + 1;
+        }
+
+        /**
+         * @param identifier the algorithm identifier
+         * @return the file the algorithm has been loaded from or
+         * <code>null</code> if no such algorithm is registered
+         */
+        public File getFile(String identifier) {
+            RegisteredAlgorithm registered = algorithms.get(identifier);
+            return registered != null
+                    ? registered.getFile()
+                    : null;
+        }
+
+        /**
+         * Registers an algorithm, replacing the algorithm previously loaded from
+         * the same file as well as any algorithm with the same identifier.
+         *
+         * @param registered the algorithm to register
+         * @return this builder
+         */
+        public Builder put(RegisteredAlgorithm registered) {
+            String identifier = registered.getIdentifier();
+            String previousIdentifier = file2Wkn.put(registered.getFile(), identifier);
+            if (previousIdentifier != null && !previousIdentifier.equals(identifier)) {
+                algorithms.remove(previousIdentifier);
+            }
+            RegisteredAlgorithm replaced = algorithms.put(identifier, registered);
+            if (replaced != null && !replaced.getFile().equals(registered.getFile())) {
+                file2Wkn.remove(replaced.getFile());
+            }
+            return this;
+        }
+
+        /**
+         * @param file the file an algorithm has been loaded from
+         * @return the identifier of the removed algorithm or <code>null</code>
+         * if the file has not been registered
+         */
+        public String remove(File file) {
+            String identifier = file2Wkn.remove(file);
+            if (identifier != null) {
+                algorithms.remove(identifier);
+            }
+            return identifier;
+        }
+
+        public AlgorithmRegistry build() {
+            return new AlgorithmRegistry(new HashMap<>(algorithms), new HashMap<>(file2Wkn), generation);
+        }
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An additional repository algorithms are loaded from. Additional sources are
+ * cloned bare and compiled straight from the object database. The sources are
+ * ordered by precedence: if several sources provide an algorithm with the same
+ * identifier, the one of the source with the lower precedence value wins.
+ */
+public class AlgorithmSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlgorithmSource.class);
+
+    private final int precedence;
+
+    private final String remoteUrl;
+
+    private final String branch;
+
+    private final String path;
+
+    private final File directory;
+
+    private Repository repository;
+
+    private GitObjectSourceTree sourceTree;
+
+    private JavaAlgorithmCompiler compiler;
+
+    /**
+     * @param precedence the precedence, lower values win
+     * @param remoteUrl the URL of the remote repository
+     * @param branch the branch to track
+     * @param path the directory within the repository to load algorithms
+     * from, an empty string for the whole repository
+     * @param directory the local directory to clone the bare repository into
+     */
+    public AlgorithmSource(int precedence, String remoteUrl, String branch, String path, File directory) {
+        this.precedence = precedence;
+        this.remoteUrl = remoteUrl;
+        this.branch = branch;
+        this.path = path;
+        this.directory = directory;
+    }
+
+    /**
+     * Parses sources separated by <code>;</code> or line breaks. Each source
+     * is given as <code>&lt;url&gt; [&lt;branch&gt; [&lt;path&gt;]]</code>.
+     *
+     * @param sources the sources to parse
+     * @param baseDirectory the directory to clone the sources into
+     * @param firstPrecedence the precedence of the first source
+     * @param defaultBranch the branch of sources not specifying one
+     * @return the sources in order of precedence
+     */
+    public static List<AlgorithmSource> parse(String sources, File baseDirectory, int firstPrecedence, String defaultBranch) {
+        List<AlgorithmSource> parsed = new ArrayList<>();
+        if (sources == null) {
+            return parsed;
+        }
+        for (String source : sources.split("[;\\r\\n]+")) {
+            String[] parts = source.trim().split("\\s+");
+            if (parts[0].isEmpty()) {
+                continue;
+            }
+            String url = parts[0];
+            String branch = parts.length > 1 ? parts[1] : defaultBranch;
+            String path = parts.length > 2 ? parts[2].replaceAll("^/+|/+$", "") : "";
+            // named by URL and branch, so that the directory does not depend on the order of sources
+            String name = GitBlobs.idOf((url + "#" + branch).getBytes(StandardCharsets.UTF_8)).name().substring(0, 12);
+            parsed.add(new AlgorithmSource(firstPrecedence + parsed.size(), url, branch, path, new File(baseDirectory, name)));
+        }
+        return parsed;
+    }
+
+    /**
+     * Clones the repository or fetches into an existing clone and sets up the
+     * compiler reading from the tree of the tracked branch.
+     *
+     * @param bytecodeCacheDirectory the bytecode cache directory
+     * @throws IOException if the repository cannot be read
+     * @throws GitAPIException if cloning or fetching fails
+     */
+    public void init(File bytecodeCacheDirectory) throws IOException, GitAPIException {
+        init(bytecodeCacheDirectory, null);
+    }
+
+    /**
+     * @param bytecodeCacheDirectory the bytecode cache directory
+     * @param compileWorkers the workers to compile on, <code>null</code> to
+     * compile within this JVM
+     * @throws IOException if the repository cannot be read
+     * @throws GitAPIException if cloning or fetching fails
+     * @see #init(File)
+     */
+    public void init(File bytecodeCacheDirectory, CompileWorkerPool compileWorkers) throws IOException, GitAPIException {
+        repository = new FileRepository(directory);
+        if (repository.exactRef(Constants.HEAD) == null || repository.resolve(Constants.HEAD) == null) {
+            repository.close();
+            logger.info("Cloning {} ({}) into {}", remoteUrl, branch, directory);
+            Git.cloneRepository()
+                    .setURI(remoteUrl)
+                    .setDirectory(directory)
+                    .setBare(true)
+                    .setBranch(Constants.R_HEADS + branch)
+                    .call()
+                    .close();
+            repository = new FileRepository(directory);
+        } else {
+            new Git(repository).fetch().call();
+        }
+        if ( !branch.equals(repository.getBranch())) {
+            RefUpdate headUpdate = repository.updateRef(Constants.HEAD);
+            headUpdate.link(Constants.R_HEADS + branch);
+        }
+        sourceTree = new GitObjectSourceTree(repository, directory, resolveTree());
+        JavaAlgorithmCompiler delegate = compileWorkers != null
+                ? new WorkerJavaCompiler(sourceTree, compileWorkers)
+                : new InMemoryJavaCompiler(sourceTree);
+        compiler = new CachingJavaCompiler(delegate, bytecodeCacheDirectory, sourceTree);
+    }
+
+    /**
+     * @param filenamePattern the pattern file names have to match
+     * @return the algorithm files within the path of this source
+     * @throws IOException if the tree cannot be read
+     */
+    public List<File> findAlgorithmFiles(Pattern filenamePattern) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (File file : sourceTree.findFiles(filenamePattern)) {
+            if (isWithinPath(toPath(file))) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Fetches and moves the tree algorithms are read from to the tree of the
+     * tracked branch.
+     *
+     * @return the changes between the previous and the new tree within the
+     * path of this source
+     * @throws IOException if the repository cannot be read
+     * @throws GitAPIException if fetching fails
+     */
+    public Collection<DiffEntry> update() throws IOException, GitAPIException {
+        new Git(repository).fetch().call();
+        ObjectId loaded = sourceTree.getTree();
+        ObjectId current = resolveTree();
+        List<DiffEntry> changes = new ArrayList<>();
+        if (current.equals(loaded)) {
+            return changes;
+        }
+        try (ObjectReader reader = repository.newObjectReader();
+                TreeWalk walk = new TreeWalk(reader)) {
+            CanonicalTreeParser oldTree = new CanonicalTreeParser();
+            oldTree.reset(reader, loaded);
+            CanonicalTreeParser newTree = new CanonicalTreeParser();
+            newTree.reset(reader, current);
+            walk.addTree(oldTree);
+            walk.addTree(newTree);
+            walk.setRecursive(true);
+            walk.setFilter(path.isEmpty()
+                    ? TreeFilter.ANY_DIFF
+                    : AndTreeFilter.create(PathFilter.create(path), TreeFilter.ANY_DIFF));
+            changes.addAll(DiffEntry.scan(walk));
+        }
+        sourceTree.setTree(current);
+        logger.info("Source {} ({}) moved to tree {} with {} changed file(s).", remoteUrl, branch, current.name(), changes.size());
+        return changes;
+    }
+
+    private ObjectId resolveTree() throws IOException {
+        ObjectId tree = repository.resolve(Constants.R_HEADS + branch + "^{tree}");
+        if (tree == null) {
+            throw new IOException("Branch '" + branch + "' does not exist in " + remoteUrl);
+        }
+        return tree;
+    }
+
+    private boolean isWithinPath(String relativePath) {
+        return path.isEmpty() || relativePath.startsWith(path + "/");
+    }
+
+    private String toPath(File file) {
+        return directory.getAbsoluteFile().toPath()
+                .relativize(file.getAbsoluteFile().toPath())
+                .toString()
+                .replace(File.separatorChar, '/');
+    }
+
+    /**
+     * @param file a file of this source
+     * @return the blob id of the file in the current tree or <code>null</code>
+     * if there is no such file
+     * @throws IOException if the tree cannot be read
+     */
+    public ObjectId getBlobId(File file) throws IOException {
+        return sourceTree.getBlobId(file);
+    }
+
+    /**
+     * @param file a file
+     * @return <code>true</code> if the file belongs to this source
+     */
+    public boolean contains(File file) {
+        return file.getAbsoluteFile().toPath().startsWith(directory.getAbsoluteFile().toPath());
+    }
+
+    public int getPrecedence() {
+        return precedence;
+    }
+
+    public String getRemoteUrl() {
+        return remoteUrl;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * @return the compiler reading from the tree of the tracked branch,
+     * <code>null</code> if this source has not been initialized
+     */
+    public JavaAlgorithmCompiler getCompiler() {
+        return compiler;
+    }
+
+    /**
+     * @return <code>true</code> if this source has been initialized
+     * successfully
+     */
+    public boolean isInitialized() {
+        return compiler != null;
+    }
+
+    public void close() {
+        if (repository != null) {
+            repository.close();
+            repository = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return remoteUrl + " (" + branch + (path.isEmpty() ? "" : ", " + path) + ")";
+    }
+
+}
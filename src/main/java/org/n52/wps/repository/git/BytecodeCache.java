@@ -0,0 +1,171 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of compiled bytecode, kept outside the working copy. An
+ * entry is addressed by the git blob id of its source within a directory named
+ * by the compiler fingerprint, so any node or restart seeing the same source
+ * content can reuse the compiled classes.
+ */
+public class BytecodeCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(BytecodeCache.class);
+
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path directory;
+
+    public BytecodeCache(File cacheDirectory, String fingerprint) {
+        this.directory = cacheDirectory.toPath().resolve(fingerprint);
+    }
+
+    /**
+     * @param blobId the blob id of the source
+     * @return the cached entry or <code>null</code> if the source has not
+     * been compiled yet
+     */
+    public Entry load(ObjectId blobId) {
+        Path entryFile = toEntryFile(blobId);
+        if ( !Files.isRegularFile(entryFile)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(entryFile);
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            Map<String, ObjectId> dependencies = new HashMap<>();
+            int dependencyCount = data.readInt();
+            for (int i = 0; i < dependencyCount; i++) {
+                String path = data.readUTF();
+                dependencies.put(path, ObjectId.fromString(data.readUTF()));
+            }
+            Map<String, byte[]> classes = new HashMap<>();
+            int classCount = data.readInt();
+            for (int i = 0; i < classCount; i++) {
+                String className = data.readUTF();
+                byte[] bytecode = new byte[data.readInt()];
+                data.readFully(bytecode);
+                classes.put(className, bytecode);
+            }
+            return new Entry(classes, dependencies);
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable cache entry {}", entryFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the classes compiled from a source. Entries are written to a
+     * temporary file and moved into place, so concurrent readers never see
+     * partial entries.
+     *
+     * @param blobId the blob id of the source
+     * @param classes the bytecode compiled from the source by binary class name
+     * @param dependencies blob ids of all other sources the classes have been
+     * compiled against, directly or indirectly, by path relative to the source
+     * root
+     */
+    public void store(ObjectId blobId, Map<String, byte[]> classes, Map<String, ObjectId> dependencies) {
+        Path entryFile = toEntryFile(blobId);
+        try {
+            Files.createDirectories(entryFile.getParent());
+            Path tmpFile = Files.createTempFile(entryFile.getParent(), blobId.name(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmpFile);
+                    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+                data.writeInt(FORMAT_VERSION);
+                data.writeInt(dependencies.size());
+                for (Map.Entry<String, ObjectId> dependency : dependencies.entrySet()) {
+                    data.writeUTF(dependency.getKey());
+                    data.writeUTF(dependency.getValue().name());
+                }
+                data.writeInt(classes.size());
+                for (Map.Entry<String, byte[]> compiledClass : classes.entrySet()) {
+                    data.writeUTF(compiledClass.getKey());
+                    data.writeInt(compiledClass.getValue().length);
+                    data.write(compiledClass.getValue());
+                }
+            }
+            try {
+                Files.move(tmpFile, entryFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, entryFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not write cache entry {}", entryFile, e);
+        }
+    }
+
+    private Path toEntryFile(ObjectId blobId) {
+        String name = blobId.name();
+        return directory.resolve(name.substring(0, 2)).resolve(name.substring(2));
+    }
+
+    public static class Entry {
+
+        private final Map<String, byte[]> classes;
+
+        private final Map<String, ObjectId> dependencies;
+
+        Entry(Map<String, byte[]> classes, Map<String, ObjectId> dependencies) {
+            this.classes = Collections.unmodifiableMap(classes);
+            this.dependencies = Collections.unmodifiableMap(dependencies);
+        }
+
+        public Map<String, byte[]> getClasses() {
+            return classes;
+        }
+
+        public Map<String, ObjectId> getDependencies() {
+            return dependencies;
+        }
+    }
+
+}
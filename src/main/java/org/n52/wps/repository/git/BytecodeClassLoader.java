@@ -0,0 +1,73 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.util.Map;
+
+/**
+ * Defines classes from bytecode held in memory. Classes not contained are
+ * delegated to the parent class loader. Several loaders may share the same
+ * bytecode, each defining its own classes.
+ */
+public class BytecodeClassLoader extends ClassLoader {
+
+    private final Map<String, byte[]> classes;
+
+    /**
+     * @param parent the parent class loader
+     * @param classes the bytecode by binary class name, must not be modified
+     * afterwards
+     */
+    public BytecodeClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+        super(parent);
+        this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytecode = classes.get(name);
+        if (bytecode == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytecode, 0, bytecode.length);
+    }
+
+    public boolean containsClass(String name) {
+        return classes.containsKey(name);
+    }
+
+    /**
+     * @return the bytecode by binary class name, shared with all loaders
+     * created for the same classes
+     */
+    public Map<String, byte[]> getClasses() {
+        return classes;
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.util.concurrent.Callable;
+
+import org.n52.wps.server.ProcessDescription;
+
+/**
+ * Process description of an algorithm, built on first access.
+ * <p>
+ * A cached description only depends on the source of its algorithm, so it is
+ * handed over to the algorithm reloaded from an unchanged source blob.
+ */
+public class CachedProcessDescription {
+
+    private volatile Callable<ProcessDescription> factory;
+
+    private volatile ProcessDescription description;
+
+    /**
+     * @param factory builds the description, e.g. by asking the algorithm
+     */
+    public CachedProcessDescription(Callable<ProcessDescription> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @param description the description, already built
+     */
+    public CachedProcessDescription(ProcessDescription description) {
+        this.description = description;
+    }
+
+    /**
+     * @return the description, built on first access
+     * @throws IllegalStateException if the description cannot be built or is
+     * not valid
+     */
+    public ProcessDescription get() {
+        ProcessDescription current = description;
+        if (current == null) {
+            synchronized (this) {
+                if (description == null) {
+                    try {
+                        description = factory.call();
+                        // the factory may reference the algorithm and thus its class loader
+                        factory = null;
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Could not build process description: " + e.getMessage(), e);
+                    }
+                }
+                current = description;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return <code>true</code> if the description has been built
+     */
+    public boolean isBuilt() {
+        return description != null;
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Looks up sources in a {@link BytecodeCache} before compiling them. Only
+ * sources whose content (or whose dependencies' content) has not been compiled
+ * before are passed to the delegate compiler. The dependencies of each source
+ * are determined from the compiled classes and included in the result.
+ */
+public class CachingJavaCompiler implements JavaAlgorithmCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingJavaCompiler.class);
+
+    private final JavaAlgorithmCompiler delegate;
+
+    private final BytecodeCache cache;
+
+    private final SourceTree sourceTree;
+
+    private final Path rootPath;
+
+    /**
+     * @param delegate the compiler to use for cache misses
+     * @param cacheDirectory the cache directory, must not be within the working
+     * copy
+     * @param sourceRoot the root directory dependency paths are relative to
+     */
+    public CachingJavaCompiler(JavaAlgorithmCompiler delegate, File cacheDirectory, File sourceRoot) {
+        this(delegate, cacheDirectory, new WorkingCopySourceTree(sourceRoot));
+    }
+
+    /**
+     * @param delegate the compiler to use for cache misses
+     * @param cacheDirectory the cache directory, must not be within the working
+     * copy
+     * @param sourceTree the tree sources and dependencies are read from
+     */
+    public CachingJavaCompiler(JavaAlgorithmCompiler delegate, File cacheDirectory, SourceTree sourceTree) {
+        this.delegate = delegate;
+        this.cache = new BytecodeCache(cacheDirectory, delegate.getFingerprint());
+        this.sourceTree = sourceTree;
+        this.rootPath = sourceTree.getRoot().getAbsoluteFile().toPath();
+    }
+
+    @Override
+    public CompilationResult compile(Collection<File> sources) {
+        CompilationResult result = new CompilationResult();
+        List<File> misses = new ArrayList<>();
+        // sources shared as dependency by many cache entries are hashed once
+        Map<String, ObjectId> blobIds = new HashMap<>();
+        for (File source : sources) {
+            try {
+                ObjectId blobId = getBlobId(toRelativePath(source), blobIds);
+                if (blobId == null) {
+                    result.addError(source, "Source not found: " + source);
+                    continue;
+                }
+                result.addBlobId(source, blobId);
+                if ( !loadFromCache(source, blobId, blobIds, result)) {
+                    misses.add(source);
+                }
+            } catch (IOException e) {
+                result.addError(source, "Could not read source: " + e.getMessage());
+            }
+        }
+        logger.debug("Bytecode cache: {} hit(s), {} miss(es)", sources.size() - misses.size(), misses.size());
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        CompilationResult compiled = delegate.compile(misses);
+        result.addAll(compiled);
+
+        Map<File, Set<File>> dependencies = SourceDependencies.of(compiled, sourceTree);
+        dependencies.forEach(result::addDependencies);
+
+        Map<File, Map<String, byte[]>> classesBySource = new HashMap<>();
+        for (Map.Entry<String, byte[]> compiledClass : compiled.getClasses().entrySet()) {
+            File source = compiled.getSourceOf(compiledClass.getKey());
+            if (source != null) {
+                classesBySource.computeIfAbsent(source, f -> new HashMap<>())
+                        .put(compiledClass.getKey(), compiledClass.getValue());
+            }
+        }
+        // sources not requested but compiled as they have been referenced
+        Set<File> referencedSources = new HashSet<>(classesBySource.keySet());
+        referencedSources.removeAll(misses);
+        for (File referencedSource : referencedSources) {
+            try {
+                ObjectId blobId = getBlobId(toRelativePath(referencedSource), blobIds);
+                if (blobId != null) {
+                    result.addBlobId(referencedSource, blobId);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read referenced source {}", referencedSource, e);
+            }
+        }
+
+        for (Map.Entry<File, Map<String, byte[]>> sourceClasses : classesBySource.entrySet()) {
+            File source = sourceClasses.getKey();
+            ObjectId blobId = result.getBlobId(source);
+            Map<String, ObjectId> sourceDependencies = getTransitiveDependencies(source, dependencies, result);
+            if (blobId != null && !compiled.hasErrors(source) && sourceDependencies != null) {
+                cache.store(blobId, sourceClasses.getValue(), sourceDependencies);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the blob ids of all sources the given source depends on,
+     * directly or indirectly, by relative path or <code>null</code> if the
+     * blob id of a dependency is unknown
+     */
+    private Map<String, ObjectId> getTransitiveDependencies(File source, Map<File, Set<File>> dependencies,
+            CompilationResult result) {
+        Map<String, ObjectId> transitiveDependencies = new HashMap<>();
+        Set<File> visited = new HashSet<>();
+        visited.add(source);
+        Deque<File> pending = new ArrayDeque<>(dependencies.getOrDefault(source, Collections.<File>emptySet()));
+        while ( !pending.isEmpty()) {
+            File dependency = pending.pop();
+            if ( !visited.add(dependency)) {
+                continue;
+            }
+            ObjectId blobId = result.getBlobId(dependency);
+            if (blobId == null) {
+                return null;
+            }
+            transitiveDependencies.put(toRelativePath(dependency), blobId);
+            pending.addAll(dependencies.getOrDefault(dependency, Collections.<File>emptySet()));
+        }
+        return transitiveDependencies;
+    }
+
+    /**
+     * Loads the classes of a source and of all its dependencies, if neither
+     * the source nor any of its dependencies changed since being cached.
+     */
+    private boolean loadFromCache(File source, ObjectId blobId, Map<String, ObjectId> blobIds, CompilationResult result)
+            throws IOException {
+        BytecodeCache.Entry entry = cache.load(blobId);
+        if (entry == null) {
+            return false;
+        }
+        Map<String, BytecodeCache.Entry> dependencyEntries = new HashMap<>();
+        for (Map.Entry<String, ObjectId> dependency : entry.getDependencies().entrySet()) {
+            if ( !dependency.getValue().equals(getBlobId(dependency.getKey(), blobIds))) {
+                return false;
+            }
+            BytecodeCache.Entry dependencyEntry = cache.load(dependency.getValue());
+            if (dependencyEntry == null) {
+                return false;
+            }
+            dependencyEntries.put(dependency.getKey(), dependencyEntry);
+        }
+        entry.getClasses().forEach((className, bytecode) -> result.addClass(className, source, bytecode));
+        result.addDependencies(source, toFiles(entry.getDependencies().keySet()));
+        dependencyEntries.forEach((path, dependencyEntry) -> {
+            File dependency = toFile(path);
+            result.addClasses(dependencyEntry.getClasses());
+            result.addBlobId(dependency, entry.getDependencies().get(path));
+            result.addDependencies(dependency, toFiles(dependencyEntry.getDependencies().keySet()));
+        });
+        return true;
+    }
+
+    /**
+     * @param relativePath the path relative to the source root
+     * @param blobIds the blob ids already looked up, by relative path
+     * @return the blob id of the source or <code>null</code> if it does not
+     * exist
+     */
+    private ObjectId getBlobId(String relativePath, Map<String, ObjectId> blobIds) throws IOException {
+        if (blobIds.containsKey(relativePath)) {
+            return blobIds.get(relativePath);
+        }
+        ObjectId blobId = sourceTree.getBlobId(new File(sourceTree.getRoot(), relativePath));
+        blobIds.put(relativePath, blobId);
+        return blobId;
+    }
+
+    private File toFile(String relativePath) {
+        return new File(sourceTree.getRoot(), relativePath);
+    }
+
+    private List<File> toFiles(Collection<String> relativePaths) {
+        List<File> files = new ArrayList<>();
+        relativePaths.forEach(relativePath -> files.add(toFile(relativePath)));
+        return files;
+    }
+
+    private String toRelativePath(File source) {
+        return rootPath
+                .relativize(source.getAbsoluteFile().toPath())
+                .toString()
+                .replace(File.separatorChar, '/');
+    }
+
+    @Override
+    public String getFingerprint() {
+        return delegate.getFingerprint();
+    }
+
+}
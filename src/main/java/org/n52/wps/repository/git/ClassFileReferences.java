@@ -0,0 +1,169 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The classes a class file refers to, read from its constant pool: classes
+ * referenced by code, super types and all types within field, method and
+ * generic signatures or annotations. Compile time constants of other classes
+ * are inlined by the compiler and leave no reference, so whether a class
+ * declares constants itself is recorded as well.
+ */
+final class ClassFileReferences {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final Pattern TYPE_DESCRIPTOR = Pattern.compile("L([\\w/$]+)[;<]");
+
+    private final Set<String> referencedClasses;
+
+    private final boolean declaresConstants;
+
+    private ClassFileReferences(Set<String> referencedClasses, boolean declaresConstants) {
+        this.referencedClasses = Collections.unmodifiableSet(referencedClasses);
+        this.declaresConstants = declaresConstants;
+    }
+
+    /**
+     * @param bytecode the class file
+     * @return the references of the class
+     * @throws IOException if the bytecode is no valid class file
+     */
+    static ClassFileReferences of(byte[] bytecode) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytecode));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        int constantCount = in.readUnsignedShort();
+        String[] utf8 = new String[constantCount];
+        int[] classNameIndexes = new int[constantCount];
+        for (int i = 1; i < constantCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classNameIndexes[i] = in.readUnsignedShort();
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    in.skipBytes(2);
+                    break;
+                case 15: // MethodHandle
+                    in.skipBytes(3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    in.skipBytes(4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    in.skipBytes(8);
+                    // takes two entries
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        Set<String> referencedClasses = new HashSet<>();
+        for (int i = 1; i < constantCount; i++) {
+            String name = classNameIndexes[i] > 0 ? utf8[classNameIndexes[i]] : null;
+            if (name != null && !name.startsWith("[")) {
+                referencedClasses.add(name.replace('/', '.'));
+            }
+        }
+        for (String value : utf8) {
+            if (value != null) {
+                // descriptors and signatures, array class names included
+                Matcher matcher = TYPE_DESCRIPTOR.matcher(value);
+                while (matcher.find()) {
+                    referencedClasses.add(matcher.group(1).replace('/', '.'));
+                }
+            }
+        }
+
+        in.skipBytes(2); // access flags
+        referencedClasses.remove(utf8[classNameIndexes[in.readUnsignedShort()]].replace('/', '.'));
+        in.skipBytes(2); // super class, referenced as class constant
+        in.skipBytes(2 * in.readUnsignedShort()); // interfaces, referenced as class constants
+
+        boolean declaresConstants = false;
+        int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            in.skipBytes(6); // access flags, name and descriptor
+            int attributeCount = in.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++) {
+                String attributeName = utf8[in.readUnsignedShort()];
+                in.skipBytes(in.readInt());
+                declaresConstants |= "ConstantValue".equals(attributeName);
+            }
+        }
+        return new ClassFileReferences(referencedClasses, declaresConstants);
+    }
+
+    /**
+     * @return the binary names of the classes referenced, the class itself
+     * excluded
+     */
+    Set<String> getReferencedClasses() {
+        return referencedClasses;
+    }
+
+    /**
+     * @return <code>true</code> if the class declares constants other classes
+     * may have inlined
+     */
+    boolean declaresConstants() {
+        return declaresConstants;
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Outcome of compiling a batch of algorithm sources. Holds the generated
+ * bytecode by binary class name, the source each class was generated from,
+ * the error diagnostics of sources which could not be compiled and the
+ * sources each source depends on.
+ */
+public class CompilationResult {
+
+    private final Map<String, byte[]> classes = new HashMap<>();
+
+    private final Map<String, File> classSources = new HashMap<>();
+
+    private final Map<File, List<String>> errors = new HashMap<>();
+
+    private final Map<File, ObjectId> blobIds = new HashMap<>();
+
+    private final Map<File, Set<File>> dependencies = new HashMap<>();
+
+    void addClass(String className, File source, byte[] bytecode) {
+        classes.put(className, bytecode);
+        if (source != null) {
+            classSources.put(className, source);
+        }
+    }
+
+    /**
+     * Adds classes which do not originate from a source of the batch, e.g.
+     * cached classes of referenced sources.
+     */
+    void addClasses(Map<String, byte[]> bytecode) {
+        bytecode.forEach(classes::putIfAbsent);
+    }
+
+    void addError(File source, String message) {
+        errors.computeIfAbsent(source, f -> new ArrayList<>()).add(message);
+    }
+
+    void addBlobId(File source, ObjectId blobId) {
+        blobIds.put(source, blobId);
+    }
+
+    void addDependencies(File source, Collection<File> sourceDependencies) {
+        dependencies.computeIfAbsent(source, f -> new HashSet<>()).addAll(sourceDependencies);
+    }
+
+    void addAll(CompilationResult other) {
+        classes.putAll(other.classes);
+        classSources.putAll(other.classSources);
+        other.errors.forEach((source, messages) -> messages.forEach(message -> addError(source, message)));
+        blobIds.putAll(other.blobIds);
+        other.dependencies.forEach(this::addDependencies);
+    }
+
+    /**
+     * @return the bytecode of all compiled classes by binary class name
+     */
+    public Map<String, byte[]> getClasses() {
+        return Collections.unmodifiableMap(classes);
+    }
+
+    /**
+     * @param source the source file
+     * @return the binary names of all classes generated from the given source
+     */
+    public Collection<String> getClassNamesOf(File source) {
+        List<String> classNames = new ArrayList<>();
+        for (Map.Entry<String, File> entry : classSources.entrySet()) {
+            if (entry.getValue().equals(source)) {
+                classNames.add(entry.getKey());
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * Determines the top level class declared in the given source, i.e. the
+     * class named like the file.
+     *
+     * @param source the source file
+     * @return the binary name of the top level class or <code>null</code> if
+     * no such class has been compiled
+     */
+    public String getPrimaryClassName(File source) {
+        String simpleName = source.getName().replace(".java", "");
+        for (String className : getClassNamesOf(source)) {
+            String candidate = className.substring(className.lastIndexOf('.') + 1);
+            if (candidate.equals(simpleName)) {
+                return className;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param className the binary class name
+     * @return the source the class has been generated from or
+     * <code>null</code> if unknown
+     */
+    public File getSourceOf(String className) {
+        return classSources.get(className);
+    }
+
+    /**
+     * @param source the source file
+     * @return the git blob id of the compiled source content or
+     * <code>null</code> if unknown
+     */
+    public ObjectId getBlobId(File source) {
+        return blobIds.get(source);
+    }
+
+    /**
+     * @return the git blob ids of the compiled sources, including those
+     * compiled as they have been referenced
+     */
+    public Map<File, ObjectId> getBlobIds() {
+        return Collections.unmodifiableMap(blobIds);
+    }
+
+    /**
+     * @param source the source file
+     * @return the sources the given source depends on, i.e. has been compiled
+     * against. Empty if unknown, dependencies are determined by the
+     * {@link CachingJavaCompiler}.
+     */
+    public Set<File> getDependencies(File source) {
+        return dependencies.containsKey(source)
+                ? Collections.unmodifiableSet(dependencies.get(source))
+                : Collections.<File>emptySet();
+    }
+
+    public boolean hasErrors(File source) {
+        return errors.containsKey(source);
+    }
+
+    public List<String> getErrors(File source) {
+        return errors.containsKey(source)
+                ? Collections.unmodifiableList(errors.get(source))
+                : Collections.<String>emptyList();
+    }
+
+    public Set<File> getFailedSources() {
+        return Collections.unmodifiableSet(errors.keySet());
+    }
+
+}
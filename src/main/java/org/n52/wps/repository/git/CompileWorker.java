@@ -0,0 +1,244 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Entry point of a compile worker JVM started by a {@link CompileWorkerPool}.
+ * Jobs are received on standard in and results are written to standard out.
+ * While compiling, the worker reads sources from the repository over the same
+ * pipe, so sources do not have to exist on disk.
+ * <p>
+ * Protocol: the repository sends {@link #COMPILE} with the source root and
+ * the sources of the batch. The worker answers with any number of
+ * {@link #LIST} and {@link #READ} requests, each answered by the repository,
+ * followed by {@link #RESULT} with the compiled classes and errors.
+ */
+public final class CompileWorker {
+
+    static final int COMPILE = 'C';
+
+    static final int LIST = 'L';
+
+    static final int READ = 'R';
+
+    static final int RESULT = 'D';
+
+    private CompileWorker() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        // anything logged to standard out would corrupt the protocol
+        System.setOut(System.err);
+
+        Map<String, InMemoryJavaCompiler> compilers = new HashMap<>();
+        while (true) {
+            int request = in.read();
+            if (request == -1) {
+                // the repository has closed the pipe
+                return;
+            }
+            if (request != COMPILE) {
+                throw new IOException("Unexpected request: " + request);
+            }
+            String root = readString(in);
+            int count = in.readInt();
+            List<File> sources = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                sources.add(new File(readString(in)));
+            }
+            InMemoryJavaCompiler compiler = compilers.computeIfAbsent(root,
+                    r -> new InMemoryJavaCompiler(new RemoteSourceTree(new File(r), in, out)));
+            CompilationResult result = compiler.compile(sources);
+            out.write(RESULT);
+            writeResult(out, result);
+            out.flush();
+        }
+    }
+
+    static void writeResult(DataOutputStream out, CompilationResult result) throws IOException {
+        Map<String, byte[]> classes = result.getClasses();
+        out.writeInt(classes.size());
+        for (Map.Entry<String, byte[]> compiledClass : classes.entrySet()) {
+            writeString(out, compiledClass.getKey());
+            File source = result.getSourceOf(compiledClass.getKey());
+            writeString(out, source != null
+                    ? source.getPath()
+                    : null);
+            writeBytes(out, compiledClass.getValue());
+        }
+        Set<File> failedSources = result.getFailedSources();
+        out.writeInt(failedSources.size());
+        for (File source : failedSources) {
+            writeString(out, source != null
+                    ? source.getPath()
+                    : null);
+            List<String> errors = result.getErrors(source);
+            out.writeInt(errors.size());
+            for (String error : errors) {
+                writeString(out, error);
+            }
+        }
+    }
+
+    static CompilationResult readResult(DataInputStream in) throws IOException {
+        CompilationResult result = new CompilationResult();
+        int classCount = in.readInt();
+        for (int i = 0; i < classCount; i++) {
+            String className = readString(in);
+            String source = readString(in);
+            result.addClass(className, source != null
+                    ? new File(source)
+                    : null, readBytes(in));
+        }
+        int failedCount = in.readInt();
+        for (int i = 0; i < failedCount; i++) {
+            String source = readString(in);
+            int errorCount = in.readInt();
+            for (int j = 0; j < errorCount; j++) {
+                result.addError(source != null
+                        ? new File(source)
+                        : null, readString(in));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes a string of any length, <code>null</code> included.
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value != null
+                ? value.getBytes(StandardCharsets.UTF_8)
+                : null);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes != null
+                ? new String(bytes, StandardCharsets.UTF_8)
+                : null;
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads sources from the repository which sent the job. A
+     * <code>null</code> answer carries the message of the repository failing
+     * to read.
+     */
+    private static class RemoteSourceTree implements SourceTree {
+
+        private final File root;
+
+        private final DataInputStream in;
+
+        private final DataOutputStream out;
+
+        RemoteSourceTree(File root, DataInputStream in, DataOutputStream out) {
+            this.root = root;
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public File getRoot() {
+            return root;
+        }
+
+        @Override
+        public ObjectId getBlobId(File source) throws IOException {
+            return GitBlobs.idOf(read(source));
+        }
+
+        @Override
+        public byte[] read(File source) throws IOException {
+            out.write(READ);
+            writeString(out, source.getPath());
+            out.flush();
+            byte[] content = readBytes(in);
+            if (content == null) {
+                throw new IOException(readString(in));
+            }
+            return content;
+        }
+
+        @Override
+        public List<File> listSources(String packagePath) throws IOException {
+            out.write(LIST);
+            writeString(out, packagePath);
+            out.flush();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException(readString(in));
+            }
+            List<File> sources = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                sources.add(new File(readString(in)));
+            }
+            return sources;
+        }
+    }
+
+}
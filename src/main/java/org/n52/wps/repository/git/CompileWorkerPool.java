@@ -0,0 +1,377 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of long-lived local JVMs compiling algorithm sources, so that
+ * compiling does not compete with process executions for heap and CPU of the
+ * WPS JVM. Each worker runs {@link CompileWorker} with a capped heap and
+ * compiles one job at a time. A job taking longer than the timeout kills its
+ * worker, the sources of the batch are compiled one by one then, so that a
+ * single pathological source costs one more timeout and does not fail all
+ * others. If a worker fails otherwise on a batch of sources, e.g. runs out of
+ * memory, the batch is split until the failing sources are isolated.
+ */
+public class CompileWorkerPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompileWorkerPool.class);
+
+    private final LinkedBlockingDeque<Worker> idle = new LinkedBlockingDeque<>();
+
+    private final Set<Worker> busy = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger started = new AtomicInteger();
+
+    private final int size;
+
+    private final long timeoutMillis;
+
+    private final String classPath;
+
+    private final List<String> command = new ArrayList<>();
+
+    private final ExecutorService jobs;
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "git-algorithm-compile-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean closed;
+
+    /**
+     * @param size the number of worker JVMs, i.e. of jobs compiled
+     * concurrently
+     * @param heapMegabytes the maximum heap of each worker JVM, <code>0</code>
+     * for the JVM default
+     * @param timeout the time a worker may take for a job
+     * @param unit the unit of the timeout
+     */
+    public CompileWorkerPool(int size, int heapMegabytes, long timeout, TimeUnit unit) {
+        this.size = Math.max(1, size);
+        this.timeoutMillis = unit.toMillis(timeout);
+        this.classPath = InMemoryJavaCompiler.createClassPath(CompileWorkerPool.class.getClassLoader());
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        if (heapMegabytes > 0) {
+            command.add("-Xmx" + heapMegabytes + "m");
+        }
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        command.add("-classpath");
+        command.add(classPath);
+        command.add(CompileWorker.class.getName());
+        AtomicInteger threads = new AtomicInteger();
+        this.jobs = Executors.newFixedThreadPool(this.size, runnable -> {
+            Thread thread = new Thread(runnable, "git-algorithm-compile-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param sourceTree the tree to read the sources and referenced sources
+     * from
+     * @param sources the sources to compile
+     * @return the compilation, never failing but reporting errors per source
+     */
+    public Future<CompilationResult> submit(SourceTree sourceTree, Collection<File> sources) {
+        List<File> batch = new ArrayList<>(sources);
+        return jobs.submit(() -> compile(sourceTree, batch));
+    }
+
+    private CompilationResult compile(SourceTree sourceTree, List<File> sources) {
+        try {
+            return run(sourceTree, sources);
+        } catch (CompileTimeoutException e) {
+            if (sources.size() == 1 || closed) {
+                return failed(sources, e);
+            }
+            logger.warn("Compile worker timed out on {} source(s), compiling them one by one.", sources.size());
+            CompilationResult result = new CompilationResult();
+            for (File source : sources) {
+                List<File> single = Collections.singletonList(source);
+                try {
+                    result.addAll(run(sourceTree, single));
+                } catch (IOException singleFailure) {
+                    result.addAll(failed(single, singleFailure));
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            if (sources.size() == 1 || closed) {
+                return failed(sources, e);
+            }
+            logger.warn("Compile worker failed on {} source(s), splitting the batch: {}", sources.size(), e.getMessage());
+            int half = sources.size() / 2;
+            CompilationResult result = compile(sourceTree, sources.subList(0, half));
+            result.addAll(compile(sourceTree, sources.subList(half, sources.size())));
+            return result;
+        }
+    }
+
+    private static CompilationResult failed(List<File> sources, IOException cause) {
+        CompilationResult result = new CompilationResult();
+        sources.forEach(source -> result.addError(source, "Compile worker failed: " + cause.getMessage()));
+        return result;
+    }
+
+    private CompilationResult run(SourceTree sourceTree, List<File> sources) throws IOException {
+        if (closed) {
+            throw new IOException("Compile worker pool has been closed.");
+        }
+        Worker worker = borrow();
+        busy.add(worker);
+        if (closed) {
+            // closed while borrowing, not killed by close()
+            worker.kill();
+        }
+        ScheduledFuture<?> timeout = watchdog.schedule(worker::kill, timeoutMillis, TimeUnit.MILLISECONDS);
+        boolean healthy = false;
+        try {
+            CompilationResult result = worker.compile(sourceTree, sources);
+            healthy = true;
+            return result;
+        } catch (IOException e) {
+            if (worker.killed && !closed) {
+                throw new CompileTimeoutException("Timed out after " + timeoutMillis + " ms", e);
+            }
+            throw e;
+        } finally {
+            timeout.cancel(false);
+            busy.remove(worker);
+            if (healthy && !closed) {
+                idle.offerFirst(worker);
+            } else {
+                worker.destroy();
+            }
+        }
+    }
+
+    private Worker borrow() throws IOException {
+        Worker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            if (worker.isAlive()) {
+                return worker;
+            }
+            worker.destroy();
+        }
+        logger.debug("Starting compile worker {}", started.incrementAndGet());
+        return new Worker(new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start());
+    }
+
+    /**
+     * @return the number of worker JVMs
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of workers currently waiting for jobs
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of worker JVMs started so far, including those
+     * replacing failed workers
+     */
+    public int getStartedCount() {
+        return started.get();
+    }
+
+    /**
+     * @return the classpath of the workers
+     */
+    public String getClassPath() {
+        return classPath;
+    }
+
+    /**
+     * @return the number of workers currently compiling
+     */
+    int getBusyCount() {
+        return busy.size();
+    }
+
+    /**
+     * Stops all workers. Workers still compiling are killed, as a
+     * pathological source may keep them busy forever.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        jobs.shutdownNow();
+        watchdog.shutdownNow();
+        busy.forEach(Worker::kill);
+        Worker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            worker.destroy();
+        }
+    }
+
+    private static class CompileTimeoutException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        CompileTimeoutException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static class Worker {
+
+        private final Process process;
+
+        private final DataInputStream in;
+
+        private final DataOutputStream out;
+
+        private volatile boolean killed;
+
+        Worker(Process process) {
+            this.process = process;
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        }
+
+        CompilationResult compile(SourceTree sourceTree, List<File> sources) throws IOException {
+            out.write(CompileWorker.COMPILE);
+            CompileWorker.writeString(out, sourceTree.getRoot().getPath());
+            out.writeInt(sources.size());
+            for (File source : sources) {
+                CompileWorker.writeString(out, source.getPath());
+            }
+            out.flush();
+            while (true) {
+                int message = in.read();
+                if (message == CompileWorker.RESULT) {
+                    return CompileWorker.readResult(in);
+                } else if (message == CompileWorker.READ) {
+                    answerRead(sourceTree, new File(CompileWorker.readString(in)));
+                } else if (message == CompileWorker.LIST) {
+                    answerList(sourceTree, CompileWorker.readString(in));
+                } else if (message == -1) {
+                    throw new EOFException("Compile worker exited.");
+                } else {
+                    throw new IOException("Unexpected message from compile worker: " + message);
+                }
+            }
+        }
+
+        private void answerRead(SourceTree sourceTree, File source) throws IOException {
+            try {
+                if ( !isWithin(sourceTree.getRoot(), source.toPath())) {
+                    throw new IOException("Not within the source root");
+                }
+                byte[] content = sourceTree.read(source);
+                CompileWorker.writeBytes(out, content);
+            } catch (IOException | RuntimeException e) {
+                CompileWorker.writeBytes(out, null);
+                CompileWorker.writeString(out, "Could not read " + source + ": " + e.getMessage());
+            }
+            out.flush();
+        }
+
+        private void answerList(SourceTree sourceTree, String packagePath) throws IOException {
+            try {
+                if ( !isWithin(sourceTree.getRoot(), sourceTree.getRoot().toPath().resolve(packagePath))) {
+                    throw new IOException("Not within the source root");
+                }
+                List<File> sources = sourceTree.listSources(packagePath);
+                out.writeInt(sources.size());
+                for (File source : sources) {
+                    CompileWorker.writeString(out, source.getPath());
+                }
+            } catch (IOException | RuntimeException e) {
+                out.writeInt(-1);
+                CompileWorker.writeString(out, "Could not list " + packagePath + ": " + e.getMessage());
+            }
+            out.flush();
+        }
+
+        /**
+         * Workers only get to read what the repository compiles, not any
+         * file readable by the WPS.
+         */
+        private static boolean isWithin(File root, Path path) {
+            Path normalizedRoot = root.getAbsoluteFile().toPath().normalize();
+            return path.toAbsolutePath().normalize().startsWith(normalizedRoot);
+        }
+
+        boolean isAlive() {
+            return !killed && process.isAlive();
+        }
+
+        void kill() {
+            killed = true;
+            process.destroyForcibly();
+        }
+
+        void destroy() {
+            try {
+                // a worker exits once its standard in is closed
+                out.close();
+            } catch (IOException e) {
+                logger.debug("Could not close pipe to compile worker: {}", e.getMessage());
+            }
+            process.destroy();
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * The sources compiled so far, each with the blob id it has been compiled at
+ * and the sources it has been compiled against. Used to find the algorithms
+ * which have to be compiled again when a source they depend on, e.g. a shared
+ * helper class, changes.
+ */
+final class DependencyGraph {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Map<File, ObjectId> blobIds = new HashMap<>();
+
+    private final Map<File, Set<File>> dependencies = new HashMap<>();
+
+    /**
+     * @param source the compiled source
+     * @param blobId the blob id of the compiled content
+     * @param sourceDependencies the sources the source has been compiled
+     * against
+     */
+    synchronized void update(File source, ObjectId blobId, Set<File> sourceDependencies) {
+        blobIds.put(source, blobId);
+        dependencies.put(source, new HashSet<>(sourceDependencies));
+    }
+
+    /**
+     * Like {@link #update(File, ObjectId, Set)}, but keeps the dependencies
+     * known before. Used for sources failing to compile, which may depend on
+     * sources which do not exist at the moment.
+     */
+    synchronized void merge(File source, ObjectId blobId, Set<File> sourceDependencies) {
+        blobIds.put(source, blobId);
+        dependencies.computeIfAbsent(source, f -> new HashSet<>()).addAll(sourceDependencies);
+    }
+
+    synchronized void remove(File source) {
+        blobIds.remove(source);
+        dependencies.remove(source);
+    }
+
+    /**
+     * @param source the source
+     * @return the blob id the source has been compiled at or
+     * <code>null</code> if it has not been compiled yet
+     */
+    synchronized ObjectId getBlobId(File source) {
+        return blobIds.get(source);
+    }
+
+    synchronized Set<File> getSources() {
+        return new HashSet<>(blobIds.keySet());
+    }
+
+    /**
+     * @return the dependencies which are not known as compiled sources, e.g.
+     * as they have been removed
+     */
+    synchronized Set<File> getMissingDependencies() {
+        Set<File> missing = new HashSet<>();
+        dependencies.values().forEach(missing::addAll);
+        missing.removeAll(blobIds.keySet());
+        return missing;
+    }
+
+    synchronized boolean isEmpty() {
+        return blobIds.isEmpty();
+    }
+
+    /**
+     * @param changed the changed sources
+     * @return all sources depending on any of the changed sources, directly or
+     * indirectly, the changed sources excluded
+     */
+    synchronized Set<File> getDependents(Collection<File> changed) {
+        Map<File, Set<File>> dependents = new HashMap<>();
+        dependencies.forEach((source, sourceDependencies) -> sourceDependencies
+                .forEach(dependency -> dependents.computeIfAbsent(dependency, f -> new HashSet<>()).add(source)));
+
+        Set<File> visited = new HashSet<>(changed);
+        Deque<File> pending = new ArrayDeque<>(changed);
+        while ( !pending.isEmpty()) {
+            for (File dependent : dependents.getOrDefault(pending.pop(), Collections.<File>emptySet())) {
+                if (visited.add(dependent)) {
+                    pending.push(dependent);
+                }
+            }
+        }
+        visited.removeAll(changed);
+        return visited;
+    }
+
+    /**
+     * Replaces the graph by the one written before. Sources are written with
+     * their blob ids, so the graph stays valid even if sources changed in the
+     * meantime, as these are detected by their blob ids.
+     *
+     * @param file the file to read
+     * @return <code>false</code> if there is no graph in the current format
+     * @throws IOException if reading fails
+     */
+    synchronized boolean read(File file) throws IOException {
+        if ( !file.isFile()) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath());
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readInt() != FORMAT_VERSION) {
+                return false;
+            }
+            Map<File, ObjectId> readBlobIds = new HashMap<>();
+            Map<File, Set<File>> readDependencies = new HashMap<>();
+            int sourceCount = data.readInt();
+            for (int i = 0; i < sourceCount; i++) {
+                File source = new File(data.readUTF());
+                readBlobIds.put(source, ObjectId.fromString(data.readUTF()));
+                Set<File> sourceDependencies = new HashSet<>();
+                int dependencyCount = data.readInt();
+                for (int j = 0; j < dependencyCount; j++) {
+                    sourceDependencies.add(new File(data.readUTF()));
+                }
+                readDependencies.put(source, sourceDependencies);
+            }
+            blobIds.clear();
+            blobIds.putAll(readBlobIds);
+            dependencies.clear();
+            dependencies.putAll(readDependencies);
+            return true;
+        }
+    }
+
+    /**
+     * Writes the graph to a temporary file, which is moved into place.
+     *
+     * @param file the file to write
+     * @throws IOException if writing fails
+     */
+    synchronized void write(File file) throws IOException {
+        Path graphFile = file.toPath();
+        Files.createDirectories(graphFile.toAbsolutePath().getParent());
+        Path tmpFile = Files.createTempFile(graphFile.toAbsolutePath().getParent(), file.getName(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmpFile);
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+            data.writeInt(FORMAT_VERSION);
+            data.writeInt(blobIds.size());
+            for (Map.Entry<File, ObjectId> source : blobIds.entrySet()) {
+                data.writeUTF(source.getKey().getAbsolutePath());
+                data.writeUTF(source.getValue().name());
+                Set<File> sourceDependencies = dependencies.get(source.getKey());
+                data.writeInt(sourceDependencies.size());
+                for (File dependency : sourceDependencies) {
+                    data.writeUTF(dependency.getAbsolutePath());
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpFile);
+            throw e;
+        }
+        try {
+            Files.move(tmpFile, graphFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile, graphFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+}
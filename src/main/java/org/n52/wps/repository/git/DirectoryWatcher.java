@@ -31,53 +31,97 @@ package org.n52.wps.repository.git;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.jgit.lib.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Directory watcher
+ * Directory watcher, watching a directory including all of its subdirectories
+ * except <code>.git</code>.
  *
  * @author Benjamin Pross
  *
  */
-public class DirectoryWatcher {
+public class DirectoryWatcher implements ChangeDetector {
 
     private static final Logger logger = LoggerFactory.getLogger(DirectoryWatcher.class);
 
+    private static final int MAX_QUIET_PERIODS = 10;
+
     private final ExecutorService service = Executors.newSingleThreadExecutor();
 
     private final WatchListener listener;
 
     private final Path directory;
 
-    private boolean running;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+    private final long quietPeriod;
+
+    private FileChanges pendingChanges = new FileChanges();
+
+    private boolean overflowed;
+
+    private long firstPendingEvent;
+
+    private long lastPendingEvent;
+
+    private volatile boolean running;
+
+    private final AtomicLong detectedChanges = new AtomicLong();
+
+    private volatile int pendingChangeCount;
 
     public DirectoryWatcher(File directory, final WatchListener listener) {
         this(directory.getAbsolutePath(), listener);
     }
 
     public DirectoryWatcher(String directory, final WatchListener listener) {
+        this(directory, listener, 0);
+    }
+
+    /**
+     * @param directory the directory to watch
+     * @param listener the listener to notify about changes
+     * @param quietPeriod milliseconds without further events before coalesced
+     * changes are passed to the listener
+     */
+    public DirectoryWatcher(File directory, final WatchListener listener, long quietPeriod) {
+        this(directory.getAbsolutePath(), listener, quietPeriod);
+    }
+
+    public DirectoryWatcher(String directory, final WatchListener listener, long quietPeriod) {
         this.directory = Paths.get(directory);
         this.listener = listener;
+        this.quietPeriod = quietPeriod;
     }
 
+    @Override
     public DirectoryWatcher start() {
         try {
             running = true;
             final WatchService watchService = directory.getFileSystem().newWatchService();
-            WatchKey key = directory.register(watchService,
-                    StandardWatchEventKinds.ENTRY_CREATE,
-                    StandardWatchEventKinds.ENTRY_DELETE,
-                    StandardWatchEventKinds.ENTRY_MODIFY);
+            registerRecursively(watchService, directory);
             service.execute(new Thread() {
                 @Override
                 public void run() {
@@ -90,22 +134,81 @@ public class DirectoryWatcher {
         return this;
     }
 
+    @Override
     public void stop() {
         running = false;
         service.shutdownNow();
     }
 
+    @Override
+    public long getDetectedChangeCount() {
+        return detectedChanges.get();
+    }
+
+    @Override
+    public int getPendingChangeCount() {
+        return pendingChangeCount;
+    }
+
+    /**
+     * Registers the given directory and all of its subdirectories except
+     * <code>.git</code>.
+     *
+     * @return all files found within the registered directories
+     */
+    private List<Path> registerRecursively(final WatchService watchService, Path start) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (Constants.DOT_GIT.equals(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
     private void handleEvents(WatchService watchService) {
         try {
             while (running) {
-                WatchKey key = watchService.take(); // waits, if empty
-                for (WatchEvent<?> event : key.pollEvents()) {
-                    handleEvent(event);
+                WatchKey key = !hasPendingChanges()
+                        ? watchService.take() // waits, if empty
+                        : watchService.poll(getRemainingQuietPeriod(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path watchedDirectory = watchedDirectories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (watchedDirectory != null) {
+                            handleEvent(watchService, watchedDirectory, event);
+                        }
+                    }
+                    pendingChangeCount = pendingChanges.size();
                     if ( !key.reset()) {
-                        stop(); //got invalid
-                        break;
+                        // got invalid, e.g. the directory has been deleted
+                        watchedDirectories.remove(key);
+                        if (directory.equals(watchedDirectory)) {
+                            stop();
+                        } else {
+                            logger.debug("Watch key of {} got invalid.", watchedDirectory);
+                            markOverflowed();
+                        }
                     }
                 }
+                if (hasPendingChanges() && getRemainingQuietPeriod() <= 0) {
+                    notifyListener();
+                }
             }
         } catch (ClosedWatchServiceException e) {
             logger.info("Service closed", e);
@@ -116,21 +219,96 @@ public class DirectoryWatcher {
         }
     }
 
-    private void handleEvent(WatchEvent<?> event) {
+    private void handleEvent(WatchService watchService, Path watchedDirectory, WatchEvent<?> event) {
         if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            logger.warn("Events got lost on directory {}", watchedDirectory);
+            markOverflowed();
             return;
         }
 
-        Path changed = directory.resolve((Path) event.context());
+        updatePendingEventTimes();
+
+        Path changed = watchedDirectory.resolve((Path) event.context());
+        detectedChanges.incrementAndGet();
         if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
-            logger.info("File " + changed + " has been created.");
-            listener.handleNewFile(changed.toString());
+            if (Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                handleNewDirectory(watchService, changed);
+                return;
+            }
+            logger.debug("File " + changed + " has been created.");
+            pendingChanges.created(changed.toFile());
         } else if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
-            logger.info("File " + changed + " had been changed.");
-            listener.handleModifiedFile(changed.toString());
+            if (Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                // changes within the directory are reported separately
+                return;
+            }
+            logger.debug("File " + changed + " had been changed.");
+            pendingChanges.modified(changed.toFile());
         } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
-            logger.info("File " + changed + " has been deleted.");
-            listener.handleDeleteFile(changed.toString());
+            logger.debug("File " + changed + " has been deleted.");
+            pendingChanges.deleted(changed.toFile());
+        }
+    }
+
+    private void markOverflowed() {
+        updatePendingEventTimes();
+        overflowed = true;
+    }
+
+    private void updatePendingEventTimes() {
+        long now = System.currentTimeMillis();
+        if ( !hasPendingChanges()) {
+            firstPendingEvent = now;
+        }
+        lastPendingEvent = now;
+    }
+
+    private boolean hasPendingChanges() {
+        return overflowed || !pendingChanges.isEmpty();
+    }
+
+    /**
+     * Registers a directory created after the watcher has been started. Files
+     * created before the registration completed would be missed otherwise, so
+     * all files found are reported as created.
+     */
+    private void handleNewDirectory(WatchService watchService, Path newDirectory) {
+        try {
+            logger.debug("Directory " + newDirectory + " has been created.");
+            for (Path file : registerRecursively(watchService, newDirectory)) {
+                pendingChanges.created(file.toFile());
+            }
+        } catch (IOException e) {
+            logger.error("Could not start watching directory {}", newDirectory, e);
+        }
+    }
+
+    /**
+     * The quiet period restarts with each event, but pending changes are not
+     * delayed for longer than ten quiet periods during continuous changes.
+     */
+    private long getRemainingQuietPeriod() {
+        long now = System.currentTimeMillis();
+        long quietUntil = Math.min(lastPendingEvent + quietPeriod, firstPendingEvent + MAX_QUIET_PERIODS * quietPeriod);
+        return Math.max(0, quietUntil - now);
+    }
+
+    private void notifyListener() {
+        FileChanges changes = pendingChanges;
+        boolean incomplete = overflowed;
+        pendingChanges = new FileChanges();
+        pendingChangeCount = 0;
+        overflowed = false;
+        try {
+            if (incomplete) {
+                logger.info("Handling incomplete changes of {} file(s) in {}", changes.size(), directory);
+                listener.handleOverflow(changes);
+            } else {
+                logger.info("Handling changes of {} file(s) in {}", changes.size(), directory);
+                listener.handleChanges(changes);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not handle changes {}", changes, e);
         }
     }
 
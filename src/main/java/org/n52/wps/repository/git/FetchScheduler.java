@@ -0,0 +1,172 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically fetches from a remote in the background and notifies a handler
+ * once the remote tracking ref of the current branch has moved. Each run is
+ * delayed by the interval plus a random jitter, so that several nodes do not
+ * poll the remote in lockstep.
+ */
+public class FetchScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(FetchScheduler.class);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "git-fetch-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Repository repository;
+
+    private final String remoteName;
+
+    private final long interval;
+
+    private final long jitter;
+
+    private final TimeUnit unit;
+
+    private final RemoteChangeHandler handler;
+
+    private ObjectId lastHandled;
+
+    private volatile boolean running;
+
+    /**
+     * @param repository the local repository to fetch into
+     * @param remoteName the remote to fetch from, e.g. <code>origin</code>
+     * @param interval the delay between two fetches
+     * @param jitter the maximum random delay added to each interval
+     * @param unit the time unit of interval and jitter
+     * @param handler notified once the remote tracking ref has moved
+     */
+    public FetchScheduler(Repository repository, String remoteName, long interval, long jitter, TimeUnit unit, RemoteChangeHandler handler) {
+        this.repository = repository;
+        this.remoteName = remoteName;
+        this.interval = interval;
+        this.jitter = jitter;
+        this.unit = unit;
+        this.handler = handler;
+    }
+
+    public FetchScheduler start() {
+        try {
+            lastHandled = resolveRemoteTrackingRef();
+        } catch (IOException e) {
+            logger.warn("Could not resolve remote tracking ref, first fetch will trigger an update.", e);
+        }
+        running = true;
+        scheduleNext();
+        return this;
+    }
+
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+    }
+
+    private void scheduleNext() {
+        if ( !running) {
+            return;
+        }
+        long delay = interval + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+        scheduler.schedule(() -> {
+            try {
+                fetchAndHandleChanges();
+            } catch (Exception e) {
+                logger.error("Fetching from remote '{}' failed.", remoteName, e);
+            } finally {
+                scheduleNext();
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * Fetches from the remote and notifies the handler if the remote tracking
+     * ref differs from the one last handled successfully. If the handler fails,
+     * the change is handled again on the next run.
+     *
+     * @return <code>true</code> if the remote tracking ref has moved
+     * @throws Exception if fetching or handling the change fails
+     */
+    boolean fetchAndHandleChanges() throws Exception {
+        Git.wrap(repository).fetch()
+                .setRemote(remoteName)
+                .call();
+        ObjectId current = resolveRemoteTrackingRef();
+        if (current == null || current.equals(lastHandled)) {
+            logger.debug("No changes on remote '{}'.", remoteName);
+            return false;
+        }
+        logger.info("Remote '{}' moved from {} to {}.", remoteName, lastHandled, current);
+        handler.remoteChanged(current);
+        lastHandled = current;
+        return true;
+    }
+
+    private ObjectId resolveRemoteTrackingRef() throws IOException {
+        String branch = repository.getBranch();
+        // a bare clone fetches into the local branches directly
+        Ref ref = repository.exactRef(repository.isBare()
+                ? Constants.R_HEADS + branch
+                : Constants.R_REMOTES + remoteName + "/" + branch);
+        return ref != null
+                ? ref.getObjectId()
+                : null;
+    }
+
+    /**
+     * Handles moves of a remote tracking ref.
+     */
+    public interface RemoteChangeHandler {
+
+        /**
+         * @param remoteId the id the remote tracking ref has moved to
+         * @throws Exception if the change could not be handled
+         */
+        void remoteChanged(ObjectId remoteId) throws Exception;
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Net changes of files within a period of time. Several events on the same
+ * file are coalesced, e.g. a file created and modified afterwards is reported
+ * as created only, a file created and deleted afterwards is not reported at
+ * all.
+ */
+public class FileChanges {
+
+    private enum Change {
+        CREATED, MODIFIED, DELETED
+    }
+
+    private final Map<File, Change> changes = new LinkedHashMap<>();
+
+    public void created(File file) {
+        Change previous = changes.get(file);
+        changes.put(file, previous == Change.DELETED || previous == Change.MODIFIED
+                ? Change.MODIFIED
+                : Change.CREATED);
+    }
+
+    public void modified(File file) {
+        Change previous = changes.get(file);
+        changes.put(file, previous == Change.CREATED
+                ? Change.CREATED
+                : Change.MODIFIED);
+    }
+
+    public void deleted(File file) {
+        Change previous = changes.get(file);
+        if (previous == Change.CREATED) {
+            changes.remove(file);
+        } else {
+            changes.put(file, Change.DELETED);
+        }
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    public Set<File> getCreated() {
+        return filter(Change.CREATED);
+    }
+
+    public Set<File> getModified() {
+        return filter(Change.MODIFIED);
+    }
+
+    public Set<File> getDeleted() {
+        return filter(Change.DELETED);
+    }
+
+    private Set<File> filter(Change change) {
+        Set<File> files = new HashSet<>();
+        changes.forEach((file, c) -> {
+            if (c == change) {
+                files.add(file);
+            }
+        });
+        return Collections.unmodifiableSet(files);
+    }
+
+    @Override
+    public String toString() {
+        return "FileChanges [created=" + getCreated() + ", modified=" + getModified() + ", deleted=" + getDeleted() + "]";
+    }
+
+}
@@ -29,33 +29,50 @@
 package org.n52.wps.repository.git;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
+import org.apache.xmlbeans.XmlException;
+import org.eclipse.jgit.api.CreateBranchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.MergeResult;
 import org.eclipse.jgit.api.PullResult;
 import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.errors.CheckoutConflictException;
 import org.eclipse.jgit.errors.RevisionSyntaxException;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.n52.wps.algorithm.annotation.Algorithm;
-import org.n52.wps.algorithm.util.CustomClassLoader;
-import org.n52.wps.algorithm.util.JavaProcessCompiler;
 import org.n52.wps.commons.WPSConfig;
 import org.n52.wps.repository.git.module.GitAlgorithmRepositoryCM;
 import org.n52.wps.server.AbstractAnnotatedAlgorithm;
@@ -81,159 +98,961 @@ public class GitAlgorithmRepository implements IAlgorithmRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(GitAlgorithmRepository.class);
 
-    private DirectoryWatcher repositoryWatcher;
+    private ChangeDetector repositoryWatcher;
+
+    private FetchScheduler fetchScheduler;
 
     private String localPath;
 
     private String remotePath;
 
+    private String branchName = Constants.MASTER;
+
     private String filenameRegex;
 
     private Repository localRepo;
 
-    private final Map<IAlgorithm, ProcessDescription> processDescriptions;
-
-    private final Map<String, IAlgorithm> javaAlgorithms;
+    /**
+     * The current snapshot of registered algorithms, replaced as a whole by
+     * writers while readers never lock.
+     */
+    private final AtomicReference<AlgorithmRegistry> registry = new AtomicReference<>(AlgorithmRegistry.EMPTY);
 
 //    private final Map<String, IAlgorithm> rAlgorithms;
 
-    private final Map<File, String> file2Wkn;
-
     private ConfigurationModule gitAlgorithmRepoConfigModule;
 
-    private CustomClassLoader customClassLoader;
+    private JavaAlgorithmCompiler compiler;
+
+    private int workerThreads = 1;
+
+    private String bytecodeCacheDirectory;
+
+    private int fetchInterval;
+
+    private int fetchJitter;
+
+    private int watcherQuietPeriod;
+
+    private String changeDetection = GitAlgorithmRepositoryCM.CHANGE_DETECTION_WATCHER;
+
+    private int changeDetectionInterval;
+
+    private boolean bareRepository;
+
+    /**
+     * Sources of a bare repository, <code>null</code> when working on a
+     * working copy.
+     */
+    private GitObjectSourceTree objectSourceTree;
+
+    private boolean sparseCheckout;
+
+    /**
+     * Updates a working copy with only algorithm files checked out,
+     * <code>null</code> for a full checkout.
+     */
+    private SparseCheckout sparseWorkingCopy;
+
+    private String additionalSources;
+
+    /**
+     * Additional repositories, ordered by precedence after this repository.
+     */
+    private final List<AlgorithmSource> sources = new CopyOnWriteArrayList<>();
+
+    private final List<FetchScheduler> sourceFetchSchedulers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Files whose algorithm has been rejected as its identifier is provided by
+     * another file, retried once the identifier gets free.
+     */
+    private final Map<String, Set<File>> shadowedFiles = new HashMap<>();
+
+    private boolean warmStart = true;
+
+    /**
+     * Maximum number of instances per algorithm, <code>0</code> shares a
+     * single instance among all executions.
+     */
+    private int instancePoolSize;
 
-    private Collection<DiffEntry> changedFiles;
+    /**
+     * Seconds an execution waits for a pooled instance before it fails.
+     */
+    private int instancePoolTimeout = 60;
+
+    private int compileWorkers;
+
+    private int compileWorkerHeap = 256;
+
+    private int compileTimeout = 120;
+
+    /**
+     * Workers compiling outside of the WPS JVM, <code>null</code> when
+     * compiling within.
+     */
+    private CompileWorkerPool compileWorkerPool;
+
+    private final ExecutorService initializer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "git-algorithm-repository-init");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile InitializationState initializationState = InitializationState.UPDATING;
+
+    private final CountDownLatch initialization = new CountDownLatch(1);
+
+    /**
+     * Files which failed to compile or load, skipped until their content
+     * changes or a retry is due.
+     */
+    private final AlgorithmFailures failedAlgorithms = new AlgorithmFailures();
+
+    /**
+     * The compiled sources with the sources they have been compiled against,
+     * to recompile only the dependents of a changed source.
+     */
+    private final DependencyGraph dependencyGraph = new DependencyGraph();
+
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "git-algorithm-repository-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RepositoryMetrics metrics = new RepositoryMetrics(() -> registry.get(), () -> repositoryWatcher,
+            failedAlgorithms::getFailures);
 
     public GitAlgorithmRepository() throws UpdateGitAlgorithmsRepositoryException, GitAlgorithmsRepositoryConfigException {
         this(true);
     }
 
     protected GitAlgorithmRepository(boolean startRepositoryWatcher) throws UpdateGitAlgorithmsRepositoryException, GitAlgorithmsRepositoryConfigException {
+        this(null, startRepositoryWatcher);
+    }
+
+    /**
+     * Creates a repository outside of a running WPS, e.g. for benchmarks.
+     *
+     * @param configurationModule the configuration to use, looked up from the
+     * WPS configuration if <code>null</code>
+     * @param startRepositoryWatcher whether to detect changes of the local
+     * repository
+     */
+    public GitAlgorithmRepository(ConfigurationModule configurationModule, boolean startRepositoryWatcher)
+            throws UpdateGitAlgorithmsRepositoryException, GitAlgorithmsRepositoryConfigException {
 //        rAlgorithms = new HashMap<>();
-        javaAlgorithms = new HashMap<>();
-        file2Wkn = new HashMap<>();
-        processDescriptions = new HashMap<>();
-        changedFiles = new ArrayList<>();
 
-        gitAlgorithmRepoConfigModule = WPSConfig.getInstance().getConfigurationModuleForClass(this.getClass().getName(), ConfigurationCategory.REPOSITORY);
+        gitAlgorithmRepoConfigModule = configurationModule != null
+                ? configurationModule
+                : WPSConfig.getInstance().getConfigurationModuleForClass(this.getClass().getName(), ConfigurationCategory.REPOSITORY);
 
         List<? extends ConfigurationEntry<?>> configEntries = gitAlgorithmRepoConfigModule.getConfigurationEntries();
 
-        // TODO use specified git branch
         for (ConfigurationEntry<?> configurationEntry : configEntries) {
             if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.localRepositoryDirectoryKey)) {
                 localPath = (String) configurationEntry.getValue();
             } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.repositoryURLKey)) {
                 remotePath = (String) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.branchNameKey)) {
+                String branch = (String) configurationEntry.getValue();
+                if (branch != null && !branch.trim().isEmpty()) {
+                    branchName = branch.trim();
+                }
             } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.fileNameRegexKey)) {
                 filenameRegex = (String) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.workerThreadsKey)) {
+                workerThreads = Math.max(1, (Integer) configurationEntry.getValue());
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.bytecodeCacheDirectoryKey)) {
+                bytecodeCacheDirectory = (String) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.fetchIntervalKey)) {
+                fetchInterval = (Integer) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.fetchJitterKey)) {
+                fetchJitter = (Integer) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.watcherQuietPeriodKey)) {
+                watcherQuietPeriod = (Integer) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.changeDetectionKey)) {
+                changeDetection = (String) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.changeDetectionIntervalKey)) {
+                changeDetectionInterval = (Integer) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.bareRepositoryKey)) {
+                bareRepository = (Boolean) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.sparseCheckoutKey)) {
+                sparseCheckout = (Boolean) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.additionalSourcesKey)) {
+                additionalSources = (String) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.warmStartKey)) {
+                warmStart = (Boolean) configurationEntry.getValue();
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.instancePoolSizeKey)) {
+                instancePoolSize = Math.max(0, (Integer) configurationEntry.getValue());
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.instancePoolTimeoutKey)) {
+                instancePoolTimeout = Math.max(1, (Integer) configurationEntry.getValue());
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.compileWorkersKey)) {
+                compileWorkers = Math.max(0, (Integer) configurationEntry.getValue());
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.compileWorkerHeapKey)) {
+                compileWorkerHeap = Math.max(0, (Integer) configurationEntry.getValue());
+            } else if (configurationEntry.getKey().equals(GitAlgorithmRepositoryCM.compileTimeoutKey)) {
+                compileTimeout = Math.max(1, (Integer) configurationEntry.getValue());
             }
         }
-        // set base directory of CustomClassLoader to local git repository directory
-        customClassLoader = new CustomClassLoader(localPath);
+        metrics.register(new File(localPath).getAbsolutePath());
+        if (compileWorkers > 0) {
+            compileWorkerPool = new CompileWorkerPool(compileWorkers, compileWorkerHeap, compileTimeout, TimeUnit.SECONDS);
+        }
+        File gitDirectory = bareRepository
+                ? new File(localPath)
+                : new File(localPath + File.separator + ".git");
+        // restored algorithms are available right away
+        boolean restored = warmStart && restoreSnapshot(gitDirectory);
+        // cloning, pulling and compiling must not block the startup of other repositories
+        initializer.execute(() -> init(gitDirectory, startRepositoryWatcher, restored));
+        initializer.shutdown();
+    }
 
-        File gitDirectory = new File(localPath + File.separator + ".git");
-        boolean readyToGo = initGitRepository(gitDirectory);
+    /**
+     * Updates the repositories and loads the algorithms. The algorithms of
+     * this repository and of each additional source are published as soon as
+     * they have been loaded.
+     *
+     * @param restored <code>true</code> if the registry has been restored from
+     * a snapshot, only algorithms which differ from the restored ones are
+     * loaded then
+     */
+    private void init(File gitDirectory, boolean startRepositoryWatcher, boolean restored) {
+        try {
+            // additional sources are cloned or fetched while this repository is updated
+            Map<AlgorithmSource, CompletableFuture<Boolean>> sourceInits = initSources();
+            boolean readyToGo = initGitRepository(gitDirectory);
 
-        if (readyToGo) {
-            addAlgorithms(gitDirectory, startRepositoryWatcher);
+            if (readyToGo) {
+                readyToGo = initCompiler();
+            }
+            if (readyToGo) {
+                initializationState = InitializationState.LOADING;
+                addAlgorithms(gitDirectory, startRepositoryWatcher, restored);
+            }
+            for (Map.Entry<AlgorithmSource, CompletableFuture<Boolean>> sourceInit : sourceInits.entrySet()) {
+                if (sourceInit.getValue().join()) {
+                    addAlgorithms(sourceInit.getKey(), restored);
+                }
+            }
+            initializationState = readyToGo
+                    ? InitializationState.READY
+                    : InitializationState.FAILED;
+            logger.info("Initialization of {} finished: {}, {} algorithm(s) available.", localPath, initializationState,
+                    registry.get().getAlgorithmNames().size());
+        } catch (RuntimeException e) {
+            logger.error("Could not init repository {}", localPath, e);
+            initializationState = InitializationState.FAILED;
+        } finally {
+            initialization.countDown();
         }
     }
 
-    private void addAlgorithms(File gitDirectory, boolean startRepositoryWatcher) {
-        File[] algorithmFiles = getFiles(gitDirectory);
-        addJavaAlgorithms(algorithmFiles);
-        addRAlgorithms(algorithmFiles);
+    /**
+     * @return the state of the initialization, the algorithms loaded so far
+     * are available in any state
+     */
+    public InitializationState getInitializationState() {
+        return initializationState;
+    }
 
-        //add watcher TODO maybe make configurable
-        final File workingCopy = gitDirectory.getParentFile();
-        repositoryWatcher = new DirectoryWatcher(workingCopy, new WatchListener() {
-            @Override
-            public void handleNewFile(String filename) {
-                logger.debug("adding/overriding algorithm '{}'", filename);
-                final File file = new File(filename);
-                if (isJavaFile(file)) {
-                    addJavaAlgorithms(new File[]{ file });
-                } else if (isRFile(file)) {
-                    addRAlgorithms(new File[]{ file });
+    /**
+     * Waits until the initialization has finished, either
+     * {@link InitializationState#READY} or {@link InitializationState#FAILED}.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return <code>true</code> if the initialization has finished,
+     * <code>false</code> if the timeout elapsed before
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitInitialization(long timeout, TimeUnit unit) throws InterruptedException {
+        return initialization.await(timeout, unit);
+    }
+
+    /**
+     * Restores the registry from the snapshot written on the last shutdown,
+     * if the local repository is still at the commit of the snapshot.
+     * Algorithms are instantiated on first access.
+     *
+     * @return <code>true</code> if the registry has been restored
+     */
+    private boolean restoreSnapshot(File gitDirectory) {
+        File snapshotFile = getSnapshotFile();
+        try (Repository repository = new FileRepository(gitDirectory)) {
+            RegistrySnapshot snapshot = RegistrySnapshot.read(snapshotFile);
+            if (snapshot == null) {
+                return false;
+            }
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if ( !snapshot.getCommitId().equals(head)) {
+                logger.info("Ignoring registry snapshot of commit {}, {} is at {}.", snapshot.getCommitId().name(), localPath, head);
+                return false;
+            }
+            AlgorithmRegistry.Builder builder = AlgorithmRegistry.EMPTY.toBuilder();
+            for (RegistrySnapshot.Entry entry : snapshot.getEntries()) {
+                ClassLoader classLoader = new BytecodeClassLoader(getClass().getClassLoader(), entry.getClasses());
+                CachedProcessDescription description;
+                try {
+                    description = restoreDescription(entry, classLoader);
+                } catch (Exception e) {
+                    // loaded again, and recorded as failure, once the working copy is reconciled
+                    logger.warn("Not restoring algorithm {}: {}", entry.getIdentifier(), e.getMessage());
+                    continue;
                 }
+                builder.put(new RegisteredAlgorithm(entry.getFile(), entry.getIdentifier(), entry.getClassName(),
+                        () -> instantiateJavaAlgorithm(classLoader, entry.getClassName()),
+                        description, classLoader, entry.getBlobId()));
             }
+            AlgorithmRegistry restored = builder.build();
+            registry.set(restored);
+            restored.getRegisteredAlgorithms().forEach(this::registerAlgorithmEntry);
+            logger.info("Restored {} algorithm(s) of commit {} from {}.", restored.getAlgorithmNames().size(), head.name(), snapshotFile);
+            restoreDependencyGraph();
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not read registry snapshot {}", snapshotFile, e);
+            return false;
+        }
+    }
 
-            @Override
-            public void handleDeleteFile(String filename) {
+    /**
+     * The description is parsed from the snapshot on first access. It is built
+     * by the algorithm if the stored description is not readable. Algorithms
+     * of entries without a stored description are validated right away and
+     * described on first access.
+     *
+     * @throws Exception if the algorithm cannot be instantiated or its
+     * description is not valid
+     */
+    private CachedProcessDescription restoreDescription(RegistrySnapshot.Entry entry, ClassLoader classLoader) throws Exception {
+        if ( !entry.hasDescription()) {
+            IAlgorithm algorithm = instantiateJavaAlgorithm(classLoader, entry.getClassName());
+            validateProcessDescription(algorithm, entry.getClassName());
+            return new CachedProcessDescription(algorithm::getDescription);
+        }
+        return new CachedProcessDescription(() -> {
+            try {
+                return entry.getDescription();
+            } catch (XmlException e) {
+                // validated before it has been stored
+                logger.warn("Could not restore description of algorithm {}: {}", entry.getIdentifier(), e.getMessage());
+                return instantiateJavaAlgorithm(classLoader, entry.getClassName()).getDescription();
+            }
+        });
+    }
 
-                // TODO untested
+    private void restoreDependencyGraph() {
+        File graphFile = getDependencyGraphFile();
+        try {
+            if (dependencyGraph.read(graphFile)) {
+                logger.debug("Restored dependencies of {} source(s) from {}.", dependencyGraph.getSources().size(), graphFile);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read dependency graph {}, changes of shared sources reload dependents after the next full load only.",
+                    graphFile, e);
+        }
+    }
 
-                logger.debug("deleting algorithm '{}'", filename);
-                File file = new File(filename);
-                if (file2Wkn.containsKey(file)) {
-                    String wkn = file2Wkn.get(file);
-                    if (isJavaFile(file)) {
-                        unregisterAlgorithm(wkn, javaAlgorithms);
-                    }
-                } else if (isRFile(file)) {
-                    removeRAlgorithmGlobally(file);
+    private void writeSnapshot() {
+        if ( !warmStart || initializationState != InitializationState.READY) {
+            return;
+        }
+        File snapshotFile = getSnapshotFile();
+        try {
+            ObjectId head = localRepo.resolve(Constants.HEAD);
+            if (head != null) {
+                int written = RegistrySnapshot.write(snapshotFile, head, registry.get());
+                logger.info("Wrote {} algorithm(s) of commit {} to registry snapshot {}.", written, head.name(), snapshotFile);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not write registry snapshot {}", snapshotFile, e);
+        }
+        File graphFile = getDependencyGraphFile();
+        try {
+            dependencyGraph.write(graphFile);
+        } catch (IOException e) {
+            logger.warn("Could not write dependency graph {}", graphFile, e);
+        }
+    }
+
+    private File getSnapshotFile() {
+        File workingCopy = new File(localPath).getAbsoluteFile();
+        return new File(workingCopy.getParentFile(), workingCopy.getName() + "-registry.snapshot");
+    }
+
+    private File getDependencyGraphFile() {
+        File workingCopy = new File(localPath).getAbsoluteFile();
+        return new File(workingCopy.getParentFile(), workingCopy.getName() + "-dependencies");
+    }
+
+    /**
+     * Starts to clone or fetch the additional sources concurrently. Sources
+     * which cannot be initialized stay known, so that the algorithms restored
+     * from them stay available and are not taken for removed algorithms of
+     * this repository. Their files are not loaded again.
+     *
+     * @return the initializations by source, completing with
+     * <code>false</code> for sources which could not be initialized
+     */
+    private Map<AlgorithmSource, CompletableFuture<Boolean>> initSources() {
+        File workingCopy = new File(localPath).getAbsoluteFile();
+        File sourcesDirectory = new File(workingCopy.getParentFile(), workingCopy.getName() + "-sources");
+        Map<AlgorithmSource, CompletableFuture<Boolean>> sourceInits = new LinkedHashMap<>();
+        for (AlgorithmSource source : AlgorithmSource.parse(additionalSources, sourcesDirectory, 1, branchName)) {
+            // known up front, so that files of sources are never taken for files of this repository
+            sources.add(source);
+            sourceInits.put(source, CompletableFuture.supplyAsync(() -> {
+                try {
+                    long start = System.nanoTime();
+                    source.init(getBytecodeCacheDirectory(), compileWorkerPool);
+                    metrics.recordSync(System.nanoTime() - start, source.getRepository());
+                    return true;
+                } catch (IOException | GitAPIException | RuntimeException e) {
+                    logger.error("Could not init algorithm source {}", source, e);
+                    source.close();
+                    return false;
                 }
+            }));
+        }
+        return sourceInits;
+    }
+
+    /**
+     * Sources, including those referenced from algorithms, are read from the
+     * working copy or, for a bare repository, from the tree of HEAD. Compile
+     * workers, if configured, read them through a pipe to this JVM.
+     */
+    private boolean initCompiler() {
+        File sourceRoot = new File(localPath);
+        SourceTree sourceTree;
+        if (bareRepository) {
+            try {
+                objectSourceTree = new GitObjectSourceTree(localRepo, sourceRoot, currentHeadToObjectId());
+                sourceTree = objectSourceTree;
+            } catch (IOException e) {
+                logger.error("Could not resolve HEAD of bare repository {}", localPath, e);
+                return false;
+            }
+        } else {
+            sourceTree = new WorkingCopySourceTree(sourceRoot);
+        }
+        JavaAlgorithmCompiler delegate = compileWorkerPool != null
+                ? new WorkerJavaCompiler(sourceTree, compileWorkerPool)
+                : new InMemoryJavaCompiler(sourceTree);
+        compiler = new CachingJavaCompiler(delegate, getBytecodeCacheDirectory(), sourceTree);
+        return true;
+    }
+
+    private void addAlgorithms(File gitDirectory, boolean startRepositoryWatcher, boolean restored) {
+        Pattern filenamePattern = Pattern.compile(filenameRegex);
+        List<File> algorithmFiles = new ArrayList<>();
+        if (objectSourceTree != null) {
+            try {
+                algorithmFiles.addAll(objectSourceTree.findFiles(filenamePattern));
+            } catch (IOException e) {
+                logger.error("Could not read algorithm files from {}", localPath, e);
+            }
+        } else {
+            algorithmFiles.addAll(getFiles(gitDirectory));
+        }
+        if (restored) {
+            reconcileRestored(algorithmFiles, file -> getSourceOf(file) == null);
+        } else {
+            reloadAlgorithms(algorithmFiles, Collections.<File>emptyList());
+        }
+
+        if (objectSourceTree == null) {
+            // a bare repository has no working copy to watch, changes are picked up by fetching only
+            startChangeDetection(gitDirectory.getParentFile(), startRepositoryWatcher);
+        }
+        if (fetchInterval > 0) {
+            fetchScheduler = new FetchScheduler(localRepo, Constants.DEFAULT_REMOTE_NAME, fetchInterval, fetchJitter, TimeUnit.SECONDS,
+                    remoteId -> refresh()).start();
+        }
+    }
+
+    private void addAlgorithms(AlgorithmSource source, boolean restored) {
+        try {
+            List<File> algorithmFiles = source.findAlgorithmFiles(Pattern.compile(filenameRegex));
+            if (restored) {
+                reconcileRestored(algorithmFiles, source::contains);
+            } else {
+                reloadAlgorithms(algorithmFiles, Collections.<File>emptyList());
+            }
+        } catch (IOException e) {
+            logger.error("Could not read algorithm files of source {}", source, e);
+        }
+        if (fetchInterval > 0) {
+            sourceFetchSchedulers.add(new FetchScheduler(source.getRepository(), Constants.DEFAULT_REMOTE_NAME, fetchInterval, fetchJitter,
+                    TimeUnit.SECONDS, remoteId -> refresh(source)).start());
+        }
+    }
+
+    private void startChangeDetection(File workingCopy, boolean startRepositoryWatcher) {
+        WatchListener listener = new WatchListener() {
+            @Override
+            public void handleChanges(FileChanges changes) {
+                handleDetectedChanges(changes);
             }
 
-            private void unregisterAlgorithm(String wkn, Map<String, IAlgorithm> algorithms) {
-                IAlgorithm algorithm = algorithms.get(wkn);
-                processDescriptions.remove(algorithm);
-                algorithms.remove(wkn);
+            @Override
+            public void handleOverflow(FileChanges knownChanges) {
+                reconcile();
+            }
+
+            // the change detection reports coalesced changes only, single files take the same path
+
+            @Override
+            public void handleNewFile(String filename) {
+                FileChanges changes = new FileChanges();
+                changes.created(new File(filename));
+                handleChanges(changes);
+            }
+
+            @Override
+            public void handleDeleteFile(String filename) {
+                FileChanges changes = new FileChanges();
+                changes.deleted(new File(filename));
+                handleChanges(changes);
             }
 
             @Override
             public void handleModifiedFile(String filename) {
-                logger.debug("modified algorithm '{}'", filename);
-                handleNewFile(filename); // TODO sufficient?
+                FileChanges changes = new FileChanges();
+                changes.modified(new File(filename));
+                handleChanges(changes);
             }
-        });
+        };
+        if (GitAlgorithmRepositoryCM.CHANGE_DETECTION_GIT.equalsIgnoreCase(changeDetection)) {
+            repositoryWatcher = new GitChangeDetector(localRepo, workingCopy, listener, Math.max(100, changeDetectionInterval));
+        } else {
+            repositoryWatcher = new DirectoryWatcher(workingCopy, listener, watcherQuietPeriod);
+        }
 
         if (startRepositoryWatcher) {
             repositoryWatcher.start();
         }
     }
 
+    /**
+     * Reloads the changes reported by the change detection of the working
+     * copy.
+     *
+     * @param changes the coalesced changes
+     */
+    void handleDetectedChanges(FileChanges changes) {
+        List<File> addedOrModified = new ArrayList<>();
+        List<File> changedSources = new ArrayList<>();
+        for (File file : changes.getCreated()) {
+            addIfAlgorithmFile(addedOrModified, file);
+            addIfJavaFile(changedSources, file);
+        }
+        for (File file : changes.getModified()) {
+            addIfAlgorithmFile(addedOrModified, file);
+            addIfJavaFile(changedSources, file);
+        }
+        reloadDetectedChanges(addedOrModified, changes.getDeleted(), changedSources);
+    }
+
+    /**
+     * Reloads the changes detected in the working copy, except for those
+     * already applied, e.g. by {@link #refresh()} which pulls into the working
+     * copy. Files are compared with the registered algorithms by their blob
+     * ids, other sources are compared with the dependency graph when the
+     * dependents to reload are determined.
+     */
+    private synchronized void reloadDetectedChanges(Collection<File> addedOrModified, Collection<File> removed,
+            Collection<File> changedSources) {
+        AlgorithmRegistry current = registry.get();
+        List<File> changed = new ArrayList<>();
+        for (File file : addedOrModified) {
+            RegisteredAlgorithm registered = current.getRegisteredAlgorithm(file);
+            try {
+                if (registered == null || !getBlobId(file).equals(registered.getBlobId())) {
+                    changed.add(file);
+                }
+            } catch (IOException e) {
+                changed.add(file);
+            }
+        }
+        List<File> gone = new ArrayList<>();
+        for (File file : removed) {
+            if (current.getRegisteredAlgorithm(file) != null || dependencyGraph.getBlobId(file) != null
+                    || failedAlgorithms.contains(file) || isRFile(file)) {
+                gone.add(file);
+            }
+        }
+        if (changed.isEmpty() && gone.isEmpty() && changedSources.isEmpty()) {
+            logger.debug("Detected changes have been applied already.");
+            return;
+        }
+        reloadAlgorithms(changed, gone, changedSources);
+    }
+
+    /**
+     * Pulls from the remote repository and reloads only the algorithms affected
+     * by the pulled changes. Algorithms of untouched files stay registered.
+     *
+     * @throws UpdateGitAlgorithmsRepositoryException if pulling fails
+     */
+    public synchronized void refresh() throws UpdateGitAlgorithmsRepositoryException {
+        if (objectSourceTree != null) {
+            refreshBareRepository();
+            return;
+        }
+        if (sparseWorkingCopy != null) {
+            refreshSparseCheckout();
+            return;
+        }
+        long start = System.nanoTime();
+        Collection<DiffEntry> diffEntries = updateLocalRepository();
+        metrics.recordSync(System.nanoTime() - start, localRepo);
+        logger.info("Refreshing {} changed file(s).", diffEntries.size());
+        applyDiffEntries(diffEntries);
+    }
+
+    /**
+     * Fetches the given additional source and reloads only the algorithms
+     * affected by the fetched changes.
+     *
+     * @param source the source to refresh
+     * @throws UpdateGitAlgorithmsRepositoryException if fetching fails
+     */
+    public synchronized void refresh(AlgorithmSource source) throws UpdateGitAlgorithmsRepositoryException {
+        try {
+            long start = System.nanoTime();
+            Collection<DiffEntry> diffEntries = source.update();
+            metrics.recordSync(System.nanoTime() - start, source.getRepository());
+            logger.info("Refreshing {} changed file(s) of source {}.", diffEntries.size(), source);
+            applyDiffEntries(diffEntries, source.getDirectory());
+        } catch (IOException | GitAPIException e) {
+            throw new UpdateGitAlgorithmsRepositoryException("Failed to fetch source " + source, e);
+        }
+    }
+
+    /**
+     * Fetches into the bare repository, which moves the branch refs without
+     * touching any files, and reloads the algorithms changed between the tree
+     * loaded last and the tree of the new HEAD.
+     */
+    private void refreshBareRepository() throws UpdateGitAlgorithmsRepositoryException {
+        try {
+            long start = System.nanoTime();
+            Git git = new Git(localRepo);
+            git.fetch().call();
+            metrics.recordSync(System.nanoTime() - start, localRepo);
+            ObjectId loaded = objectSourceTree.getTree();
+            ObjectId current = currentHeadToObjectId();
+            if (current.equals(loaded)) {
+                logger.debug("No changes in {}", localPath);
+                return;
+            }
+            Collection<DiffEntry> diffEntries = getDiffEntries(git, loaded, current);
+            logger.info("Refreshing {} changed file(s) from tree {}.", diffEntries.size(), current.name());
+            objectSourceTree.setTree(current);
+            applyDiffEntries(diffEntries);
+        } catch (IOException | GitAPIException e) {
+            throw new UpdateGitAlgorithmsRepositoryException("Failed to fetch from " + remotePath, e);
+        }
+    }
+
+    /**
+     * Fetches and updates only the algorithm files of the sparse working copy.
+     * Local changes of files to update prevent the update, like a failed merge.
+     */
+    private void refreshSparseCheckout() throws UpdateGitAlgorithmsRepositoryException {
+        try {
+            long start = System.nanoTime();
+            new Git(localRepo).fetch().call();
+            Collection<DiffEntry> diffEntries = sparseWorkingCopy.update();
+            metrics.recordSync(System.nanoTime() - start, localRepo);
+            logger.info("Refreshing {} changed file(s).", diffEntries.size());
+            applyDiffEntries(diffEntries);
+        } catch (CheckoutConflictException e) {
+            logger.warn("Local changes prevent updating {}. Pull and merge manually! {}", localPath, e.getMessage());
+        } catch (IOException | GitAPIException e) {
+            throw new UpdateGitAlgorithmsRepositoryException("Failed to update from " + remotePath, e);
+        }
+    }
+
+    private void applyDiffEntries(Collection<DiffEntry> diffEntries) {
+        applyDiffEntries(diffEntries, new File(localPath));
+    }
+
+    private void applyDiffEntries(Collection<DiffEntry> diffEntries, File root) {
+        metrics.recordDiff(diffEntries.size());
+        List<File> addedOrModified = new ArrayList<>();
+        List<File> removed = new ArrayList<>();
+        List<File> changedSources = new ArrayList<>();
+        for (DiffEntry diff : diffEntries) {
+            switch (diff.getChangeType()) {
+                case ADD:
+                case COPY:
+                case MODIFY:
+                    addIfAlgorithmFile(addedOrModified, new File(root, diff.getNewPath()));
+                    addIfJavaFile(changedSources, new File(root, diff.getNewPath()));
+                    break;
+                case RENAME:
+                    removed.add(new File(root, diff.getOldPath()));
+                    addIfAlgorithmFile(addedOrModified, new File(root, diff.getNewPath()));
+                    addIfJavaFile(changedSources, new File(root, diff.getNewPath()));
+                    break;
+                case DELETE:
+                    removed.add(new File(root, diff.getOldPath()));
+                    break;
+            }
+        }
+        reloadAlgorithms(addedOrModified, removed, changedSources);
+    }
+
+    /**
+     * Compares the algorithm files of the working copy against the registered
+     * algorithms by their git blob ids and reloads only the differences. Used
+     * when file change events got lost.
+     */
+    public synchronized void reconcile() {
+        if (objectSourceTree != null) {
+            // sources are read from immutable trees, nothing to reconcile
+            return;
+        }
+        List<File> algorithmFiles = new WorkingTreeScanner(new File(localPath), filenameRegex).scan();
+        reconcile(algorithmFiles, file -> getSourceOf(file) == null, Collections.<File>emptyList());
+    }
+
+    /**
+     * Instantiates the algorithms restored from the registry snapshot and
+     * reconciles them with the current algorithm files. R algorithms are not
+     * part of the snapshot and are added as usual.
+     *
+     * @param algorithmFiles the current algorithm files
+     * @param restoredFiles selects the registered files the current files
+     * replace
+     */
+    private synchronized void reconcileRestored(List<File> algorithmFiles, Predicate<File> restoredFiles) {
+        AlgorithmRegistry current = registry.get();
+        List<File> filesToReload = Collections.synchronizedList(new ArrayList<File>());
+        current.getRegisteredAlgorithms().parallelStream()
+                .filter(restored -> restoredFiles.test(restored.getFile()))
+                .forEach(restored -> {
+                    try {
+                        restored.getAlgorithm();
+                        prewarmInstancePool(restored);
+                    } catch (IllegalStateException e) {
+                        logger.warn("Restored algorithm {} cannot be instantiated, reloading it: {}", restored.getIdentifier(), e.getMessage());
+                        filesToReload.add(restored.getFile());
+                    }
+                });
+        for (File file : algorithmFiles) {
+            if (isRFile(file)) {
+                filesToReload.add(file);
+            }
+        }
+        reconcile(algorithmFiles, restoredFiles, filesToReload);
+    }
+
+    /**
+     * Compares the algorithm files against the registered algorithms by their
+     * git blob ids and reloads only the differences. Other sources compiled
+     * before, e.g. shared helper classes, are compared as well, so that the
+     * algorithms depending on them are reloaded.
+     *
+     * @param algorithmFiles the current algorithm files
+     * @param scope selects the registered files and sources to compare with
+     * @param filesToReload further files to reload in any case
+     */
+    private void reconcile(Collection<File> algorithmFiles, Predicate<File> scope, Collection<File> filesToReload) {
+        AlgorithmRegistry current = registry.get();
+        List<File> registeredFiles = new ArrayList<>();
+        for (File registeredFile : current.getFiles()) {
+            if (scope.test(registeredFile)) {
+                registeredFiles.add(registeredFile);
+            }
+        }
+        Set<File> addedOrModified = Collections.synchronizedSet(new HashSet<>(filesToReload));
+        algorithmFiles.parallelStream().filter(this::isJavaFile).forEach(file -> {
+            RegisteredAlgorithm registered = current.getRegisteredAlgorithm(file);
+            try {
+                if (registered == null || !getBlobId(file).equals(registered.getBlobId())) {
+                    addedOrModified.add(file);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read {}", file, e);
+                addedOrModified.add(file);
+            }
+        });
+
+        Set<File> existing = new HashSet<>(algorithmFiles);
+        List<File> removed = new ArrayList<>();
+        for (File registeredFile : registeredFiles) {
+            if ( !existing.contains(registeredFile)) {
+                removed.add(registeredFile);
+            }
+        }
+        List<File> changedSources = new ArrayList<>();
+        for (File source : dependencyGraph.getSources()) {
+            if ( !scope.test(source) || existing.contains(source) || current.getRegisteredAlgorithm(source) != null) {
+                continue;
+            }
+            try {
+                if ( !getBlobId(source).equals(dependencyGraph.getBlobId(source))) {
+                    changedSources.add(source);
+                }
+            } catch (IOException e) {
+                removed.add(source);
+            }
+        }
+        for (File source : dependencyGraph.getMissingDependencies()) {
+            try {
+                if (scope.test(source) && !existing.contains(source)) {
+                    getBlobId(source);
+                    changedSources.add(source);
+                }
+            } catch (IOException e) {
+                // still missing
+            }
+        }
+
+        logger.info("Reconciling {} changed and {} removed algorithm file(s) and {} changed source(s) in {}.",
+                addedOrModified.size(), removed.size(), changedSources.size(), localPath);
+        if ( !addedOrModified.isEmpty() || !removed.isEmpty() || !changedSources.isEmpty()) {
+            reloadAlgorithms(addedOrModified, removed, changedSources);
+        }
+    }
+
+    /**
+     * @return the blob id of an algorithm file as of its current content
+     * @throws IOException if the file cannot be read or does not exist
+     */
+    private ObjectId getBlobId(File file) throws IOException {
+        AlgorithmSource source = getSourceOf(file);
+        if (source != null && !source.isInitialized()) {
+            throw new IOException("Source " + source + " is not available");
+        }
+        ObjectId blobId = source != null
+                ? source.getBlobId(file)
+                : objectSourceTree != null
+                        ? objectSourceTree.getBlobId(file)
+                        : GitBlobs.idOf(file);
+        if (blobId == null) {
+            throw new IOException("No such file: " + file);
+        }
+        return blobId;
+    }
+
+    private void addIfAlgorithmFile(List<File> files, File file) {
+        if (file.getName().matches(filenameRegex)) {
+            files.add(file);
+        }
+    }
+
+    private void addIfJavaFile(List<File> files, File file) {
+        if (isJavaFile(file)) {
+            files.add(file);
+        }
+    }
+
+    private File getBytecodeCacheDirectory() {
+        if (bytecodeCacheDirectory != null && !bytecodeCacheDirectory.trim().isEmpty()) {
+            return new File(bytecodeCacheDirectory);
+        }
+        File workingCopy = new File(localPath).getAbsoluteFile();
+        return new File(workingCopy.getParentFile(), workingCopy.getName() + "-bytecode-cache");
+    }
+
     private boolean initGitRepository(File gitDirectory) {
         try {
             localRepo = new FileRepository(gitDirectory);
+            if (sparseCheckout && !bareRepository) {
+                sparseWorkingCopy = new SparseCheckout(localRepo, Constants.DEFAULT_REMOTE_NAME, Pattern.compile(filenameRegex));
+            }
             if (localRepo.getRef("HEAD") == null) {
                 cloneToLocalRepository();
+                return true;
+            }
+            if ( !branchName.equals(localRepo.getBranch())) {
+                switchBranch();
+            }
+            long start = System.nanoTime();
+            if (bareRepository) {
+                new Git(localRepo).fetch().call();
+                metrics.recordSync(System.nanoTime() - start, localRepo);
+            } else if (sparseWorkingCopy != null) {
+                refreshSparseCheckout();
             } else {
-                ObjectId old = currentHeadToObjectId();
-                changedFiles = updateLocalRepository(old);
+                // all algorithms are loaded initially, cached bytecode makes unchanged ones cheap
+                updateLocalRepository();
+                metrics.recordSync(System.nanoTime() - start, localRepo);
             }
             return true;
         } catch (IOException e) {
             logger.error("Couldn't create .git directory: " + gitDirectory, e);
             return false;
-        } catch (GitAlgorithmsRepositoryConfigException | UpdateGitAlgorithmsRepositoryException e) {
+        } catch (GitAlgorithmsRepositoryConfigException | UpdateGitAlgorithmsRepositoryException | GitAPIException e) {
             logger.error("Could not init Git repository!", e);
             return false;
         }
     }
 
-    private File[] cloneToLocalRepository() throws GitAlgorithmsRepositoryConfigException {
+    private void cloneToLocalRepository() throws GitAlgorithmsRepositoryConfigException {
         try {
+            long start = System.nanoTime();
             Git git = Git.cloneRepository()
                     .setDirectory(new File(localPath))
+                    .setBare(bareRepository)
+                    .setNoCheckout(sparseWorkingCopy != null)
+                    .setBranch(Constants.R_HEADS + branchName)
                     .setURI(remotePath)
                     .call();
-            return getFiles(git.getRepository().getWorkTree());
-        } catch (GitAPIException e) {
+            if (sparseWorkingCopy != null) {
+                sparseWorkingCopy.checkout(branchName);
+            }
+            metrics.recordSync(System.nanoTime() - start, git.getRepository());
+            git.close();
+        } catch (GitAPIException | IOException e) {
             throw new GitAlgorithmsRepositoryConfigException("Cloning failed: " + remotePath, e);
         }
     }
 
-    private Collection<DiffEntry> updateLocalRepository(ObjectId old) throws UpdateGitAlgorithmsRepositoryException {
+    /**
+     * Switches an existing local repository to the configured branch, e.g.
+     * after the branch name has been changed.
+     */
+    private void switchBranch() throws IOException, GitAPIException {
+        logger.info("Switching {} from branch {} to {}.", localPath, localRepo.getBranch(), branchName);
+        Git git = new Git(localRepo);
+        git.fetch().call();
+        if (bareRepository) {
+            RefUpdate headUpdate = localRepo.updateRef(Constants.HEAD);
+            headUpdate.link(Constants.R_HEADS + branchName);
+        } else if (sparseWorkingCopy != null) {
+            sparseWorkingCopy.checkout(branchName);
+        } else {
+            git.checkout()
+                    .setName(branchName)
+                    .setCreateBranch(localRepo.exactRef(Constants.R_HEADS + branchName) == null)
+                    .setStartPoint(Constants.DEFAULT_REMOTE_NAME + "/" + branchName)
+                    .setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.TRACK)
+                    .call();
+        }
+    }
+
+    private Collection<DiffEntry> updateLocalRepository() throws UpdateGitAlgorithmsRepositoryException {
         try {
             Git git = new Git(localRepo);
-            logger.debug("Starting pulling from {} ({})", remotePath, old);
-            PullResult result = git.pull().call();
+            ObjectId oldCommit = localRepo.resolve(Constants.HEAD);
+            ObjectId old = currentHeadToObjectId();
+            logger.debug("Starting pulling from {} ({})", remotePath, oldCommit);
+            PullResult result = git.pull()
+                    .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                    .setRemoteBranchName(branchName)
+                    .call();
             if ( !result.isSuccessful()) {
                 printMergeSummary(result);
-                rollbackFromFailedMerge(git, old);
+                rollbackFromFailedMerge(git, oldCommit);
                 return Collections.emptyList();
             }
             logger.info("Successfully pulled changes.");
@@ -248,20 +1067,33 @@ public class GitAlgorithmRepository implements IAlgorithmRepository {
     private void printMergeSummary(PullResult pullResult) {
         StringBuilder sb = new StringBuilder();
         MergeResult result = pullResult.getMergeResult();
-        sb.append("Merge failed with status ").append(result.getMergeStatus().name());
-        result.getFailingPaths().entrySet()
-                .stream()
-                .forEach(failed -> sb
-                        .append(failed.getKey())
-                        .append(" -> ")
-                        .append(failed.getValue())
-                        .append("\n"));
+        if (result == null) {
+            logger.warn("Pull failed: {}", pullResult);
+            return;
+        }
+        sb.append("Merge failed with status ").append(result.getMergeStatus().name()).append("\n");
+        if (result.getFailingPaths() != null) {
+            result.getFailingPaths().entrySet()
+                    .stream()
+                    .forEach(failed -> sb
+                            .append(failed.getKey())
+                            .append(" -> ")
+                            .append(failed.getValue())
+                            .append("\n"));
+        }
+        if (result.getConflicts() != null) {
+            result.getConflicts().keySet()
+                    .forEach(conflicting -> sb
+                            .append(conflicting)
+                            .append(" -> CONFLICTING\n"));
+        }
+        logger.warn(sb.toString());
     }
 
-    private void rollbackFromFailedMerge(Git git, ObjectId old) throws GitAPIException {
-        // old objectId is the one before merge so we should be safe to have the right rollback id
-        logger.warn("Doing a `reset --hard {}' from faild merge. Pull and merge manually!", old);
-        git.reset().setMode(ResetCommand.ResetType.HARD).setRef(old.toString()).call();
+    private void rollbackFromFailedMerge(Git git, ObjectId oldCommit) throws GitAPIException {
+        // old commit is the one before merge so we should be safe to have the right rollback id
+        logger.warn("Doing a `reset --hard {}' from faild merge. Pull and merge manually!", oldCommit.name());
+        git.reset().setMode(ResetCommand.ResetType.HARD).setRef(oldCommit.name()).call();
     }
 
     private Collection<DiffEntry> getDiffEntries(Git git, ObjectId old, ObjectId newer) throws IOException, GitAPIException {
@@ -280,58 +1112,443 @@ public class GitAlgorithmRepository implements IAlgorithmRepository {
         return localRepo.resolve("HEAD^{tree}");
     }
 
-    private void addJavaAlgorithms(File[] algorithmFiles){
+    /**
+     * Builds the next generation of algorithms off to the side and publishes it
+     * in one atomic switch. Algorithms which fail to compile or load keep their
+     * previous version, so a reload never leaves holes in the process set.
+     * Requests in flight finish with the algorithm instances they already
+     * obtained.
+     *
+     * @param addedOrModified the added or modified algorithm files
+     * @param removed the removed algorithm files
+     */
+    private void reloadAlgorithms(Collection<File> addedOrModified, Collection<File> removed) {
+        reloadAlgorithms(addedOrModified, removed, Collections.<File>emptyList());
+    }
+
+    /**
+     * Algorithms depending on a changed or removed source, e.g. on a shared
+     * helper class, are compiled again along with the changed files.
+     *
+     * @param addedOrModified the added or modified algorithm files
+     * @param removed the removed algorithm files
+     * @param changedSources added or modified sources, which need not be
+     * algorithm files
+     */
+    private synchronized void reloadAlgorithms(Collection<File> addedOrModified, Collection<File> removed,
+            Collection<File> changedSources) {
+        Set<File> dependents = getDependentsToReload(addedOrModified, removed, changedSources);
+        removed.forEach(failedAlgorithms::remove);
+        removed.forEach(dependencyGraph::remove);
+        dependents.forEach(failedAlgorithms::remove);
+        List<File> filesToLoad = new ArrayList<>(withoutKnownFailures(addedOrModified));
+        filesToLoad.addAll(dependents);
+        Map<File, Exception> failures = new LinkedHashMap<>();
+        List<RegisteredAlgorithm> loadedAlgorithms = compileAndLoadJavaAlgorithms(filesToLoad, dependents, failures);
+        loadedAlgorithms.forEach(loaded -> failedAlgorithms.remove(loaded.getFile()));
+        failures.forEach(this::recordFailure);
+
+        AlgorithmRegistry current = registry.get();
+        AlgorithmRegistry.Builder next = current.toBuilder();
+        Set<File> unshadowed = new HashSet<>();
+        boolean unregistered = false;
+        for (File file : removed) {
+            String wkn = next.remove(file);
+            if (wkn != null) {
+                unregistered = true;
+                logger.info("Algorithm unregistered: {}", wkn);
+                metrics.removeAlgorithm(wkn);
+                unshadowed.addAll(shadowedFiles.getOrDefault(wkn, Collections.<File>emptySet()));
+            } else if (isRFile(file)) {
+                removeRAlgorithmGlobally(file);
+            }
+            shadowedFiles.values().forEach(files -> files.remove(file));
+        }
+
+        Set<File> reloadedFiles = new HashSet<>();
+        loadedAlgorithms.forEach(loaded -> reloadedFiles.add(loaded.getFile()));
+        Set<String> reloadedIdentifiers = new HashSet<>();
+        List<RegisteredAlgorithm> accepted = new ArrayList<>();
+        for (RegisteredAlgorithm loaded : loadedAlgorithms) {
+            String identifier = loaded.getIdentifier();
+            File owner = next.getFile(identifier);
+            boolean ownerReloaded = reloadedFiles.contains(owner) && !reloadedIdentifiers.contains(identifier);
+            if (owner != null && !owner.equals(loaded.getFile()) && !ownerReloaded) {
+                if (getPrecedence(owner) <= getPrecedence(loaded.getFile())) {
+                    shadowedFiles.computeIfAbsent(identifier, id -> new HashSet<>()).add(loaded.getFile());
+                    failures.put(loaded.getFile(), new Exception("Identifier '" + identifier + "' is already provided by " + owner));
+                    continue;
+                }
+                logger.info("Algorithm '{}' of {} takes precedence over {}.", identifier, loaded.getFile(), owner);
+                shadowedFiles.computeIfAbsent(identifier, id -> new HashSet<>()).add(owner);
+            }
+            Set<File> shadowed = shadowedFiles.get(identifier);
+            if (shadowed != null) {
+                shadowed.remove(loaded.getFile());
+            }
+            next.put(loaded);
+            reloadedIdentifiers.add(identifier);
+            accepted.add(loaded);
+        }
+
+        if ( !accepted.isEmpty() || unregistered) {
+            AlgorithmRegistry nextGeneration = next.build();
+            registry.set(nextGeneration);
+            logger.info("Published algorithm generation {} with {} algorithm(s) ({} reloaded, {} failed).",
+                    nextGeneration.getGeneration(), nextGeneration.getAlgorithmNames().size(), accepted.size(), failures.size());
+        }
+        accepted.forEach(this::registerAlgorithmEntry);
+        addRAlgorithms(addedOrModified);
+
+        for (Map.Entry<File, Exception> failure : failures.entrySet()) {
+            logger.error("Exception while trying to add algorithm {}: {}", failure.getKey().getName(), failure.getValue().getMessage());
+            logger.debug("Failed to add algorithm " + failure.getKey(), failure.getValue());
+        }
+
+        unshadowed.removeAll(removed);
+        unshadowed.removeAll(addedOrModified);
+        if ( !unshadowed.isEmpty()) {
+            logger.info("Reloading {} algorithm(s) shadowed by removed algorithms.", unshadowed.size());
+            reloadAlgorithms(unshadowed, Collections.<File>emptyList());
+        }
+    }
+
+    /**
+     * @return the registered or failed algorithm files depending on any of the
+     * changed sources, directly or indirectly, which are not reloaded anyway
+     */
+    private Set<File> getDependentsToReload(Collection<File> addedOrModified, Collection<File> removed,
+            Collection<File> changedSources) {
+        if (dependencyGraph.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<File> changed = new HashSet<>(removed);
+        Set<File> candidates = new HashSet<>(addedOrModified);
+        candidates.addAll(changedSources);
+        for (File candidate : candidates) {
+            if (isJavaFile(candidate) && hasChangedSinceCompiled(candidate)) {
+                changed.add(candidate);
+            }
+        }
+        Set<File> dependents = dependencyGraph.getDependents(changed);
+        dependents.removeAll(addedOrModified);
+        dependents.removeAll(removed);
+        AlgorithmRegistry current = registry.get();
+        dependents.removeIf(file -> current.getRegisteredAlgorithm(file) == null && !failedAlgorithms.contains(file));
+        if ( !dependents.isEmpty()) {
+            logger.info("Reloading {} algorithm(s) depending on {} changed source(s).", dependents.size(), changed.size());
+        }
+        return dependents;
+    }
+
+    private boolean hasChangedSinceCompiled(File source) {
+        ObjectId compiled = dependencyGraph.getBlobId(source);
+        try {
+            return compiled == null || !compiled.equals(getBlobId(source));
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return the files to load without those which failed before and have
+     * neither changed since nor are due for a retry
+     */
+    private Collection<File> withoutKnownFailures(Collection<File> files) {
+        if (failedAlgorithms.isEmpty()) {
+            return files;
+        }
+        List<File> filesToLoad = new ArrayList<>();
+        for (File file : files) {
+            try {
+                if ( !failedAlgorithms.contains(file) || failedAlgorithms.isRetryDue(file, getBlobId(file))) {
+                    filesToLoad.add(file);
+                } else {
+                    logger.debug("Skipping {}, it failed before and has not changed since.", file);
+                }
+            } catch (IOException e) {
+                // let the compiler report it
+                filesToLoad.add(file);
+            }
+        }
+        return filesToLoad;
+    }
+
+    /**
+     * Records a failed file, so that it is not loaded again as long as its
+     * content is the same. Failures not caused by the content are retried
+     * once the backoff has passed.
+     */
+    private void recordFailure(File file, Exception cause) {
+        try {
+            recordFailure(file, getBlobId(file), cause);
+        } catch (IOException e) {
+            logger.debug("Not caching failure of unreadable {}", file);
+        }
+    }
+
+    private void recordFailure(File file, ObjectId blobId, Exception cause) {
+        AlgorithmFailure failure;
+        if (cause instanceof InvalidAlgorithmException) {
+            failure = failedAlgorithms.record(file, blobId, AlgorithmFailure.Kind.CONTENT, cause.getMessage());
+        } else {
+            StringWriter stackTrace = new StringWriter();
+            cause.printStackTrace(new PrintWriter(stackTrace));
+            failure = failedAlgorithms.record(file, blobId, AlgorithmFailure.Kind.ENVIRONMENT, stackTrace.toString());
+            long delay = Math.max(0, failure.getNextRetry() - System.currentTimeMillis());
+            logger.info("Retrying {} in {} s (attempt {}).", file.getName(), TimeUnit.MILLISECONDS.toSeconds(delay), failure.getAttempts());
+            try {
+                retryScheduler.schedule(this::retryDueFailures, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Not retrying {}, shutting down.", file);
+            }
+        }
+    }
+
+    private synchronized void retryDueFailures() {
+        List<File> due = failedAlgorithms.getDueRetries();
+        if ( !due.isEmpty()) {
+            logger.info("Retrying {} failed algorithm(s).", due.size());
+            reloadAlgorithms(due, Collections.<File>emptyList());
+        }
+    }
+
+    /**
+     * @return the algorithm files which failed to compile or load, along with
+     * the diagnostics
+     */
+    public List<AlgorithmFailure> getFailedAlgorithms() {
+        return failedAlgorithms.getFailures();
+    }
+
+    /**
+     * Forgets all failures and loads the failed files again, e.g. after a
+     * file another algorithm failed on has been fixed.
+     */
+    public synchronized void retryFailedAlgorithms() {
+        List<File> failed = failedAlgorithms.clear();
+        if ( !failed.isEmpty()) {
+            logger.info("Retrying {} failed algorithm(s).", failed.size());
+            reloadAlgorithms(failed, Collections.<File>emptyList());
+        }
+    }
+
+    /**
+     * @return the precedence of the source a file belongs to, lower values
+     * win if several sources provide the same algorithm identifier
+     */
+    private int getPrecedence(File file) {
+        AlgorithmSource source = getSourceOf(file);
+        return source != null
+                ? source.getPrecedence()
+                : 0;
+    }
+
+    /**
+     * @return the additional source the file belongs to or <code>null</code>
+     * for files of the local repository
+     */
+    private AlgorithmSource getSourceOf(File file) {
+        for (AlgorithmSource source : sources) {
+            if (source.contains(file)) {
+                return source;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param algorithmFiles the files to compile and load
+     * @param dependents the files loaded as sources they depend on changed
+     * @param failures collects the files which could not be loaded, mapped to
+     * the cause
+     * @return the loaded algorithms
+     */
+    private List<RegisteredAlgorithm> compileAndLoadJavaAlgorithms(Collection<File> algorithmFiles, Set<File> dependents,
+            Map<File, Exception> failures) {
+        List<File> javaFiles = new ArrayList<>();
         for (File file : algorithmFiles) {
             if ( !isJavaFile(file)) {
                 continue;
             }
+            AlgorithmSource source = getSourceOf(file);
+            if (source != null && !source.isInitialized()) {
+                failures.put(file, new IOException("Source " + source + " is not available"));
+            } else {
+                javaFiles.add(file);
+            }
+        }
+        if (javaFiles.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-            // check if class file exists
-            File classFile = new File(file.getAbsolutePath().replace(".java", ".class"));
+        Map<JavaAlgorithmCompiler, List<File>> filesByCompiler = new LinkedHashMap<>();
+        for (File file : javaFiles) {
+            AlgorithmSource source = getSourceOf(file);
+            JavaAlgorithmCompiler sourceCompiler = source != null
+                    ? source.getCompiler()
+                    : compiler;
+            filesByCompiler.computeIfAbsent(sourceCompiler, c -> new ArrayList<>()).add(file);
+        }
+        if (filesByCompiler.size() == 1) {
+            return compileAndLoadJavaAlgorithms(filesByCompiler.keySet().iterator().next(), javaFiles, dependents, failures);
+        }
 
-            // if nothing has changed and class file exists, skip compiling
-            if (hasDiffEntry(file) || !classFile.exists()) {
-                JavaProcessCompiler.compile(file.getAbsolutePath());
+        // each source has its own source tree, so sources are compiled and loaded concurrently
+        Map<List<File>, Map<File, Exception>> sourceFailures = new LinkedHashMap<>();
+        Map<List<File>, CompletableFuture<List<RegisteredAlgorithm>>> loadings = new LinkedHashMap<>();
+        filesByCompiler.forEach((sourceCompiler, files) -> {
+            Map<File, Exception> failuresOfSource = new LinkedHashMap<>();
+            sourceFailures.put(files, failuresOfSource);
+            loadings.put(files, CompletableFuture.supplyAsync(() -> compileAndLoadJavaAlgorithms(sourceCompiler, files, dependents, failuresOfSource)));
+        });
+        List<RegisteredAlgorithm> loadedAlgorithms = new ArrayList<>();
+        loadings.forEach((files, loading) -> {
+            loadedAlgorithms.addAll(loading.join());
+            failures.putAll(sourceFailures.get(files));
+        });
+        return loadedAlgorithms;
+    }
+
+    /**
+     * Changed sources are compiled along with all their dependents in one
+     * compilation, so the dependents are compiled against the changed sources
+     * regardless of the order they depend on each other.
+     */
+    private List<RegisteredAlgorithm> compileAndLoadJavaAlgorithms(JavaAlgorithmCompiler compiler, List<File> javaFiles,
+            Set<File> dependents, Map<File, Exception> failures) {
+        long start = System.nanoTime();
+        CompilationResult compilationResult = compiler.compile(javaFiles);
+        metrics.recordCompile(System.nanoTime() - start);
+        Set<File> failedSources = compilationResult.getFailedSources();
+        compilationResult.getBlobIds().forEach((source, blobId) -> {
+            if (compilationResult.hasErrors(source)) {
+                // e.g. a removed helper, compiled again once it is back
+                dependencyGraph.merge(source, blobId, compilationResult.getDependencies(source));
+                // the error may be caused by another failed source, e.g. a
+                // broken helper, which is unknown as dependency if the source
+                // never compiled. Compiled again once any of these changes.
+                Set<File> failedReferences = new HashSet<>(failedSources);
+                failedReferences.remove(source);
+                dependencyGraph.merge(source, blobId, failedReferences);
+            } else {
+                dependencyGraph.update(source, blobId, compilationResult.getDependencies(source));
             }
+        });
 
-            String plainFilename = file.getName().replace(".java", "");
-            try {
-                IAlgorithm algorithm = loadJavaAlgorithm(plainFilename);
-                String algorithmIdentifier = algorithm.getWellKnownName();
-                javaAlgorithms.put(algorithmIdentifier, algorithm);
-                file2Wkn.put(file, algorithmIdentifier);
-                registerCommonDescriptions(algorithm, plainFilename);
-            } catch (Exception e) {
-                // TODO refine control flow here!
-                logger.error("Exception while trying to add algorithm {}", plainFilename);
-                logger.error(e.getMessage());
+        List<File> filesToLoad = new ArrayList<>();
+        for (File file : javaFiles) {
+            if (compilationResult.hasErrors(file)) {
+                String diagnostics = String.join("\n", compilationResult.getErrors(file));
+                failures.put(file, new InvalidAlgorithmException("Compilation failed:\n" + diagnostics));
+            } else {
+                filesToLoad.add(file);
             }
         }
+        List<RegisteredAlgorithm> loadedAlgorithms = loadJavaAlgorithms(filesToLoad, compilationResult, dependents, failures);
+        failures.keySet().forEach(metrics::recordAlgorithmFailure);
+        return loadedAlgorithms;
     }
 
-    private boolean hasDiffEntry(File file) {
-        return changedFiles.stream()
-                .anyMatch(diff ->
-                        diff.getChangeType() == DiffEntry.ChangeType.ADD
-                                ? isDiffEntryOf(file, diff.getNewPath())
-                                : isDiffEntryOf(file, diff.getOldPath())
-                );
+    /**
+     * Instantiates the compiled algorithms and builds their descriptions on a
+     * bounded worker pool. Each algorithm gets its own class loader, so the
+     * classes of a replaced or removed algorithm can be unloaded independently
+     * of all other algorithms.
+     *
+     * @param files the successfully compiled Java files
+     * @param compilationResult the compiled classes
+     * @param dependents the files loaded as sources they depend on changed
+     * @param failures collects the files which could not be loaded, mapped to
+     * the cause
+     * @return the loaded algorithms
+     */
+    private List<RegisteredAlgorithm> loadJavaAlgorithms(List<File> files, CompilationResult compilationResult,
+            Set<File> dependents, Map<File, Exception> failures) {
+        List<RegisteredAlgorithm> loadedAlgorithms = new ArrayList<>();
+        if (files.isEmpty()) {
+            return loadedAlgorithms;
+        }
+        int threads = Math.min(workerThreads, files.size());
+        logger.debug("Loading {} algorithm(s) using {} thread(s)", files.size(), threads);
+        ExecutorService workerPool = Executors.newFixedThreadPool(threads);
+        try {
+            Map<File, Future<RegisteredAlgorithm>> loadings = new LinkedHashMap<>();
+            for (File file : files) {
+                loadings.put(file, workerPool.submit(() -> {
+                    String className = compilationResult.getPrimaryClassName(file);
+                    if (className == null) {
+                        throw new InvalidAlgorithmException("No class named like " + file.getName() + " has been compiled.");
+                    }
+                    ClassLoader classLoader = new BytecodeClassLoader(getClass().getClassLoader(), compilationResult.getClasses());
+                    long start = System.nanoTime();
+                    IAlgorithm algorithm = instantiateJavaAlgorithm(classLoader, className);
+                    metrics.recordAlgorithmLoad(algorithm.getWellKnownName(), System.nanoTime() - start);
+                    ObjectId blobId = compilationResult.getBlobId(file);
+                    if (blobId == null) {
+                        blobId = GitBlobs.idOf(file);
+                    }
+                    RegisteredAlgorithm registered = new RegisteredAlgorithm(file, className, algorithm,
+                            () -> instantiateJavaAlgorithm(classLoader, className),
+                            getDescription(file, blobId, dependents.contains(file), algorithm, className), classLoader, blobId);
+                    prewarmInstancePool(registered);
+                    return registered;
+                }));
+            }
+            for (Map.Entry<File, Future<RegisteredAlgorithm>> loading : loadings.entrySet()) {
+                try {
+                    loadedAlgorithms.add(loading.getValue().get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    failures.put(loading.getKey(), cause instanceof Exception
+                            ? (Exception) cause
+                            : new ExecutionException(cause));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while loading algorithms.");
+        } finally {
+            workerPool.shutdownNow();
+        }
+        return loadedAlgorithms;
     }
 
-    private boolean isDiffEntryOf(File file, String relPathOfDiff) {
-        try {
-            final String canonicalFilePath = file.getCanonicalPath();
-            final Path absoluteFilePath = Paths.get(localPath).resolve(relPathOfDiff);
-            final String canonicalDiffEntryPath = absoluteFilePath.toFile().getCanonicalPath();
-            return canonicalFilePath.equals(canonicalDiffEntryPath);
-        } catch (IOException e) {
-            logger.error("Couldn't determine if {} is equal to {}.", file.getAbsoluteFile(), relPathOfDiff, e);
-            return false;
+    /**
+     * Algorithms are validated when loaded, their descriptions are built on
+     * first access. The description already built for the previously
+     * registered algorithm is kept, as long as neither the source blob nor any
+     * source it depends on has changed.
+     *
+     * @throws InvalidAlgorithmException if the description is not valid
+     */
+    private CachedProcessDescription getDescription(File file, ObjectId blobId, boolean dependenciesChanged, IAlgorithm algorithm,
+            String className) throws Exception {
+        RegisteredAlgorithm previous = registry.get().getRegisteredAlgorithm(file);
+        if (previous != null && blobId.equals(previous.getBlobId()) && !dependenciesChanged
+                && previous.getCachedDescription().isBuilt()) {
+            return previous.getCachedDescription();
         }
+        validateProcessDescription(algorithm, className);
+        return new CachedProcessDescription(algorithm::getDescription);
     }
 
-    private IAlgorithm loadJavaAlgorithm(String algorithmClassName) throws Exception {
-        Class<?> algorithmClass = customClassLoader.loadClass(algorithmClassName);
+    /**
+     * Fills the instance pool of the algorithm, so that concurrent executions
+     * do not have to wait for instances being created.
+     */
+    private void prewarmInstancePool(RegisteredAlgorithm registered) {
+        if (instancePoolSize > 0 && registered.isPoolable()) {
+            try {
+                registered.getInstancePool(instancePoolSize, instancePoolTimeout, TimeUnit.SECONDS).prewarm();
+            } catch (IllegalStateException e) {
+                logger.warn("Could not prewarm instances of algorithm {}: {}", registered.getIdentifier(), e.getMessage());
+            }
+        }
+    }
+
+    private IAlgorithm instantiateJavaAlgorithm(ClassLoader classLoader, String algorithmClassName) throws Exception {
+        Class<?> algorithmClass = classLoader.loadClass(algorithmClassName);
         IAlgorithm algorithm;
         if (IAlgorithm.class.isAssignableFrom(algorithmClass)) {
             algorithm = IAlgorithm.class.cast(algorithmClass.newInstance());
@@ -341,10 +1558,13 @@ public class GitAlgorithmRepository implements IAlgorithmRepository {
             algorithm = new AbstractAnnotatedAlgorithm.Proxy(algorithmClass);
         } else {
             // algorithms can have helper classes
-            throw new Exception(algorithmClassName + " non assignable to IAlgorithm.");
+            throw new InvalidAlgorithmException(algorithmClassName + " non assignable to IAlgorithm.");
         }
+        return algorithm;
+    }
 
-        boolean isNoProcessDescriptionValid = false;
+    private void validateProcessDescription(IAlgorithm algorithm, String algorithmClassName) throws Exception {
+        boolean isNoProcessDescriptionValid = true;
 
         for (String supportedVersion : WPSConfig.SUPPORTED_VERSIONS) {
             isNoProcessDescriptionValid = isNoProcessDescriptionValid && !algorithm.processDescriptionIsValid(supportedVersion);
@@ -352,49 +1572,61 @@ public class GitAlgorithmRepository implements IAlgorithmRepository {
 
         if (isNoProcessDescriptionValid) {
             logger.warn("Algorithm description is not valid: " + algorithmClassName);// TOD add version to exception/log
-            throw new Exception("Could not load algorithm " + algorithmClassName + ". ProcessDescription Not Valid.");
+            throw new InvalidAlgorithmException("Could not load algorithm " + algorithmClassName + ". ProcessDescription Not Valid.");
         }
-
-        return algorithm;
     }
 
-    private void addRAlgorithms(File[] algorithmFiles) {
+    private void addRAlgorithms(Collection<File> algorithmFiles) {
         for (File file : algorithmFiles) {
             if ( !isRFile(file)) {
                 continue;
             }
+            if (objectSourceTree != null || getSourceOf(file) != null) {
+                logger.warn("R algorithms need a working copy, ignoring {} of bare repository.", file.getName());
+                continue;
+            }
             RepositoryManager repoMgr = RepositoryManagerSingletonWrapper.getInstance();
             repoMgr.addAlgorithm(file);
         }
     }
 
-    private void registerCommonDescriptions(IAlgorithm algorithm, String plainFilename) {
-        String algorithmIdentifier = algorithm.getWellKnownName();
-        processDescriptions.put(algorithm, algorithm.getDescription());
+    private void registerAlgorithmEntry(RegisteredAlgorithm registered) {
+        String algorithmIdentifier = registered.getIdentifier();
         AlgorithmEntry algorithmEntry = new AlgorithmEntry(algorithmIdentifier, true);
         gitAlgorithmRepoConfigModule.getAlgorithmEntries().add(algorithmEntry);
-        logger.info("Algorithm class registered: {}" + " identifier: {}", plainFilename, algorithmIdentifier);
+        logger.info("Algorithm class registered: {}" + " identifier: {}", registered.getFile().getName(), algorithmIdentifier);
     }
 
-    private File[] getFiles(File localGitRepoDirectory){
+    private List<File> getFiles(File localGitRepoDirectory){
         final File workingCopy = localGitRepoDirectory.getParentFile();
-        return workingCopy.listFiles(new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String name) {
-                return name.matches(filenameRegex);
-            }
-        });
+        return new WorkingTreeScanner(workingCopy, filenameRegex).scan();
+    }
+
+    /**
+     * @return the metrics of this repository, also available via JMX
+     */
+    public RepositoryMetricsMXBean getMetrics() {
+        return metrics;
     }
 
     @Override
     public boolean containsAlgorithm(String arg0) {
-        return javaAlgorithms.containsKey(arg0)
+        return registry.get().containsAlgorithm(arg0)
                 /*|| rAlgorithms.containsKey(arg0)*/;
     }
 
     @Override
     public IAlgorithm getAlgorithm(String arg0) {
-        return javaAlgorithms.get(arg0);
+        RegisteredAlgorithm registered = registry.get().getRegisteredAlgorithm(arg0);
+        if (registered == null) {
+            return null;
+        }
+        IAlgorithm algorithm = registered.getAlgorithm();
+        if (instancePoolSize > 0 && registered.isPoolable()) {
+            // each execution borrows an instance of its own
+            return PooledAlgorithm.create(algorithm, registered.getInstancePool(instancePoolSize, instancePoolTimeout, TimeUnit.SECONDS));
+        }
+        return algorithm;
 //        return javaAlgorithms.containsKey(arg0)
 //                ? javaAlgorithms.get(arg0)
 //                : rAlgorithms.get(arg0);
@@ -402,19 +1634,22 @@ public class GitAlgorithmRepository implements IAlgorithmRepository {
 
     @Override
     public Collection<String> getAlgorithmNames() {
-        Collection<String> keys = new HashSet<>();
-        keys.addAll(javaAlgorithms.keySet());
-//        keys.addAll(rAlgorithms.keySet());
-        return keys;
+        return registry.get().getAlgorithmNames();
     }
 
+    /**
+     * @return the process description of the algorithm, which has been
+     * validated before it was published. The description is built on first
+     * access.
+     * @throws NullPointerException if there is no such algorithm
+     */
     @Override
     public ProcessDescription getProcessDescription(String arg0) {
-        if ( !containsAlgorithm(arg0)) {
+        AlgorithmRegistry snapshot = registry.get();
+        if ( !snapshot.containsAlgorithm(arg0)) {
             throw new NullPointerException("No 'null' algorithm!");
         }
-        IAlgorithm algorithm = getAlgorithm(arg0);
-        return processDescriptions.get(algorithm);
+        return snapshot.getRegisteredAlgorithm(arg0).getDescription();
     }
 
     boolean removeRAlgorithmGlobally(File file) {
@@ -435,8 +1670,24 @@ public class GitAlgorithmRepository implements IAlgorithmRepository {
 
     @Override
     public void shutdown() {
-        repositoryWatcher.stop();
-        localRepo.close();
+        initializer.shutdownNow();
+        retryScheduler.shutdownNow();
+        writeSnapshot();
+        metrics.unregister();
+        if (fetchScheduler != null) {
+            fetchScheduler.stop();
+        }
+        sourceFetchSchedulers.forEach(FetchScheduler::stop);
+        sources.forEach(AlgorithmSource::close);
+        if (compileWorkerPool != null) {
+            compileWorkerPool.close();
+        }
+        if (repositoryWatcher != null) {
+            repositoryWatcher.stop();
+        }
+        if (localRepo != null) {
+            localRepo.close();
+        }
     }
 
 }
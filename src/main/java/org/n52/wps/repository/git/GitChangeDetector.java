@@ -0,0 +1,275 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects changes by polling git instead of relying on file system
+ * notifications, which are unreliable on overlay or network file systems.
+ * Each run compares the current HEAD tree and the working tree status against
+ * the state of the previous run:
+ * <ul>
+ * <li>the HEAD trees are diffed, visiting only subtrees with differing ids</li>
+ * <li>the working tree status is determined by an {@link IndexDiff}, which
+ * only hashes files whose size or modification time differ from the index</li>
+ * </ul>
+ * Only the paths reported by either are compared further, so the cost of a
+ * run depends on the number of changed entries.
+ */
+public class GitChangeDetector implements ChangeDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitChangeDetector.class);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "git-change-detector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Repository repository;
+
+    private final File workingCopy;
+
+    private final WatchListener listener;
+
+    private final long interval;
+
+    private final AtomicLong detectedChanges = new AtomicLong();
+
+    private ObjectId lastTree;
+
+    /**
+     * Working tree content of the paths differing from HEAD on the last run,
+     * <code>null</code> content for missing files.
+     */
+    private Map<String, WorkingFile> lastDirty = new HashMap<>();
+
+    /**
+     * @param repository the repository to detect changes in
+     * @param workingCopy the directory the changed files are resolved against
+     * @param listener the listener to notify about changes
+     * @param interval milliseconds between two runs
+     */
+    public GitChangeDetector(Repository repository, File workingCopy, WatchListener listener, long interval) {
+        this.repository = repository;
+        this.workingCopy = workingCopy;
+        this.listener = listener;
+        this.interval = interval;
+    }
+
+    @Override
+    public GitChangeDetector start() {
+        try {
+            detectChanges();
+        } catch (IOException e) {
+            logger.warn("Could not determine state of {}, first run will report all files.", workingCopy, e);
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                FileChanges changes = detectChanges();
+                detectedChanges.addAndGet(changes.size());
+                if ( !changes.isEmpty()) {
+                    logger.info("Handling changes of {} file(s) in {}", changes.size(), workingCopy);
+                    listener.handleChanges(changes);
+                }
+            } catch (Exception e) {
+                logger.error("Could not detect changes in {}", workingCopy, e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    @Override
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public long getDetectedChangeCount() {
+        return detectedChanges.get();
+    }
+
+    /**
+     * @return always <code>0</code>, as changes are passed to the listener
+     * right after each poll
+     */
+    @Override
+    public int getPendingChangeCount() {
+        return 0;
+    }
+
+    /**
+     * Determines the changes since the last run.
+     *
+     * @return the changes since the last run
+     * @throws IOException if reading the repository fails
+     */
+    synchronized FileChanges detectChanges() throws IOException {
+        ObjectId currentTree = repository.resolve(Constants.HEAD + "^{tree}");
+        Map<String, WorkingFile> currentDirty = getDirtyFiles();
+
+        Set<String> candidates = new HashSet<>();
+        if (currentTree == null || !currentTree.equals(lastTree)) {
+            candidates.addAll(getChangedPaths(lastTree, currentTree));
+        }
+        candidates.addAll(lastDirty.keySet());
+        candidates.addAll(currentDirty.keySet());
+
+        FileChanges changes = new FileChanges();
+        for (String path : candidates) {
+            ObjectId before = getContent(lastTree, lastDirty, path);
+            ObjectId after = getContent(currentTree, currentDirty, path);
+            File file = new File(workingCopy, path);
+            if (before == null && after != null) {
+                changes.created(file);
+            } else if (before != null && after == null) {
+                changes.deleted(file);
+            } else if (before != null && !before.equals(after)) {
+                changes.modified(file);
+            }
+        }
+        lastTree = currentTree;
+        lastDirty = currentDirty;
+        return changes;
+    }
+
+    private Map<String, WorkingFile> getDirtyFiles() throws IOException {
+        IndexDiff indexDiff = new IndexDiff(repository, Constants.HEAD, new FileTreeIterator(repository));
+        indexDiff.diff();
+        Set<String> paths = new HashSet<>();
+        paths.addAll(indexDiff.getAdded());
+        paths.addAll(indexDiff.getChanged());
+        paths.addAll(indexDiff.getRemoved());
+        paths.addAll(indexDiff.getMissing());
+        paths.addAll(indexDiff.getModified());
+        paths.addAll(indexDiff.getUntracked());
+        paths.addAll(indexDiff.getConflicting());
+
+        Map<String, WorkingFile> dirty = new HashMap<>();
+        for (String path : paths) {
+            dirty.put(path, WorkingFile.of(new File(workingCopy, path), lastDirty.get(path)));
+        }
+        return dirty;
+    }
+
+    private Set<String> getChangedPaths(ObjectId oldTree, ObjectId newTree) throws IOException {
+        Set<String> paths = new HashSet<>();
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            walk.addTree(toTreeIterator(walk, oldTree));
+            walk.addTree(toTreeIterator(walk, newTree));
+            walk.setRecursive(true);
+            walk.setFilter(TreeFilter.ANY_DIFF);
+            while (walk.next()) {
+                paths.add(walk.getPathString());
+            }
+        }
+        return paths;
+    }
+
+    private AbstractTreeIterator toTreeIterator(TreeWalk walk, ObjectId tree) throws IOException {
+        if (tree == null) {
+            return new EmptyTreeIterator();
+        }
+        CanonicalTreeParser parser = new CanonicalTreeParser();
+        parser.reset(walk.getObjectReader(), tree);
+        return parser;
+    }
+
+    private ObjectId getContent(ObjectId tree, Map<String, WorkingFile> dirty, String path) throws IOException {
+        if (dirty.containsKey(path)) {
+            WorkingFile workingFile = dirty.get(path);
+            return workingFile != null
+                    ? workingFile.id
+                    : null;
+        }
+        if (tree == null) {
+            return null;
+        }
+        try (TreeWalk walk = TreeWalk.forPath(repository, path, tree)) {
+            return walk != null
+                    ? walk.getObjectId(0)
+                    : null;
+        }
+    }
+
+    /**
+     * Content id of a file in the working tree. The id of the previous run is
+     * reused as long as size and modification time are unchanged.
+     */
+    private static class WorkingFile {
+
+        private final long lastModified;
+
+        private final long length;
+
+        private final ObjectId id;
+
+        private WorkingFile(long lastModified, long length, ObjectId id) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.id = id;
+        }
+
+        static WorkingFile of(File file, WorkingFile previous) throws IOException {
+            if ( !file.isFile()) {
+                return null;
+            }
+            long lastModified = file.lastModified();
+            long length = file.length();
+            if (previous != null && previous.lastModified == lastModified && previous.length == length) {
+                return previous;
+            }
+            return new WorkingFile(lastModified, length, GitBlobs.idOf(file));
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Sources read as blobs of a git tree straight from the object database, no
+ * working copy is needed. The tree can be switched, e.g. after the branch has
+ * been moved by a fetch.
+ */
+public class GitObjectSourceTree implements SourceTree {
+
+    private final Repository repository;
+
+    private final File root;
+
+    private volatile ObjectId tree;
+
+    /**
+     * @param repository the repository to read objects from
+     * @param root the (virtual) root directory of the sources
+     * @param tree the id of the tree to read sources from
+     */
+    public GitObjectSourceTree(Repository repository, File root, ObjectId tree) {
+        this.repository = repository;
+        this.root = root;
+        this.tree = tree;
+    }
+
+    @Override
+    public File getRoot() {
+        return root;
+    }
+
+    public ObjectId getTree() {
+        return tree;
+    }
+
+    public void setTree(ObjectId tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * @param filenamePattern the pattern file names have to match
+     * @return all files of the tree with matching names
+     * @throws IOException if the tree could not be read
+     */
+    public List<File> findFiles(Pattern filenamePattern) throws IOException {
+        List<File> files = new ArrayList<>();
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            walk.addTree(tree);
+            walk.setRecursive(true);
+            while (walk.next()) {
+                if (isFile(walk) && filenamePattern.matcher(walk.getNameString()).matches()) {
+                    files.add(new File(root, walk.getPathString()));
+                }
+            }
+        }
+        return files;
+    }
+
+    @Override
+    public ObjectId getBlobId(File source) throws IOException {
+        try (TreeWalk walk = TreeWalk.forPath(repository, toPath(source), tree)) {
+            return walk != null && isFile(walk)
+                    ? walk.getObjectId(0)
+                    : null;
+        }
+    }
+
+    @Override
+    public byte[] read(File source) throws IOException {
+        ObjectId blobId = getBlobId(source);
+        if (blobId == null) {
+            throw new FileNotFoundException(toPath(source) + " not found in tree " + tree.name());
+        }
+        try (ObjectReader reader = repository.newObjectReader()) {
+            return reader.open(blobId, Constants.OBJ_BLOB).getBytes();
+        }
+    }
+
+    @Override
+    public List<File> listSources(String packagePath) throws IOException {
+        List<File> sources = new ArrayList<>();
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            if (packagePath.isEmpty()) {
+                walk.addTree(tree);
+            } else {
+                try (TreeWalk packageWalk = TreeWalk.forPath(repository, packagePath, tree)) {
+                    if (packageWalk == null || packageWalk.getFileMode(0) != FileMode.TREE) {
+                        return sources;
+                    }
+                    walk.addTree(packageWalk.getObjectId(0));
+                }
+            }
+            while (walk.next()) {
+                if (isFile(walk) && walk.getNameString().endsWith(".java")) {
+                    sources.add(new File(new File(root, packagePath), walk.getNameString()));
+                }
+            }
+        }
+        return sources;
+    }
+
+    private static boolean isFile(TreeWalk walk) {
+        return (walk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE;
+    }
+
+    private String toPath(File source) {
+        return root.getAbsoluteFile().toPath()
+                .relativize(source.getAbsoluteFile().toPath())
+                .toString()
+                .replace(File.separatorChar, '/');
+    }
+
+}
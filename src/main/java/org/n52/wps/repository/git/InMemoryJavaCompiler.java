@@ -0,0 +1,351 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles a batch of algorithm sources within a single compiler task. Sources
+ * are read from a {@link SourceTree} and the generated bytecode is kept in
+ * memory, so no class files are written next to the sources and sources do
+ * not have to exist on disk.
+ */
+public class InMemoryJavaCompiler implements JavaAlgorithmCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryJavaCompiler.class);
+
+    private static final List<String> COMPILER_OPTIONS = Arrays.asList("-proc:none", "-encoding", StandardCharsets.UTF_8.name());
+
+    private final JavaCompiler compiler;
+
+    private final SourceTree sourceTree;
+
+    private final String classPath;
+
+    private final String fingerprint;
+
+    /**
+     * @param sourcePath root directory to resolve sources referenced by, but
+     * not included in a batch (e.g. helper classes)
+     */
+    public InMemoryJavaCompiler(File sourcePath) {
+        this(new WorkingCopySourceTree(sourcePath));
+    }
+
+    /**
+     * @param sourceTree the tree to read sources from, also used to resolve
+     * sources referenced by, but not included in a batch
+     */
+    public InMemoryJavaCompiler(SourceTree sourceTree) {
+        this(sourceTree, InMemoryJavaCompiler.class.getClassLoader());
+    }
+
+    public InMemoryJavaCompiler(SourceTree sourceTree, ClassLoader classLoader) {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        this.sourceTree = sourceTree;
+        this.classPath = createClassPath(classLoader);
+        this.fingerprint = createFingerprint(classPath);
+        if (compiler == null) {
+            logger.error("No system Java compiler available. Is the WPS running on a JRE instead of a JDK?");
+        }
+    }
+
+    /**
+     * Compiles the given sources. Sources with compile errors are excluded
+     * and the remaining sources are compiled again, so that a single broken
+     * algorithm does not prevent all others from being compiled. Errors in
+     * referenced sources only, e.g. a broken helper, fail those sources of the
+     * batch which still fail when compiled apart from the others.
+     *
+     * @param sources the Java source files to compile
+     * @return the compiled classes and per source errors
+     */
+    @Override
+    public CompilationResult compile(Collection<File> sources) {
+        CompilationResult result = new CompilationResult();
+        if (sources.isEmpty()) {
+            return result;
+        }
+        if (compiler == null) {
+            sources.forEach(source -> result.addError(source, "No system Java compiler available."));
+            return result;
+        }
+        compileExcludingFailures(new LinkedHashSet<>(sources), result);
+        return result;
+    }
+
+    private void compileExcludingFailures(Set<File> remaining, CompilationResult result) {
+        while ( !remaining.isEmpty()) {
+            CompilationResult attempt = new CompilationResult();
+            boolean success = compile(remaining, attempt);
+            if (success) {
+                attempt.getClasses().forEach((className, bytecode) -> result
+                        .addClass(className, attempt.getSourceOf(className), bytecode));
+                return;
+            }
+
+            Set<File> failed = new HashSet<>(attempt.getFailedSources());
+            failed.stream()
+                    // referenced sources fail again in each part of the batch
+                    .filter(source -> !result.hasErrors(source))
+                    .forEach(source -> attempt.getErrors(source)
+                            .forEach(message -> result.addError(source, message)));
+            if ( !remaining.removeAll(failed)) {
+                // errors in sources not part of the batch, e.g. a broken helper
+                if (remaining.size() == 1) {
+                    remaining.forEach(source -> result.addError(source, "Compilation failed due to errors in referenced sources: " + failed));
+                    return;
+                }
+                List<File> batch = new ArrayList<>(remaining);
+                int half = batch.size() / 2;
+                compileExcludingFailures(new LinkedHashSet<>(batch.subList(0, half)), result);
+                compileExcludingFailures(new LinkedHashSet<>(batch.subList(half, batch.size())), result);
+                return;
+            }
+        }
+    }
+
+    private boolean compile(Collection<File> sources, CompilationResult result) {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        try (InMemoryFileManager fileManager = new InMemoryFileManager(standardFileManager, sourceTree, result)) {
+            List<JavaFileObject> compilationUnits = new ArrayList<>();
+            for (File source : sources) {
+                compilationUnits.add(new SourceFileObject(source, null, sourceTree));
+            }
+            List<String> options = new ArrayList<>(COMPILER_OPTIONS);
+            options.add("-classpath");
+            options.add(classPath);
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits).call();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    File source = toFile(diagnostic.getSource());
+                    result.addError(source, String.format("%s:%d: %s",
+                            source != null ? source.getName() : "?",
+                            diagnostic.getLineNumber(),
+                            diagnostic.getMessage(null)));
+                }
+            }
+            return success;
+        } catch (IOException e) {
+            logger.error("Could not close file manager.", e);
+            return false;
+        }
+    }
+
+    @Override
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Creates a fingerprint over the Java runtime, compiler options and the
+     * classpath entries including their size and modification time.
+     */
+    static String createFingerprint(String classPath) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder sb = new StringBuilder()
+                    .append(System.getProperty("java.vendor")).append('\n')
+                    .append(System.getProperty("java.version")).append('\n')
+                    .append(COMPILER_OPTIONS).append('\n');
+            for (String entry : classPath.split(File.pathSeparator)) {
+                File file = new File(entry);
+                sb.append(entry).append(':')
+                        .append(file.length()).append(':')
+                        .append(file.lastModified()).append('\n');
+            }
+            digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return ObjectId.fromRaw(digest.digest()).name();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available.", e);
+        }
+    }
+
+    private static File toFile(FileObject fileObject) {
+        if (fileObject == null) {
+            return null;
+        }
+        if (fileObject instanceof SourceFileObject) {
+            return ((SourceFileObject) fileObject).source;
+        }
+        URI uri = fileObject.toUri();
+        return "file".equals(uri.getScheme())
+                ? new File(uri)
+                : null;
+    }
+
+    static String createClassPath(ClassLoader classLoader) {
+        Set<String> entries = new LinkedHashSet<>();
+        for (ClassLoader cl = classLoader; cl != null; cl = cl.getParent()) {
+            if (cl instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) cl).getURLs()) {
+                    try {
+                        entries.add(new File(url.toURI()).getAbsolutePath());
+                    } catch (URISyntaxException | IllegalArgumentException e) {
+                        logger.debug("Ignoring classpath entry {}", url);
+                    }
+                }
+            }
+        }
+        entries.addAll(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * A source read from a {@link SourceTree}.
+     */
+    private static class SourceFileObject extends SimpleJavaFileObject {
+
+        private final File source;
+
+        private final String binaryName;
+
+        private final SourceTree sourceTree;
+
+        SourceFileObject(File source, String binaryName, SourceTree sourceTree) {
+            super(source.getAbsoluteFile().toURI(), JavaFileObject.Kind.SOURCE);
+            this.source = source;
+            this.binaryName = binaryName;
+            this.sourceTree = sourceTree;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
+            return new String(sourceTree.read(source), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Serves the source path from the {@link SourceTree} and captures compiler
+     * output in memory instead of writing class files.
+     */
+    private static class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final SourceTree sourceTree;
+
+        private final CompilationResult result;
+
+        InMemoryFileManager(StandardJavaFileManager fileManager, SourceTree sourceTree, CompilationResult result) {
+            super(fileManager);
+            this.sourceTree = sourceTree;
+            this.result = result;
+        }
+
+        @Override
+        public boolean hasLocation(Location location) {
+            return location == StandardLocation.SOURCE_PATH || super.hasLocation(location);
+        }
+
+        @Override
+        public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse)
+                throws IOException {
+            if (location != StandardLocation.SOURCE_PATH) {
+                return super.list(location, packageName, kinds, recurse);
+            }
+            List<JavaFileObject> sources = new ArrayList<>();
+            if (kinds.contains(JavaFileObject.Kind.SOURCE)) {
+                // the compiler does not list the source path recursively
+                String packagePath = packageName.replace('.', '/');
+                for (File source : sourceTree.listSources(packagePath)) {
+                    String simpleName = source.getName().substring(0, source.getName().length() - ".java".length());
+                    String binaryName = packageName.isEmpty()
+                            ? simpleName
+                            : packageName + "." + simpleName;
+                    sources.add(new SourceFileObject(source, binaryName, sourceTree));
+                }
+            }
+            return sources;
+        }
+
+        @Override
+        public String inferBinaryName(Location location, JavaFileObject file) {
+            return file instanceof SourceFileObject
+                    ? ((SourceFileObject) file).binaryName
+                    : super.inferBinaryName(location, file);
+        }
+
+        @Override
+        public boolean isSameFile(FileObject a, FileObject b) {
+            return a instanceof SourceFileObject || b instanceof SourceFileObject
+                    ? a.toUri().equals(b.toUri())
+                    : super.isSameFile(a, b);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            final File source = toFile(sibling);
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() throws IOException {
+                            super.close();
+                            result.addClass(className, source, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+}
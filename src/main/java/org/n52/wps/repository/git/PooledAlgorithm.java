@@ -0,0 +1,247 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+
+import org.n52.wps.io.data.IData;
+import org.n52.wps.server.ExceptionReport;
+import org.n52.wps.server.IAlgorithm;
+import org.n52.wps.server.ProcessDescription;
+import org.n52.wps.server.observerpattern.IObserver;
+import org.n52.wps.server.observerpattern.ISubject;
+
+/**
+ * Runs each execution on an instance borrowed from an
+ * {@link AlgorithmInstancePool}. The instance is returned as soon as the
+ * execution has finished, its errors are kept for {@link #getErrors()}.
+ * Everything else is answered by the registered instance, as it does not
+ * depend on the state of an execution.
+ * <p>
+ * Use {@link #create(IAlgorithm, AlgorithmInstancePool)} to keep reporting
+ * the status of observable algorithms.
+ */
+public class PooledAlgorithm implements IAlgorithm {
+
+    private final IAlgorithm registered;
+
+    private final AlgorithmInstancePool pool;
+
+    private volatile List<String> errors = Collections.emptyList();
+
+    /**
+     * @param registered the registered instance answering everything but
+     * executions
+     * @param pool the pool to borrow an instance from for each execution
+     */
+    public PooledAlgorithm(IAlgorithm registered, AlgorithmInstancePool pool) {
+        this.registered = registered;
+        this.pool = pool;
+    }
+
+    /**
+     * @param registered the registered instance answering everything but
+     * executions
+     * @param pool the pool to borrow an instance from for each execution
+     * @return the pooled algorithm, an {@link ISubject} as well if the
+     * registered instance is observable
+     */
+    public static PooledAlgorithm create(IAlgorithm registered, AlgorithmInstancePool pool) {
+        return registered instanceof ISubject
+                ? new ObservablePooledAlgorithm(registered, pool)
+                : new PooledAlgorithm(registered, pool);
+    }
+
+    @Override
+    public Map<String, IData> run(Map<String, List<IData>> inputData) throws ExceptionReport {
+        IAlgorithm instance = borrow();
+        int previousErrors = countErrors(instance);
+        started(instance);
+        try {
+            Map<String, IData> result = instance.run(inputData);
+            errors = getErrorsSince(instance, previousErrors);
+            finished(instance);
+            pool.giveBack(instance);
+            return result;
+        } catch (ExceptionReport | RuntimeException | Error e) {
+            errors = getErrorsSince(instance, previousErrors);
+            finished(instance);
+            pool.discard(instance);
+            throw e;
+        }
+    }
+
+    /**
+     * Called before the borrowed instance runs.
+     */
+    protected void started(IAlgorithm instance) {
+    }
+
+    /**
+     * Called after the borrowed instance has run, before it is given back.
+     */
+    protected void finished(IAlgorithm instance) {
+    }
+
+    private IAlgorithm borrow() throws ExceptionReport {
+        try {
+            return pool.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExceptionReport("Interrupted while waiting for an instance of " + getWellKnownName(),
+                    ExceptionReport.NO_APPLICABLE_CODE, e);
+        } catch (TimeoutException e) {
+            throw new ExceptionReport("No instance of " + getWellKnownName() + " available: " + e.getMessage(),
+                    ExceptionReport.SERVER_BUSY, e);
+        } catch (IllegalStateException e) {
+            throw new ExceptionReport("Could not instantiate " + getWellKnownName(), ExceptionReport.NO_APPLICABLE_CODE, e);
+        }
+    }
+
+    /**
+     * Instances are reused, so the errors of previous executions are skipped.
+     */
+    private static List<String> getErrorsSince(IAlgorithm instance, int previousErrors) {
+        List<String> all = instance.getErrors();
+        return all == null || all.size() <= previousErrors
+                ? Collections.<String>emptyList()
+                : new ArrayList<>(all.subList(previousErrors, all.size()));
+    }
+
+    private static int countErrors(IAlgorithm instance) {
+        List<String> all = instance.getErrors();
+        return all == null
+                ? 0
+                : all.size();
+    }
+
+    @Override
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public ProcessDescription getDescription() {
+        return registered.getDescription();
+    }
+
+    @Override
+    public String getWellKnownName() {
+        return registered.getWellKnownName();
+    }
+
+    @Override
+    public boolean processDescriptionIsValid(String version) {
+        return registered.processDescriptionIsValid(version);
+    }
+
+    @Override
+    public Class<?> getInputDataType(String id) {
+        return registered.getInputDataType(id);
+    }
+
+    @Override
+    public Class<?> getOutputDataType(String id) {
+        return registered.getOutputDataType(id);
+    }
+
+    /**
+     * Observers of an execution, e.g. the execute request reporting its
+     * status, observe the instance borrowed for the execution while it runs.
+     */
+    private static class ObservablePooledAlgorithm extends PooledAlgorithm implements ISubject {
+
+        private final List<IObserver> observers = new CopyOnWriteArrayList<>();
+
+        private volatile ISubject running;
+
+        ObservablePooledAlgorithm(IAlgorithm registered, AlgorithmInstancePool pool) {
+            super(registered, pool);
+        }
+
+        @Override
+        protected void started(IAlgorithm instance) {
+            ISubject subject = (ISubject) instance;
+            observers.forEach(subject::addObserver);
+            running = subject;
+        }
+
+        @Override
+        protected void finished(IAlgorithm instance) {
+            running = null;
+            ISubject subject = (ISubject) instance;
+            observers.forEach(subject::removeObserver);
+        }
+
+        @Override
+        public void addObserver(IObserver o) {
+            observers.add(o);
+            ISubject subject = running;
+            if (subject != null) {
+                subject.addObserver(o);
+            }
+        }
+
+        @Override
+        public void removeObserver(IObserver o) {
+            observers.remove(o);
+            ISubject subject = running;
+            if (subject != null) {
+                subject.removeObserver(o);
+            }
+        }
+
+        /**
+         * @return the state of the running execution, <code>null</code> if not
+         * running
+         */
+        @Override
+        public Object getState() {
+            ISubject subject = running;
+            return subject != null
+                    ? subject.getState()
+                    : null;
+        }
+
+        @Override
+        public void update(Object state) {
+            ISubject subject = running;
+            if (subject != null) {
+                subject.update(state);
+            }
+        }
+
+    }
+
+}
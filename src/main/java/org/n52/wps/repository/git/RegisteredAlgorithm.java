@@ -0,0 +1,240 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.n52.wps.server.IAlgorithm;
+import org.n52.wps.server.ProcessDescription;
+
+/**
+ * An algorithm loaded from a file of the repository along with its process
+ * description and the class loader defining its classes. Descriptions are
+ * built on first access, algorithms restored from a {@link RegistrySnapshot}
+ * are instantiated on first access as well. Algorithms which can be
+ * instantiated repeatedly provide an {@link AlgorithmInstancePool} for
+ * concurrent executions.
+ */
+public class RegisteredAlgorithm {
+
+    private final File file;
+
+    private final String identifier;
+
+    private final String className;
+
+    private final Callable<IAlgorithm> algorithmFactory;
+
+    private volatile IAlgorithm algorithm;
+
+    private volatile AlgorithmInstancePool instancePool;
+
+    private final CachedProcessDescription description;
+
+    private final ClassLoader classLoader;
+
+    private final ObjectId blobId;
+
+    public RegisteredAlgorithm(File file, IAlgorithm algorithm, ProcessDescription description, ClassLoader classLoader) {
+        this(file, algorithm, description, classLoader, null);
+    }
+
+    public RegisteredAlgorithm(File file, IAlgorithm algorithm, ProcessDescription description, ClassLoader classLoader,
+            ObjectId blobId) {
+        this(file, algorithm.getClass().getName(), algorithm, new CachedProcessDescription(description), classLoader, blobId);
+    }
+
+    /**
+     * @param file the file the algorithm has been loaded from
+     * @param className the name of the algorithm class compiled from the file
+     * @param algorithm the algorithm instance
+     * @param description the process description, built on first access
+     * @param classLoader the class loader defining the algorithm classes
+     * @param blobId the git blob id of the source
+     */
+    public RegisteredAlgorithm(File file, String className, IAlgorithm algorithm, CachedProcessDescription description,
+            ClassLoader classLoader, ObjectId blobId) {
+        this(file, className, algorithm, null, description, classLoader, blobId);
+    }
+
+    /**
+     * @param file the file the algorithm has been loaded from
+     * @param className the name of the algorithm class compiled from the file
+     * @param algorithm the algorithm instance
+     * @param algorithmFactory creates further instances for an
+     * {@link AlgorithmInstancePool}, <code>null</code> if the algorithm cannot
+     * be pooled
+     * @param description the process description, built on first access
+     * @param classLoader the class loader defining the algorithm classes
+     * @param blobId the git blob id of the source
+     */
+    public RegisteredAlgorithm(File file, String className, IAlgorithm algorithm, Callable<IAlgorithm> algorithmFactory,
+            CachedProcessDescription description, ClassLoader classLoader, ObjectId blobId) {
+        this.file = file;
+        this.identifier = algorithm.getWellKnownName();
+        this.className = className;
+        this.algorithmFactory = algorithmFactory;
+        this.algorithm = algorithm;
+        this.description = description;
+        this.classLoader = classLoader;
+        this.blobId = blobId;
+    }
+
+    /**
+     * Creates an algorithm which is instantiated on first access.
+     *
+     * @param file the file the algorithm has been loaded from
+     * @param identifier the algorithm identifier
+     * @param className the name of the algorithm class compiled from the file
+     * @param algorithmFactory instantiates the algorithm
+     * @param description the process description, built on first access
+     * @param classLoader the class loader defining the algorithm classes
+     * @param blobId the git blob id of the source
+     */
+    public RegisteredAlgorithm(File file, String identifier, String className, Callable<IAlgorithm> algorithmFactory,
+            CachedProcessDescription description, ClassLoader classLoader, ObjectId blobId) {
+        this.file = file;
+        this.identifier = identifier;
+        this.className = className;
+        this.algorithmFactory = algorithmFactory;
+        this.description = description;
+        this.classLoader = classLoader;
+        this.blobId = blobId;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the algorithm, instantiated on first access if needed
+     * @throws IllegalStateException if the algorithm cannot be instantiated
+     */
+    public IAlgorithm getAlgorithm() {
+        IAlgorithm current = algorithm;
+        if (current == null) {
+            synchronized (this) {
+                if (algorithm == null) {
+                    try {
+                        algorithm = algorithmFactory.call();
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Could not instantiate " + className, e);
+                    }
+                }
+                current = algorithm;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return <code>true</code> if further instances can be created for an
+     * {@link AlgorithmInstancePool}
+     */
+    public boolean isPoolable() {
+        return algorithmFactory != null;
+    }
+
+    /**
+     * @param maxSize the maximum pool size, if the pool is created by this call
+     * @param timeout the maximum time to wait for an instance, if the pool is
+     * created by this call
+     * @param timeoutUnit the unit of the timeout
+     * @return the pool of instances of this algorithm, created on first access
+     * @throws IllegalStateException if the algorithm is not poolable
+     */
+    public AlgorithmInstancePool getInstancePool(int maxSize, long timeout, TimeUnit timeoutUnit) {
+        if ( !isPoolable()) {
+            throw new IllegalStateException("Algorithm " + identifier + " cannot be pooled.");
+        }
+        AlgorithmInstancePool current = instancePool;
+        if (current == null) {
+            synchronized (this) {
+                if (instancePool == null) {
+                    instancePool = new AlgorithmInstancePool(algorithmFactory, maxSize, timeout, timeoutUnit);
+                }
+                current = instancePool;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return <code>true</code> if the algorithm has been instantiated
+     */
+    public boolean isInstantiated() {
+        return algorithm != null;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the process description, built on first access
+     * @throws IllegalStateException if the description cannot be built or is
+     * not valid
+     */
+    public ProcessDescription getDescription() {
+        return description.get();
+    }
+
+    /**
+     * @return the cached description, also providing the rendered XML of each
+     * WPS version
+     */
+    public CachedProcessDescription getCachedDescription() {
+        return description;
+    }
+
+    /**
+     * @return the class loader owned by this algorithm, which becomes
+     * unreachable once the algorithm has been replaced and executions in
+     * flight have finished
+     */
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    /**
+     * @return the git blob id of the source the algorithm has been loaded
+     * from or <code>null</code> if unknown
+     */
+    public ObjectId getBlobId() {
+        return blobId;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+}
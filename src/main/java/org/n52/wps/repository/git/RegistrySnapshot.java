@@ -0,0 +1,385 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.SchemaTypeLoader;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.eclipse.jgit.lib.ObjectId;
+import org.n52.wps.commons.WPSConfig;
+import org.n52.wps.server.ProcessDescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persisted state of the registered algorithms: for each algorithm the file,
+ * identifier, class name, blob id, bytecode and the process descriptions, if
+ * these have been built already. A
+ * snapshot is taken at a commit and only valid as long as the repository has
+ * not moved, restoring it needs neither compiling nor describing algorithms.
+ * <p>
+ * Algorithms compiled in the same run share their bytecode, which is written
+ * once per compilation run.
+ */
+public class RegistrySnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegistrySnapshot.class);
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final char DOCUMENT_TYPE = 'D';
+
+    private static final char TYPE = 'T';
+
+    private final ObjectId commitId;
+
+    private final List<Entry> entries;
+
+    private RegistrySnapshot(ObjectId commitId, List<Entry> entries) {
+        this.commitId = commitId;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return the commit the snapshot has been taken at
+     */
+    public ObjectId getCommitId() {
+        return commitId;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Writes the algorithms of a registry. Algorithms without known bytecode
+     * are left out and loaded as usual on the next start. Descriptions are
+     * written only if they have been built and can be restored. The snapshot is written to a temporary file
+     * and moved into place, so a crash never leaves a partial snapshot.
+     *
+     * @param file the snapshot file
+     * @param commitId the commit the registered algorithms have been loaded
+     * from
+     * @param registry the registry to write
+     * @return the number of written algorithms
+     * @throws IOException if writing fails
+     */
+    public static int write(File file, ObjectId commitId, AlgorithmRegistry registry) throws IOException {
+        Map<Map<String, byte[]>, Integer> classPool = new IdentityHashMap<>();
+        List<Map<String, byte[]>> pooledClasses = new ArrayList<>();
+        Map<RegisteredAlgorithm, Map<String, SerializedDescription>> descriptions = new LinkedHashMap<>();
+        for (RegisteredAlgorithm registered : registry.getRegisteredAlgorithms()) {
+            if ( !(registered.getClassLoader() instanceof BytecodeClassLoader) || registered.getBlobId() == null) {
+                continue;
+            }
+            Map<String, SerializedDescription> serializedDescription = null;
+            if (registered.getCachedDescription().isBuilt()) {
+                serializedDescription = serialize(registered.getDescription());
+                if (serializedDescription == null) {
+                    logger.debug("Not writing description of algorithm {} without restorable schema type.", registered.getIdentifier());
+                }
+            }
+            Map<String, byte[]> classes = ((BytecodeClassLoader) registered.getClassLoader()).getClasses();
+            if ( !classPool.containsKey(classes)) {
+                classPool.put(classes, pooledClasses.size());
+                pooledClasses.add(classes);
+            }
+            descriptions.put(registered, serializedDescription);
+        }
+
+        Path snapshotFile = file.toPath();
+        Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+        Path tmpFile = Files.createTempFile(snapshotFile.toAbsolutePath().getParent(), file.getName(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmpFile);
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+            data.writeInt(FORMAT_VERSION);
+            data.writeUTF(commitId.name());
+            data.writeInt(pooledClasses.size());
+            for (Map<String, byte[]> classes : pooledClasses) {
+                data.writeInt(classes.size());
+                for (Map.Entry<String, byte[]> compiledClass : classes.entrySet()) {
+                    data.writeUTF(compiledClass.getKey());
+                    data.writeInt(compiledClass.getValue().length);
+                    data.write(compiledClass.getValue());
+                }
+            }
+            data.writeInt(descriptions.size());
+            for (Map.Entry<RegisteredAlgorithm, Map<String, SerializedDescription>> entry : descriptions.entrySet()) {
+                RegisteredAlgorithm registered = entry.getKey();
+                data.writeUTF(registered.getFile().getAbsolutePath());
+                data.writeUTF(registered.getIdentifier());
+                data.writeUTF(registered.getClassName());
+                data.writeUTF(registered.getBlobId().name());
+                data.writeInt(classPool.get(((BytecodeClassLoader) registered.getClassLoader()).getClasses()));
+                if (entry.getValue() == null) {
+                    data.writeInt(-1);
+                    continue;
+                }
+                data.writeInt(entry.getValue().size());
+                for (Map.Entry<String, SerializedDescription> description : entry.getValue().entrySet()) {
+                    data.writeUTF(description.getKey());
+                    data.writeUTF(description.getValue().schemaType);
+                    writeLongString(data, description.getValue().xml);
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpFile);
+            throw e;
+        }
+        try {
+            Files.move(tmpFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return descriptions.size();
+    }
+
+    /**
+     * @param file the snapshot file
+     * @return the snapshot or <code>null</code> if there is no snapshot in the
+     * current format
+     * @throws IOException if reading fails
+     */
+    public static RegistrySnapshot read(File file) throws IOException {
+        if ( !file.isFile()) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath());
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            ObjectId commitId = ObjectId.fromString(data.readUTF());
+            List<Map<String, byte[]>> pooledClasses = new ArrayList<>();
+            int poolSize = data.readInt();
+            for (int i = 0; i < poolSize; i++) {
+                Map<String, byte[]> classes = new HashMap<>();
+                int classCount = data.readInt();
+                for (int j = 0; j < classCount; j++) {
+                    String className = data.readUTF();
+                    byte[] bytecode = new byte[data.readInt()];
+                    data.readFully(bytecode);
+                    classes.put(className, bytecode);
+                }
+                pooledClasses.add(Collections.unmodifiableMap(classes));
+            }
+            List<Entry> entries = new ArrayList<>();
+            int entryCount = data.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                File algorithmFile = new File(data.readUTF());
+                String identifier = data.readUTF();
+                String className = data.readUTF();
+                ObjectId blobId = ObjectId.fromString(data.readUTF());
+                Map<String, byte[]> classes = pooledClasses.get(data.readInt());
+                Map<String, SerializedDescription> serializedDescription = null;
+                int versionCount = data.readInt();
+                if (versionCount >= 0) {
+                    serializedDescription = new LinkedHashMap<>();
+                }
+                for (int j = 0; j < versionCount; j++) {
+                    String version = data.readUTF();
+                    serializedDescription.put(version, new SerializedDescription(data.readUTF(), readLongString(data)));
+                }
+                entries.add(new Entry(algorithmFile, identifier, className, blobId, classes, serializedDescription));
+            }
+            return new RegistrySnapshot(commitId, entries);
+        }
+    }
+
+    /**
+     * Serializes the description of each supported version along with its
+     * schema type, so that the typed XML objects can be parsed again.
+     *
+     * @return the serialized descriptions by version or <code>null</code> if
+     * a description has no restorable schema type
+     */
+    private static Map<String, SerializedDescription> serialize(ProcessDescription description) {
+        Map<String, SerializedDescription> serialized = new LinkedHashMap<>();
+        for (String version : WPSConfig.SUPPORTED_VERSIONS) {
+            XmlObject descriptionType = description.getProcessDescriptionType(version);
+            if (descriptionType == null) {
+                continue;
+            }
+            SchemaType schemaType = descriptionType.schemaType();
+            QName typeName = schemaType.isDocumentType()
+                    ? schemaType.getDocumentElementName()
+                    : schemaType.getName();
+            if (typeName == null) {
+                return null;
+            }
+            String schemaTypeKey = (schemaType.isDocumentType() ? DOCUMENT_TYPE : TYPE) + typeName.toString();
+            serialized.put(version, new SerializedDescription(schemaTypeKey, descriptionType.xmlText()));
+        }
+        return serialized;
+    }
+
+    private static ProcessDescription deserialize(Map<String, SerializedDescription> serialized) throws XmlException {
+        SchemaTypeLoader typeLoader = XmlBeans.getContextTypeLoader();
+        ProcessDescription description = new ProcessDescription();
+        for (Map.Entry<String, SerializedDescription> versionDescription : serialized.entrySet()) {
+            String schemaTypeKey = versionDescription.getValue().schemaType;
+            QName typeName = QName.valueOf(schemaTypeKey.substring(1));
+            SchemaType schemaType = schemaTypeKey.charAt(0) == DOCUMENT_TYPE
+                    ? typeLoader.findDocumentType(typeName)
+                    : typeLoader.findType(typeName);
+            if (schemaType == null) {
+                throw new XmlException("Unknown schema type " + typeName);
+            }
+            XmlObject descriptionType = typeLoader.parse(versionDescription.getValue().xml, schemaType, new XmlOptions());
+            description.addProcessDescriptionForVersion(descriptionType, versionDescription.getKey());
+        }
+        return description;
+    }
+
+    /**
+     * Writes strings exceeding the 64k limit of
+     * {@link DataOutputStream#writeUTF(String)}.
+     */
+    private static void writeLongString(DataOutputStream data, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readLongString(DataInputStream data) throws IOException {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class SerializedDescription {
+
+        private final String schemaType;
+
+        private final String xml;
+
+        SerializedDescription(String schemaType, String xml) {
+            this.schemaType = schemaType;
+            this.xml = xml;
+        }
+    }
+
+    /**
+     * A snapshot of a single algorithm.
+     */
+    public static class Entry {
+
+        private final File file;
+
+        private final String identifier;
+
+        private final String className;
+
+        private final ObjectId blobId;
+
+        private final Map<String, byte[]> classes;
+
+        private final Map<String, SerializedDescription> serializedDescription;
+
+        Entry(File file, String identifier, String className, ObjectId blobId, Map<String, byte[]> classes,
+                Map<String, SerializedDescription> serializedDescription) {
+            this.file = file;
+            this.identifier = identifier;
+            this.className = className;
+            this.blobId = blobId;
+            this.classes = classes;
+            this.serializedDescription = serializedDescription;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public ObjectId getBlobId() {
+            return blobId;
+        }
+
+        /**
+         * @return the bytecode the algorithm has been compiled to, shared with
+         * the algorithms compiled in the same run
+         */
+        public Map<String, byte[]> getClasses() {
+            return classes;
+        }
+
+        /**
+         * @return <code>true</code> if the snapshot contains the process
+         * description
+         */
+        public boolean hasDescription() {
+            return serializedDescription != null;
+        }
+
+        /**
+         * @return the process description parsed from the snapshot or
+         * <code>null</code> if the snapshot contains no description
+         * @throws XmlException if the description cannot be parsed
+         */
+        public ProcessDescription getDescription() throws XmlException {
+            return serializedDescription != null
+                    ? deserialize(serializedDescription)
+                    : null;
+        }
+    }
+
+}
@@ -0,0 +1,375 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records how long syncing, compiling and loading algorithms takes and
+ * exposes it along with the state of the registry and the change detection
+ * via JMX.
+ */
+public class RepositoryMetrics implements RepositoryMetricsMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryMetrics.class);
+
+    private static final String DOMAIN = "org.n52.wps.repository.git";
+
+    private final Distribution syncTimes = new Distribution();
+
+    private final Distribution syncBytes = new Distribution();
+
+    private final Distribution diffSizes = new Distribution();
+
+    private final Distribution compileTimes = new Distribution();
+
+    private final AtomicLong algorithmFailureCount = new AtomicLong();
+
+    private final Distribution loadTimes = new Distribution();
+
+    private final Map<String, Long> algorithmLoadTimes = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> algorithmFailures = new ConcurrentHashMap<>();
+
+    /**
+     * The size of the packs of each synced repository, so that objects
+     * fetched in the background are accounted to the next sync.
+     */
+    private final Map<File, Long> packSizes = new ConcurrentHashMap<>();
+
+    private final Supplier<AlgorithmRegistry> registry;
+
+    private final Supplier<ChangeDetector> changeDetector;
+
+    private final Supplier<List<AlgorithmFailure>> failedAlgorithms;
+
+    private ObjectName objectName;
+
+    /**
+     * @param registry provides the current registry
+     * @param changeDetector provides the current change detector, if any
+     * @param failedAlgorithms provides the algorithm files currently failing
+     */
+    public RepositoryMetrics(Supplier<AlgorithmRegistry> registry, Supplier<ChangeDetector> changeDetector,
+            Supplier<List<AlgorithmFailure>> failedAlgorithms) {
+        this.registry = registry;
+        this.changeDetector = changeDetector;
+        this.failedAlgorithms = failedAlgorithms;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. Failing to do so
+     * is logged, metrics are recorded anyway.
+     *
+     * @param name the name distinguishing several repositories
+     */
+    public synchronized void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName candidate = new ObjectName(DOMAIN + ":type=GitAlgorithmRepository,name=" + ObjectName.quote(name));
+            if (server.isRegistered(candidate)) {
+                // e.g. the repository has been re-initialized
+                server.unregisterMBean(candidate);
+            }
+            server.registerMBean(this, candidate);
+            objectName = candidate;
+        } catch (JMException e) {
+            logger.warn("Could not register metrics of {}: {}", name, e.getMessage());
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.debug("Could not unregister metrics {}: {}", objectName, e.getMessage());
+        }
+        objectName = null;
+    }
+
+    /**
+     * @param nanos the time a sync took
+     * @param repository the synced repository
+     */
+    public void recordSync(long nanos, Repository repository) {
+        syncTimes.record(nanos);
+        File packDirectory = new File(repository.getDirectory(), "objects" + File.separator + "pack");
+        long packSize = sizeOfPacks(packDirectory);
+        Long previous = packSizes.put(packDirectory, packSize);
+        // packs shrink on gc
+        syncBytes.record(previous != null
+                ? Math.max(0, packSize - previous)
+                : packSize);
+    }
+
+    public void recordDiff(int entries) {
+        diffSizes.record(entries);
+    }
+
+    /**
+     * @param nanos the time a compiler run took
+     */
+    public void recordCompile(long nanos) {
+        compileTimes.record(nanos);
+    }
+
+    /**
+     * @param identifier the identifier of the loaded algorithm
+     * @param nanos the time loading the algorithm classes and instantiating
+     * the algorithm took
+     */
+    public void recordAlgorithmLoad(String identifier, long nanos) {
+        loadTimes.record(nanos);
+        algorithmLoadTimes.put(identifier, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    /**
+     * @param file the algorithm file which failed to compile or load
+     */
+    public void recordAlgorithmFailure(File file) {
+        algorithmFailureCount.incrementAndGet();
+        algorithmFailures.merge(file.getPath(), 1L, Long::sum);
+    }
+
+    /**
+     * @param identifier the identifier of an unregistered algorithm
+     */
+    public void removeAlgorithm(String identifier) {
+        algorithmLoadTimes.remove(identifier);
+    }
+
+    private static long sizeOfPacks(File packDirectory) {
+        File[] packs = packDirectory.listFiles((directory, name) -> name.endsWith(".pack"));
+        long size = 0;
+        if (packs != null) {
+            for (File pack : packs) {
+                size += pack.length();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long getSyncCount() {
+        return syncTimes.getCount();
+    }
+
+    @Override
+    public long getSyncTimeTotal() {
+        return toMillis(syncTimes.getTotal());
+    }
+
+    @Override
+    public long getSyncTimeMax() {
+        return toMillis(syncTimes.getMax());
+    }
+
+    @Override
+    public long getSyncTimeLast() {
+        return toMillis(syncTimes.getLast());
+    }
+
+    @Override
+    public long getSyncBytesTotal() {
+        return syncBytes.getTotal();
+    }
+
+    @Override
+    public long getSyncBytesLast() {
+        return syncBytes.getLast();
+    }
+
+    @Override
+    public long getDiffCount() {
+        return diffSizes.getCount();
+    }
+
+    @Override
+    public long getDiffEntriesTotal() {
+        return diffSizes.getTotal();
+    }
+
+    @Override
+    public long getDiffEntriesMax() {
+        return diffSizes.getMax();
+    }
+
+    @Override
+    public long getDiffEntriesLast() {
+        return diffSizes.getLast();
+    }
+
+    @Override
+    public long getCompileCount() {
+        return compileTimes.getCount();
+    }
+
+    @Override
+    public long getCompileTimeTotal() {
+        return toMillis(compileTimes.getTotal());
+    }
+
+    @Override
+    public long getCompileTimeMax() {
+        return toMillis(compileTimes.getMax());
+    }
+
+    @Override
+    public long getCompileTimeLast() {
+        return toMillis(compileTimes.getLast());
+    }
+
+    @Override
+    public long getAlgorithmFailureCount() {
+        return algorithmFailureCount.get();
+    }
+
+    @Override
+    public long getAlgorithmLoadCount() {
+        return loadTimes.getCount();
+    }
+
+    @Override
+    public long getAlgorithmLoadTimeTotal() {
+        return toMillis(loadTimes.getTotal());
+    }
+
+    @Override
+    public long getAlgorithmLoadTimeMax() {
+        return toMillis(loadTimes.getMax());
+    }
+
+    @Override
+    public Map<String, Long> getAlgorithmLoadTimes() {
+        return Collections.unmodifiableMap(new HashMap<>(algorithmLoadTimes));
+    }
+
+    @Override
+    public Map<String, Long> getAlgorithmFailures() {
+        return Collections.unmodifiableMap(new HashMap<>(algorithmFailures));
+    }
+
+    @Override
+    public List<AlgorithmFailure> getFailedAlgorithms() {
+        return failedAlgorithms.get();
+    }
+
+    @Override
+    public int getRegistrySize() {
+        return registry.get().getAlgorithmNames().size();
+    }
+
+    @Override
+    public long getRegistryGeneration() {
+        return registry.get().getGeneration();
+    }
+
+    @Override
+    public long getRegistryGenerationAge() {
+        return System.currentTimeMillis() - registry.get().getCreated();
+    }
+
+    @Override
+    public long getDetectedChangeCount() {
+        ChangeDetector detector = changeDetector.get();
+        return detector != null
+                ? detector.getDetectedChangeCount()
+                : 0;
+    }
+
+    @Override
+    public int getPendingChangeCount() {
+        ChangeDetector detector = changeDetector.get();
+        return detector != null
+                ? detector.getPendingChangeCount()
+                : 0;
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Count, total, maximum and last of recorded values.
+     */
+    static class Distribution {
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong total = new AtomicLong();
+
+        private final AtomicLong max = new AtomicLong();
+
+        private volatile long last;
+
+        void record(long value) {
+            count.incrementAndGet();
+            total.addAndGet(value);
+            max.accumulateAndGet(value, Math::max);
+            last = value;
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        long getTotal() {
+            return total.get();
+        }
+
+        long getMax() {
+            return max.get();
+        }
+
+        long getLast() {
+            return last;
+        }
+    }
+
+}
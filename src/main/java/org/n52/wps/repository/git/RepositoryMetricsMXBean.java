@@ -0,0 +1,138 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics of a {@link GitAlgorithmRepository}, registered as
+ * <code>org.n52.wps.repository.git:type=GitAlgorithmRepository,name=&lt;local repository directory&gt;</code>.
+ * Durations are given in milliseconds. Timers and distributions provide the
+ * number of recorded values, their total, their maximum and the last value.
+ */
+public interface RepositoryMetricsMXBean {
+
+    /**
+     * @return the number of clones, pulls and fetches of the repository and
+     * its additional sources
+     */
+    long getSyncCount();
+
+    long getSyncTimeTotal();
+
+    long getSyncTimeMax();
+
+    long getSyncTimeLast();
+
+    /**
+     * @return the bytes the object databases have grown by due to syncs,
+     * including objects fetched in the background
+     */
+    long getSyncBytesTotal();
+
+    long getSyncBytesLast();
+
+    /**
+     * @return the number of applied diffs
+     */
+    long getDiffCount();
+
+    long getDiffEntriesTotal();
+
+    long getDiffEntriesMax();
+
+    long getDiffEntriesLast();
+
+    /**
+     * @return the number of compiler runs, each compiling a batch of sources
+     */
+    long getCompileCount();
+
+    long getCompileTimeTotal();
+
+    long getCompileTimeMax();
+
+    long getCompileTimeLast();
+
+    /**
+     * @return the number of algorithms loaded, i.e. their classes loaded and
+     * instantiated
+     */
+    long getAlgorithmLoadCount();
+
+    long getAlgorithmLoadTimeTotal();
+
+    long getAlgorithmLoadTimeMax();
+
+    /**
+     * @return the time the last load of each registered algorithm took, by
+     * identifier
+     */
+    Map<String, Long> getAlgorithmLoadTimes();
+
+    /**
+     * @return the number of failed compilations and loads of algorithms
+     */
+    long getAlgorithmFailureCount();
+
+    /**
+     * @return the number of failed compilations and loads of each algorithm
+     * file
+     */
+    Map<String, Long> getAlgorithmFailures();
+
+    /**
+     * @return the algorithm files currently failing, which are not loaded
+     * again until their content changes or a retry is due, along with the
+     * compiler errors or stack traces
+     */
+    List<AlgorithmFailure> getFailedAlgorithms();
+
+    int getRegistrySize();
+
+    long getRegistryGeneration();
+
+    /**
+     * @return the time since the current algorithm generation has been
+     * published
+     */
+    long getRegistryGenerationAge();
+
+    /**
+     * @return the number of file changes detected within the local repository
+     */
+    long getDetectedChangeCount();
+
+    /**
+     * @return the number of detected file changes waiting to be reloaded
+     */
+    int getPendingChangeCount();
+
+}
@@ -0,0 +1,137 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Determines which sources the sources of a compilation depend on directly.
+ * Dependencies are read from the constant pools of the compiled classes.
+ * Compile time constants are inlined by the compiler, so sources declaring
+ * constants are dependencies of all sources mentioning their top level class.
+ * Sources which failed to compile have no classes and depend on each source
+ * of the compilation they mention.
+ */
+final class SourceDependencies {
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceDependencies.class);
+
+    private SourceDependencies() {
+    }
+
+    /**
+     * @param compiled the compilation result
+     * @param sourceTree the tree the sources have been read from
+     * @return the sources each compiled or failed source depends on, the
+     * source itself excluded
+     */
+    static Map<File, Set<File>> of(CompilationResult compiled, SourceTree sourceTree) {
+        Map<File, Set<File>> dependencies = new HashMap<>();
+        Set<File> declaringConstants = new HashSet<>();
+        for (Map.Entry<String, byte[]> compiledClass : compiled.getClasses().entrySet()) {
+            File source = compiled.getSourceOf(compiledClass.getKey());
+            if (source == null) {
+                continue;
+            }
+            Set<File> sourceDependencies = dependencies.computeIfAbsent(source, f -> new HashSet<>());
+            try {
+                ClassFileReferences references = ClassFileReferences.of(compiledClass.getValue());
+                for (String referencedClass : references.getReferencedClasses()) {
+                    File referencedSource = compiled.getSourceOf(referencedClass);
+                    if (referencedSource != null && !referencedSource.equals(source)) {
+                        sourceDependencies.add(referencedSource);
+                    }
+                }
+                if (references.declaresConstants()) {
+                    declaringConstants.add(source);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read references of class {}: {}", compiledClass.getKey(), e.getMessage());
+            }
+        }
+
+        Set<File> compiledSources = new HashSet<>(dependencies.keySet());
+        for (File source : compiledSources) {
+            addMentioned(source, declaringConstants, sourceTree, dependencies);
+        }
+        Set<File> allSources = new HashSet<>(compiledSources);
+        allSources.addAll(compiled.getFailedSources());
+        for (File failedSource : compiled.getFailedSources()) {
+            dependencies.computeIfAbsent(failedSource, f -> new HashSet<>());
+            addMentioned(failedSource, allSources, sourceTree, dependencies);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Adds those candidates to the dependencies of the source, whose top level
+     * class name occurs within the source.
+     */
+    private static void addMentioned(File source, Set<File> candidates, SourceTree sourceTree,
+            Map<File, Set<File>> dependencies) {
+        Set<File> sourceDependencies = dependencies.get(source);
+        String content = null;
+        for (File candidate : candidates) {
+            if (candidate.equals(source) || sourceDependencies.contains(candidate)) {
+                continue;
+            }
+            try {
+                if (content == null) {
+                    content = new String(sourceTree.read(source), StandardCharsets.UTF_8);
+                }
+            } catch (IOException e) {
+                logger.debug("Could not read {}, assuming it depends on {}", source, candidate);
+                sourceDependencies.add(candidate);
+                continue;
+            }
+            if (mentions(content, getTopLevelName(candidate))) {
+                sourceDependencies.add(candidate);
+            }
+        }
+    }
+
+    private static boolean mentions(String content, String name) {
+        return Pattern.compile("\\b" + Pattern.quote(name) + "\\b").matcher(content).find();
+    }
+
+    private static String getTopLevelName(File source) {
+        return source.getName().replace(".java", "");
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * The sources algorithms are compiled from. Sources are identified by files
+ * below {@link #getRoot()}, which do not necessarily exist on disk.
+ */
+public interface SourceTree {
+
+    /**
+     * @return the root directory all sources are relative to
+     */
+    File getRoot();
+
+    /**
+     * @param source the source
+     * @return the git blob id of the source content or <code>null</code> if
+     * the source does not exist
+     * @throws IOException if the source could not be read
+     */
+    ObjectId getBlobId(File source) throws IOException;
+
+    /**
+     * @param source the source
+     * @return the content of the source
+     * @throws IOException if the source does not exist or could not be read
+     */
+    byte[] read(File source) throws IOException;
+
+    /**
+     * @param packagePath the path of a package relative to the root, separated
+     * by <code>/</code>, e.g. <code>org/example</code>
+     * @return the Java sources directly within the package
+     * @throws IOException if the package could not be read
+     */
+    List<File> listSources(String packagePath) throws IOException;
+
+}
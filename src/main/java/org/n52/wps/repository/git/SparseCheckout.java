@@ -0,0 +1,276 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.errors.CheckoutConflictException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks out only the files with names matching a pattern, e.g. algorithm
+ * sources, and leaves all other files of the tree (e.g. large test data) in
+ * the object database. The index only tracks the checked out files.
+ * <p>
+ * Updates move the branch to the fetched remote tracking ref and write only
+ * the matching files which differ between both trees.
+ */
+public class SparseCheckout {
+
+    private static final Logger logger = LoggerFactory.getLogger(SparseCheckout.class);
+
+    private final Repository repository;
+
+    private final String remoteName;
+
+    private final Pattern filenamePattern;
+
+    /**
+     * @param repository the repository, cloned without checkout
+     * @param remoteName the remote to follow, e.g. <code>origin</code>
+     * @param filenamePattern the pattern names of checked out files match
+     */
+    public SparseCheckout(Repository repository, String remoteName, Pattern filenamePattern) {
+        this.repository = repository;
+        this.remoteName = remoteName;
+        this.filenamePattern = filenamePattern;
+    }
+
+    /**
+     * Creates the local branch from its remote tracking ref, points HEAD to
+     * it and checks out the matching files. Files checked out from a
+     * previous branch which do not exist on this branch are deleted.
+     *
+     * @param branch the name of the branch, e.g. <code>master</code>
+     * @throws IOException if the branch does not exist on the remote or
+     * writing files fails
+     */
+    public void checkout(String branch) throws IOException {
+        ObjectId remoteId = resolveRemoteTrackingRef(branch);
+        RefUpdate branchUpdate = repository.updateRef(Constants.R_HEADS + branch);
+        branchUpdate.setNewObjectId(remoteId);
+        branchUpdate.setRefLogMessage("sparse checkout: created from " + remoteName + "/" + branch, false);
+        checkRefUpdate(branchUpdate.forceUpdate(), branchUpdate);
+        RefUpdate headUpdate = repository.updateRef(Constants.HEAD);
+        checkRefUpdate(headUpdate.link(Constants.R_HEADS + branch), headUpdate);
+
+        DirCache dirCache = repository.lockDirCache();
+        try (RevWalk revWalk = new RevWalk(repository);
+                ObjectReader reader = repository.newObjectReader();
+                TreeWalk walk = new TreeWalk(reader)) {
+            RevCommit commit = revWalk.parseCommit(remoteId);
+            walk.addTree(commit.getTree());
+            walk.setRecursive(true);
+            Set<String> previousPaths = new HashSet<>();
+            for (int i = 0; i < dirCache.getEntryCount(); i++) {
+                previousPaths.add(dirCache.getEntry(i).getPathString());
+            }
+            DirCacheBuilder builder = dirCache.builder();
+            int count = 0;
+            while (walk.next()) {
+                if (isMatchingFile(walk.getFileMode(0), walk.getNameString())) {
+                    builder.add(writeFile(reader, walk.getPathString(), walk.getFileMode(0), walk.getObjectId(0)));
+                    previousPaths.remove(walk.getPathString());
+                    count++;
+                }
+            }
+            builder.commit();
+            // files of a previously checked out branch
+            for (String path : previousPaths) {
+                Files.deleteIfExists(toFile(path).toPath());
+            }
+            logger.info("Checked out {} file(s) of {}.", count, commit.name());
+        } finally {
+            dirCache.unlock();
+        }
+    }
+
+    /**
+     * Moves the current branch to its (already fetched) remote tracking ref
+     * and updates the matching files which differ between both commits.
+     *
+     * @return the changes of matching files
+     * @throws CheckoutConflictException if files to update have local changes,
+     * nothing is updated in this case
+     * @throws IOException if the branch cannot be moved or writing files
+     * fails
+     */
+    public List<DiffEntry> update() throws IOException {
+        String branch = repository.getBranch();
+        ObjectId oldId = repository.resolve(Constants.HEAD);
+        ObjectId newId = resolveRemoteTrackingRef(branch);
+        if (newId.equals(oldId)) {
+            return new ArrayList<>();
+        }
+
+        DirCache dirCache = repository.lockDirCache();
+        try (RevWalk revWalk = new RevWalk(repository);
+                ObjectReader reader = repository.newObjectReader();
+                TreeWalk walk = new TreeWalk(reader)) {
+            walk.addTree(revWalk.parseCommit(oldId).getTree());
+            walk.addTree(revWalk.parseCommit(newId).getTree());
+            walk.setRecursive(true);
+            walk.setFilter(TreeFilter.ANY_DIFF);
+            List<DiffEntry> changes = new ArrayList<>();
+            for (DiffEntry diff : DiffEntry.scan(walk)) {
+                if (isMatching(diff.getOldMode(), diff.getOldPath()) || isMatching(diff.getNewMode(), diff.getNewPath())) {
+                    changes.add(diff);
+                }
+            }
+            checkConflicts(changes);
+
+            DirCacheEditor editor = dirCache.editor();
+            for (DiffEntry diff : changes) {
+                if (diff.getChangeType() == DiffEntry.ChangeType.DELETE || !isMatching(diff.getNewMode(), diff.getNewPath())) {
+                    Files.deleteIfExists(toFile(diff.getOldPath()).toPath());
+                    editor.add(new DirCacheEditor.DeletePath(diff.getOldPath()));
+                } else {
+                    final DirCacheEntry entry = writeFile(reader, diff.getNewPath(), diff.getNewMode(), diff.getNewId().toObjectId());
+                    editor.add(new DirCacheEditor.PathEdit(entry) {
+                        @Override
+                        public void apply(DirCacheEntry ent) {
+                            ent.copyMetaData(entry);
+                        }
+                    });
+                }
+            }
+
+            RefUpdate branchUpdate = repository.updateRef(Constants.R_HEADS + branch);
+            branchUpdate.setExpectedOldObjectId(oldId);
+            branchUpdate.setNewObjectId(newId);
+            branchUpdate.setRefLogMessage("sparse checkout: fast-forward", false);
+            checkRefUpdate(branchUpdate.update(revWalk), branchUpdate);
+            editor.commit();
+            logger.info("Updated {} file(s) from {} to {}.", changes.size(), oldId.name(), newId.name());
+            return changes;
+        } finally {
+            dirCache.unlock();
+        }
+    }
+
+    /**
+     * Files are only overwritten or deleted if their content is the one of
+     * the old commit.
+     */
+    private void checkConflicts(List<DiffEntry> changes) throws IOException {
+        List<String> conflicts = new ArrayList<>();
+        for (DiffEntry diff : changes) {
+            if (diff.getChangeType() != DiffEntry.ChangeType.ADD && isModified(diff.getOldPath(), diff.getOldId().toObjectId())) {
+                conflicts.add(diff.getOldPath());
+            }
+            if (diff.getChangeType() != DiffEntry.ChangeType.DELETE && !diff.getNewPath().equals(diff.getOldPath())
+                    && toFile(diff.getNewPath()).exists()) {
+                conflicts.add(diff.getNewPath());
+            }
+        }
+        if ( !conflicts.isEmpty()) {
+            throw new CheckoutConflictException(conflicts.toArray(new String[conflicts.size()]));
+        }
+    }
+
+    private boolean isModified(String path, ObjectId expected) throws IOException {
+        File file = toFile(path);
+        return file.exists() && !expected.equals(GitBlobs.idOf(file));
+    }
+
+    private DirCacheEntry writeFile(ObjectReader reader, String path, FileMode mode, ObjectId blobId) throws IOException {
+        File file = toFile(path);
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            reader.open(blobId, Constants.OBJ_BLOB).copyTo(out);
+        }
+        DirCacheEntry entry = new DirCacheEntry(path);
+        entry.setFileMode(mode);
+        entry.setObjectId(blobId);
+        entry.setLength(file.length());
+        entry.setLastModified(file.lastModified());
+        return entry;
+    }
+
+    private boolean isMatching(FileMode mode, String path) {
+        return path != null && !DiffEntry.DEV_NULL.equals(path)
+                && isMatchingFile(mode, path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    private boolean isMatchingFile(FileMode mode, String name) {
+        return (mode.getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_FILE
+                && filenamePattern.matcher(name).matches();
+    }
+
+    private File toFile(String path) {
+        return new File(repository.getWorkTree(), path);
+    }
+
+    private ObjectId resolveRemoteTrackingRef(String branch) throws IOException {
+        Ref ref = repository.exactRef(Constants.R_REMOTES + remoteName + "/" + branch);
+        if (ref == null) {
+            throw new IOException("Branch '" + branch + "' does not exist on remote '" + remoteName + "'.");
+        }
+        return ref.getObjectId();
+    }
+
+    private static void checkRefUpdate(RefUpdate.Result result, RefUpdate update) throws IOException {
+        switch (result) {
+            case NEW:
+            case FORCED:
+            case FAST_FORWARD:
+            case NO_CHANGE:
+                return;
+            default:
+                throw new IOException("Could not update " + update.getName() + ": " + result);
+        }
+    }
+
+}
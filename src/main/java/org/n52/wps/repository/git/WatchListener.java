@@ -28,6 +28,8 @@
  */
 package org.n52.wps.repository.git;
 
+import java.io.File;
+
 public interface WatchListener {
 
     public void handleNewFile(String filename);
@@ -35,4 +37,34 @@ public interface WatchListener {
     public void handleDeleteFile(String filename);
 
     public void handleModifiedFile(String filename);
+
+    /**
+     * Handles the net changes coalesced over a quiet period. By default each
+     * change is passed to the corresponding single file method.
+     *
+     * @param changes the changes to handle
+     */
+    public default void handleChanges(FileChanges changes) {
+        for (File file : changes.getDeleted()) {
+            handleDeleteFile(file.getAbsolutePath());
+        }
+        for (File file : changes.getCreated()) {
+            handleNewFile(file.getAbsolutePath());
+        }
+        for (File file : changes.getModified()) {
+            handleModifiedFile(file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Handles changes which are known to be incomplete, e.g. because the
+     * watch service dropped events or a watched directory became
+     * inaccessible. By default only the changes known are handled,
+     * implementations should reconcile their state with the directory.
+     *
+     * @param knownChanges the changes which have been observed
+     */
+    public default void handleOverflow(FileChanges knownChanges) {
+        handleChanges(knownChanges);
+    }
 }
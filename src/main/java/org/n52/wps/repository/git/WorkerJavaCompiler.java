@@ -0,0 +1,114 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles algorithm sources on a {@link CompileWorkerPool} instead of within
+ * the WPS JVM. Large batches are split among the workers and compiled
+ * concurrently. The bytecode equals the one of an {@link InMemoryJavaCompiler}
+ * on the same classpath, and so does the fingerprint.
+ */
+public class WorkerJavaCompiler implements JavaAlgorithmCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkerJavaCompiler.class);
+
+    /**
+     * Batches are not split below this size, as each part compiles the
+     * sources referenced by it again.
+     */
+    private static final int MIN_BATCH_SIZE = 16;
+
+    private final SourceTree sourceTree;
+
+    private final CompileWorkerPool workers;
+
+    private final String fingerprint;
+
+    /**
+     * @param sourceTree the tree the workers read sources from
+     * @param workers the workers to compile on
+     */
+    public WorkerJavaCompiler(SourceTree sourceTree, CompileWorkerPool workers) {
+        this.sourceTree = sourceTree;
+        this.workers = workers;
+        this.fingerprint = InMemoryJavaCompiler.createFingerprint(workers.getClassPath());
+    }
+
+    @Override
+    public CompilationResult compile(Collection<File> sources) {
+        CompilationResult result = new CompilationResult();
+        if (sources.isEmpty()) {
+            return result;
+        }
+        List<File> ordered = new ArrayList<>(sources);
+        int batches = Math.max(1, Math.min(workers.getSize(), ordered.size() / MIN_BATCH_SIZE));
+        int batchSize = (ordered.size() + batches - 1) / batches;
+        logger.debug("Compiling {} source(s) in {} batch(es) on compile workers", ordered.size(), batches);
+
+        Map<List<File>, Future<CompilationResult>> compilations = new LinkedHashMap<>();
+        for (int from = 0; from < ordered.size(); from += batchSize) {
+            List<File> batch = ordered.subList(from, Math.min(from + batchSize, ordered.size()));
+            try {
+                compilations.put(batch, workers.submit(sourceTree, batch));
+            } catch (RejectedExecutionException e) {
+                batch.forEach(source -> result.addError(source, "Compile workers have been shut down."));
+            }
+        }
+        for (Map.Entry<List<File>, Future<CompilationResult>> compilation : compilations.entrySet()) {
+            try {
+                result.addAll(compilation.getValue().get());
+            } catch (ExecutionException e) {
+                compilation.getKey().forEach(source -> result.addError(source, "Compilation failed: " + e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                compilation.getKey().forEach(source -> result.addError(source, "Interrupted while compiling."));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+}
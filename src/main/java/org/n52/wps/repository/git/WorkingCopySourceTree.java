@@ -0,0 +1,81 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Sources read from the files of a working copy.
+ */
+public class WorkingCopySourceTree implements SourceTree {
+
+    private final File root;
+
+    public WorkingCopySourceTree(File root) {
+        this.root = root;
+    }
+
+    @Override
+    public File getRoot() {
+        return root;
+    }
+
+    @Override
+    public ObjectId getBlobId(File source) throws IOException {
+        return source.isFile()
+                ? GitBlobs.idOf(source)
+                : null;
+    }
+
+    @Override
+    public byte[] read(File source) throws IOException {
+        return Files.readAllBytes(source.toPath());
+    }
+
+    @Override
+    public List<File> listSources(String packagePath) {
+        List<File> sources = new ArrayList<>();
+        File[] files = new File(root, packagePath).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(".java")) {
+                    sources.add(file);
+                }
+            }
+        }
+        return sources;
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.lib.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scans a working copy for algorithm files. Directories are walked in
+ * parallel, the <code>.git</code> directory and everything excluded by
+ * <code>.gitignore</code> files or <code>.git/info/exclude</code> is skipped.
+ */
+public class WorkingTreeScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkingTreeScanner.class);
+
+    private final File workingCopy;
+
+    private final Pattern filenamePattern;
+
+    /**
+     * @param workingCopy the root directory of the working copy
+     * @param filenameRegex only files with names matching this regex are
+     * returned
+     */
+    public WorkingTreeScanner(File workingCopy, String filenameRegex) {
+        this.workingCopy = workingCopy;
+        this.filenamePattern = Pattern.compile(filenameRegex);
+    }
+
+    public List<File> scan() {
+        List<IgnoreRules> rootRules = new ArrayList<>();
+        IgnoreNode exclude = parseIgnoreFile(new File(workingCopy, Constants.DOT_GIT + "/info/exclude"));
+        if (exclude != null) {
+            rootRules.add(new IgnoreRules(exclude, ""));
+        }
+        return ForkJoinPool.commonPool().invoke(new ScanTask(workingCopy, "", rootRules));
+    }
+
+    private static IgnoreNode parseIgnoreFile(File ignoreFile) {
+        if ( !ignoreFile.isFile()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(ignoreFile)) {
+            IgnoreNode node = new IgnoreNode();
+            node.parse(in);
+            return node;
+        } catch (IOException e) {
+            logger.warn("Could not read {}", ignoreFile, e);
+            return null;
+        }
+    }
+
+    private static boolean isIgnored(List<IgnoreRules> rules, String path, boolean isDirectory) {
+        // rules of deeper directories take precedence
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            IgnoreRules ignoreRules = rules.get(i);
+            String relativePath = path.substring(ignoreRules.basePath.length());
+            switch (ignoreRules.node.isIgnored(relativePath, isDirectory)) {
+                case IGNORED:
+                    return true;
+                case NOT_IGNORED:
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    private static class IgnoreRules {
+
+        private final IgnoreNode node;
+
+        private final String basePath;
+
+        IgnoreRules(IgnoreNode node, String basePath) {
+            this.node = node;
+            this.basePath = basePath;
+        }
+    }
+
+    private class ScanTask extends RecursiveTask<List<File>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File directory;
+
+        private final String relativePath;
+
+        private final List<IgnoreRules> rules;
+
+        ScanTask(File directory, String relativePath, List<IgnoreRules> inheritedRules) {
+            this.directory = directory;
+            this.relativePath = relativePath;
+            this.rules = inheritedRules;
+        }
+
+        @Override
+        protected List<File> compute() {
+            File[] children = directory.listFiles();
+            if (children == null) {
+                return Collections.emptyList();
+            }
+
+            List<IgnoreRules> directoryRules = rules;
+            IgnoreNode gitignore = parseIgnoreFile(new File(directory, Constants.DOT_GIT_IGNORE));
+            if (gitignore != null) {
+                directoryRules = new ArrayList<>(rules);
+                directoryRules.add(new IgnoreRules(gitignore, relativePath));
+            }
+
+            List<File> files = new ArrayList<>();
+            List<ScanTask> subdirectories = new ArrayList<>();
+            for (File child : children) {
+                String name = child.getName();
+                if (Constants.DOT_GIT.equals(name)) {
+                    continue;
+                }
+                boolean isDirectory = child.isDirectory();
+                String childPath = relativePath + name;
+                if (isIgnored(directoryRules, childPath, isDirectory)) {
+                    continue;
+                }
+                if (isDirectory) {
+                    subdirectories.add(new ScanTask(child, childPath + "/", directoryRules));
+                } else if (filenamePattern.matcher(name).matches()) {
+                    files.add(child);
+                }
+            }
+            for (ScanTask subdirectory : invokeAll(subdirectories)) {
+                files.addAll(subdirectory.join());
+            }
+            return files;
+        }
+    }
+
+}
@@ -38,7 +38,9 @@ import org.n52.wps.webapp.api.ClassKnowingModule;
 import org.n52.wps.webapp.api.ConfigurationCategory;
 import org.n52.wps.webapp.api.ConfigurationKey;
 import org.n52.wps.webapp.api.FormatEntry;
+import org.n52.wps.webapp.api.types.BooleanConfigurationEntry;
 import org.n52.wps.webapp.api.types.ConfigurationEntry;
+import org.n52.wps.webapp.api.types.IntegerConfigurationEntry;
 import org.n52.wps.webapp.api.types.StringConfigurationEntry;
 
 /**
@@ -57,6 +59,42 @@ public class GitAlgorithmRepositoryCM extends ClassKnowingModule {
 
     public static final String localRepositoryDirectoryKey = "local_repository_directory";
 
+    public static final String workerThreadsKey = "worker_threads";
+
+    public static final String bytecodeCacheDirectoryKey = "bytecode_cache_directory";
+
+    public static final String fetchIntervalKey = "fetch_interval";
+
+    public static final String fetchJitterKey = "fetch_jitter";
+
+    public static final String watcherQuietPeriodKey = "watcher_quiet_period";
+
+    public static final String changeDetectionKey = "change_detection";
+
+    public static final String changeDetectionIntervalKey = "change_detection_interval";
+
+    public static final String bareRepositoryKey = "bare_repository";
+
+    public static final String sparseCheckoutKey = "sparse_checkout";
+
+    public static final String additionalSourcesKey = "additional_sources";
+
+    public static final String warmStartKey = "warm_start";
+
+    public static final String instancePoolSizeKey = "instance_pool_size";
+
+    public static final String instancePoolTimeoutKey = "instance_pool_timeout";
+
+    public static final String compileWorkersKey = "compile_workers";
+
+    public static final String compileWorkerHeapKey = "compile_worker_heap";
+
+    public static final String compileTimeoutKey = "compile_timeout";
+
+    public static final String CHANGE_DETECTION_WATCHER = "watcher";
+
+    public static final String CHANGE_DETECTION_GIT = "git";
+
     private ConfigurationEntry<String> repositoryURLEntry = new StringConfigurationEntry(repositoryURLKey, "Remote repository URL",
             "URL of remote repository, e.g. 'https://github.com/username/repository.git'.", true, "-");
 
@@ -68,7 +106,67 @@ public class GitAlgorithmRepositoryCM extends ClassKnowingModule {
     private ConfigurationEntry<String> localRepositoryDirectoryEntry = new StringConfigurationEntry(localRepositoryDirectoryKey, "Local repository directory",
             "Path to the local repository directory.", true, "d:\\tmp\\gitrepositories");
 
-    private List<? extends ConfigurationEntry<?>> configurationEntries = Arrays.asList(repositoryURLEntry, branchNameEntry, fileNameRegexEntry, localRepositoryDirectoryEntry);
+    private ConfigurationEntry<Integer> workerThreadsEntry = new IntegerConfigurationEntry(workerThreadsKey, "Worker threads",
+            "Maximum number of algorithms instantiated and described in parallel.", true, 4);
+
+    private ConfigurationEntry<String> bytecodeCacheDirectoryEntry = new StringConfigurationEntry(bytecodeCacheDirectoryKey, "Bytecode cache directory",
+            "Path to the directory caching compiled algorithms. Must not be within the local repository directory. "
+            + "Defaults to the local repository directory suffixed with '-bytecode-cache'.", false, "");
+
+    private ConfigurationEntry<Integer> fetchIntervalEntry = new IntegerConfigurationEntry(fetchIntervalKey, "Fetch interval",
+            "Seconds between two background fetches from the remote repository. 0 (default) disables fetching in the background.", true, 0);
+
+    private ConfigurationEntry<Integer> fetchJitterEntry = new IntegerConfigurationEntry(fetchJitterKey, "Fetch jitter",
+            "Maximum random seconds added to each fetch interval.", true, 60);
+
+    private ConfigurationEntry<Integer> watcherQuietPeriodEntry = new IntegerConfigurationEntry(watcherQuietPeriodKey, "Watcher quiet period",
+            "Milliseconds without further file changes before changes in the local repository directory are reloaded as one batch.", true, 500);
+
+    private ConfigurationEntry<String> changeDetectionEntry = new StringConfigurationEntry(changeDetectionKey, "Change detection",
+            "How changes in the local repository directory are detected: 'watcher' uses file system notifications, "
+            + "'git' polls the HEAD tree and the working tree status (for file systems without reliable notifications).", true, CHANGE_DETECTION_WATCHER);
+
+    private ConfigurationEntry<Integer> changeDetectionIntervalEntry = new IntegerConfigurationEntry(changeDetectionIntervalKey, "Change detection interval",
+            "Milliseconds between two polls of the 'git' change detection.", true, 2000);
+
+    private ConfigurationEntry<Boolean> bareRepositoryEntry = new BooleanConfigurationEntry(bareRepositoryKey, "Bare repository",
+            "Clone a bare repository and compile algorithms straight from the git object database instead of a working copy. "
+            + "R algorithms are not supported in this mode.", false, false);
+
+    private ConfigurationEntry<Boolean> sparseCheckoutEntry = new BooleanConfigurationEntry(sparseCheckoutKey, "Sparse checkout",
+            "Check out only files matching the filename REGEX, all other files (e.g. test data) stay in the git object database.", false, false);
+
+    private ConfigurationEntry<String> additionalSourcesEntry = new StringConfigurationEntry(additionalSourcesKey, "Additional sources",
+            "Further repositories to load algorithms from, separated by ';'. Each is given as '<url> [<branch> [<path>]]'. "
+            + "If several repositories provide an algorithm with the same identifier, the first one wins.", false, "");
+
+    private ConfigurationEntry<Boolean> warmStartEntry = new BooleanConfigurationEntry(warmStartKey, "Warm start",
+            "Restore the algorithms registered on the last shutdown if the local repository has not moved since, and validate them in the background.",
+            false, true);
+
+    private ConfigurationEntry<Integer> instancePoolSizeEntry = new IntegerConfigurationEntry(instancePoolSizeKey, "Instance pool size",
+            "Maximum number of instances per algorithm, so that concurrent executions do not share algorithm state. "
+            + "0 runs all executions on a single shared instance.", false, 0);
+
+    private ConfigurationEntry<Integer> instancePoolTimeoutEntry = new IntegerConfigurationEntry(instancePoolTimeoutKey, "Instance pool timeout",
+            "Seconds an execution waits for an instance of a fully used pool before it fails.", false, 60);
+
+    private ConfigurationEntry<Integer> compileWorkersEntry = new IntegerConfigurationEntry(compileWorkersKey, "Compile workers",
+            "Number of separate JVMs compiling algorithms, so that compiling does not compete with process executions for heap and CPU. "
+            + "0 compiles within the WPS JVM.", false, 0);
+
+    private ConfigurationEntry<Integer> compileWorkerHeapEntry = new IntegerConfigurationEntry(compileWorkerHeapKey, "Compile worker heap",
+            "Maximum heap of each compile worker in MB.", false, 256);
+
+    private ConfigurationEntry<Integer> compileTimeoutEntry = new IntegerConfigurationEntry(compileTimeoutKey, "Compile timeout",
+            "Seconds a compile worker may take for a batch of sources before it is killed.", false, 120);
+
+    private List<? extends ConfigurationEntry<?>> configurationEntries = Arrays.asList(repositoryURLEntry, branchNameEntry, fileNameRegexEntry, localRepositoryDirectoryEntry,
+            workerThreadsEntry, bytecodeCacheDirectoryEntry, fetchIntervalEntry, fetchJitterEntry,
+            watcherQuietPeriodEntry, changeDetectionEntry, changeDetectionIntervalEntry,
+            bareRepositoryEntry, sparseCheckoutEntry,
+            additionalSourcesEntry, warmStartEntry, instancePoolSizeEntry, instancePoolTimeoutEntry,
+            compileWorkersEntry, compileWorkerHeapEntry, compileTimeoutEntry);
 
     private String repositoryURL;
 
@@ -78,6 +176,38 @@ public class GitAlgorithmRepositoryCM extends ClassKnowingModule {
 
     private String localRepositoryDirectory;
 
+    private int workerThreads;
+
+    private String bytecodeCacheDirectory;
+
+    private int fetchInterval;
+
+    private int fetchJitter;
+
+    private int watcherQuietPeriod;
+
+    private String changeDetection;
+
+    private int changeDetectionInterval;
+
+    private boolean bareRepository;
+
+    private boolean sparseCheckout;
+
+    private String additionalSources;
+
+    private boolean warmStart;
+
+    private int instancePoolSize;
+
+    private int instancePoolTimeout;
+
+    private int compileWorkers;
+
+    private int compileWorkerHeap;
+
+    private int compileTimeout;
+
     private boolean isActive = false;
 
     private List<AlgorithmEntry> algorithmEntries;
@@ -141,6 +271,166 @@ public class GitAlgorithmRepositoryCM extends ClassKnowingModule {
         this.localRepositoryDirectory = localRepositoryDirectory;
     }
 
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    @ConfigurationKey(
+            key = workerThreadsKey)
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public String getBytecodeCacheDirectory() {
+        return bytecodeCacheDirectory;
+    }
+
+    @ConfigurationKey(
+            key = bytecodeCacheDirectoryKey)
+    public void setBytecodeCacheDirectory(String bytecodeCacheDirectory) {
+        this.bytecodeCacheDirectory = bytecodeCacheDirectory;
+    }
+
+    public int getFetchInterval() {
+        return fetchInterval;
+    }
+
+    @ConfigurationKey(
+            key = fetchIntervalKey)
+    public void setFetchInterval(int fetchInterval) {
+        this.fetchInterval = fetchInterval;
+    }
+
+    public int getFetchJitter() {
+        return fetchJitter;
+    }
+
+    @ConfigurationKey(
+            key = fetchJitterKey)
+    public void setFetchJitter(int fetchJitter) {
+        this.fetchJitter = fetchJitter;
+    }
+
+    public int getWatcherQuietPeriod() {
+        return watcherQuietPeriod;
+    }
+
+    @ConfigurationKey(
+            key = watcherQuietPeriodKey)
+    public void setWatcherQuietPeriod(int watcherQuietPeriod) {
+        this.watcherQuietPeriod = watcherQuietPeriod;
+    }
+
+    public String getChangeDetection() {
+        return changeDetection;
+    }
+
+    @ConfigurationKey(
+            key = changeDetectionKey)
+    public void setChangeDetection(String changeDetection) {
+        this.changeDetection = changeDetection;
+    }
+
+    public int getChangeDetectionInterval() {
+        return changeDetectionInterval;
+    }
+
+    @ConfigurationKey(
+            key = changeDetectionIntervalKey)
+    public void setChangeDetectionInterval(int changeDetectionInterval) {
+        this.changeDetectionInterval = changeDetectionInterval;
+    }
+
+    public boolean isBareRepository() {
+        return bareRepository;
+    }
+
+    @ConfigurationKey(
+            key = bareRepositoryKey)
+    public void setBareRepository(boolean bareRepository) {
+        this.bareRepository = bareRepository;
+    }
+
+    public boolean isSparseCheckout() {
+        return sparseCheckout;
+    }
+
+    @ConfigurationKey(
+            key = sparseCheckoutKey)
+    public void setSparseCheckout(boolean sparseCheckout) {
+        this.sparseCheckout = sparseCheckout;
+    }
+
+    public String getAdditionalSources() {
+        return additionalSources;
+    }
+
+    @ConfigurationKey(
+            key = additionalSourcesKey)
+    public void setAdditionalSources(String additionalSources) {
+        this.additionalSources = additionalSources;
+    }
+
+    public boolean isWarmStart() {
+        return warmStart;
+    }
+
+    @ConfigurationKey(
+            key = warmStartKey)
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    public int getInstancePoolSize() {
+        return instancePoolSize;
+    }
+
+    @ConfigurationKey(
+            key = instancePoolSizeKey)
+    public void setInstancePoolSize(int instancePoolSize) {
+        this.instancePoolSize = instancePoolSize;
+    }
+
+    public int getInstancePoolTimeout() {
+        return instancePoolTimeout;
+    }
+
+    @ConfigurationKey(
+            key = instancePoolTimeoutKey)
+    public void setInstancePoolTimeout(int instancePoolTimeout) {
+        this.instancePoolTimeout = instancePoolTimeout;
+    }
+
+    public int getCompileWorkers() {
+        return compileWorkers;
+    }
+
+    @ConfigurationKey(
+            key = compileWorkersKey)
+    public void setCompileWorkers(int compileWorkers) {
+        this.compileWorkers = compileWorkers;
+    }
+
+    public int getCompileWorkerHeap() {
+        return compileWorkerHeap;
+    }
+
+    @ConfigurationKey(
+            key = compileWorkerHeapKey)
+    public void setCompileWorkerHeap(int compileWorkerHeap) {
+        this.compileWorkerHeap = compileWorkerHeap;
+    }
+
+    public int getCompileTimeout() {
+        return compileTimeout;
+    }
+
+    @ConfigurationKey(
+            key = compileTimeoutKey)
+    public void setCompileTimeout(int compileTimeout) {
+        this.compileTimeout = compileTimeout;
+    }
+
     @Override
     public ConfigurationCategory getCategory() {
         return ConfigurationCategory.REPOSITORY;
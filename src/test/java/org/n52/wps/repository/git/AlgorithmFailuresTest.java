@@ -0,0 +1,99 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.Test;
+
+public class AlgorithmFailuresTest {
+
+    private static final File FILE = new File("Algorithm.java");
+
+    private static final ObjectId BROKEN = ObjectId.fromString("0123456789012345678901234567890123456789");
+
+    private static final ObjectId FIXED = ObjectId.fromString("9876543210987654321098765432109876543210");
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    private final AlgorithmFailures failures = new AlgorithmFailures(now::get);
+
+    @Test
+    public void brokenContentIsRetriedOnceChanged() {
+        failures.record(FILE, BROKEN, AlgorithmFailure.Kind.CONTENT, "';' expected");
+        now.addAndGet(AlgorithmFailures.MAX_BACKOFF);
+
+        MatcherAssert.assertThat(failures.isRetryDue(FILE, BROKEN), Is.is(false));
+        MatcherAssert.assertThat(failures.isRetryDue(FILE, FIXED), Is.is(true));
+        MatcherAssert.assertThat(failures.getDueRetries().isEmpty(), Is.is(true));
+    }
+
+    @Test
+    public void environmentFailuresBackOffExponentially() {
+        AlgorithmFailure first = failures.record(FILE, BROKEN, AlgorithmFailure.Kind.ENVIRONMENT, "Connection refused");
+        MatcherAssert.assertThat(first.getNextRetry(), Is.is(1000 + AlgorithmFailures.INITIAL_BACKOFF));
+        MatcherAssert.assertThat(failures.isRetryDue(FILE, BROKEN), Is.is(false));
+
+        now.set(first.getNextRetry());
+        MatcherAssert.assertThat(failures.isRetryDue(FILE, BROKEN), Is.is(true));
+        MatcherAssert.assertThat(failures.getDueRetries(), Is.is(Collections.singletonList(FILE)));
+
+        AlgorithmFailure second = failures.record(FILE, BROKEN, AlgorithmFailure.Kind.ENVIRONMENT, "Connection refused");
+        MatcherAssert.assertThat(second.getAttempts(), Is.is(2));
+        MatcherAssert.assertThat(second.getFirstFailure(), Is.is(1000L));
+        MatcherAssert.assertThat(second.getNextRetry() - now.get(), Is.is(2 * AlgorithmFailures.INITIAL_BACKOFF));
+    }
+
+    @Test
+    public void backoffIsCapped() {
+        MatcherAssert.assertThat(AlgorithmFailures.getBackoff(1), Is.is(AlgorithmFailures.INITIAL_BACKOFF));
+        MatcherAssert.assertThat(AlgorithmFailures.getBackoff(20), Is.is(AlgorithmFailures.MAX_BACKOFF));
+        MatcherAssert.assertThat(AlgorithmFailures.getBackoff(100), Is.is(AlgorithmFailures.MAX_BACKOFF));
+    }
+
+    @Test
+    public void changedContentRestartsCounting() {
+        failures.record(FILE, BROKEN, AlgorithmFailure.Kind.CONTENT, "';' expected");
+        failures.record(FILE, BROKEN, AlgorithmFailure.Kind.CONTENT, "';' expected");
+        AlgorithmFailure changed = failures.record(FILE, FIXED, AlgorithmFailure.Kind.CONTENT, "cannot find symbol");
+
+        MatcherAssert.assertThat(changed.getAttempts(), Is.is(1));
+        MatcherAssert.assertThat(changed.getBlobId(), Is.is(FIXED.name()));
+        MatcherAssert.assertThat(failures.getFailures().size(), Is.is(1));
+
+        failures.remove(FILE);
+        MatcherAssert.assertThat(failures.isEmpty(), Is.is(true));
+    }
+
+}
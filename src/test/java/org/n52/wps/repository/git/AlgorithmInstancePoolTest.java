@@ -0,0 +1,306 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Test;
+import org.n52.wps.io.data.IData;
+import org.n52.wps.server.ExceptionReport;
+import org.n52.wps.server.IAlgorithm;
+import org.n52.wps.server.ProcessDescription;
+import org.n52.wps.server.observerpattern.IObserver;
+import org.n52.wps.server.observerpattern.ISubject;
+
+public class AlgorithmInstancePoolTest {
+
+    private final AtomicInteger instances = new AtomicInteger();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final CountDownLatch bothRunning = new CountDownLatch(2);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void prewarmFillsPool() {
+        AlgorithmInstancePool pool = new AlgorithmInstancePool(StatefulAlgorithm::new, 3, 5, TimeUnit.SECONDS);
+
+        pool.prewarm();
+
+        MatcherAssert.assertThat(instances.get(), Is.is(3));
+        MatcherAssert.assertThat(pool.getIdleCount(), Is.is(3));
+    }
+
+    @Test
+    public void borrowWaitsOnceAllInstancesAreBusy() throws Exception {
+        AlgorithmInstancePool pool = new AlgorithmInstancePool(StatefulAlgorithm::new, 2, 5, TimeUnit.SECONDS);
+        IAlgorithm first = pool.borrow();
+        pool.borrow();
+
+        Future<IAlgorithm> waiting = executor.submit(pool::borrow);
+        try {
+            waiting.get(200, TimeUnit.MILLISECONDS);
+            throw new AssertionError("borrowed more instances than the pool size");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        pool.giveBack(first);
+
+        MatcherAssert.assertThat(waiting.get(5, TimeUnit.SECONDS) == first, Is.is(true));
+        MatcherAssert.assertThat(instances.get(), Is.is(2));
+    }
+
+    @Test
+    public void discardWakesWaitingBorrower() throws Exception {
+        AlgorithmInstancePool pool = new AlgorithmInstancePool(StatefulAlgorithm::new, 1, 5, TimeUnit.SECONDS);
+        IAlgorithm failed = pool.borrow();
+
+        Future<IAlgorithm> waiting = executor.submit(pool::borrow);
+        try {
+            waiting.get(200, TimeUnit.MILLISECONDS);
+            throw new AssertionError("borrowed more instances than the pool size");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        pool.discard(failed);
+
+        MatcherAssert.assertThat(waiting.get(1, TimeUnit.SECONDS) == failed, Is.is(false));
+        MatcherAssert.assertThat(instances.get(), Is.is(2));
+        MatcherAssert.assertThat(pool.getSize(), Is.is(1));
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void borrowFailsAfterTimeout() throws Exception {
+        AlgorithmInstancePool pool = new AlgorithmInstancePool(StatefulAlgorithm::new, 1, 100, TimeUnit.MILLISECONDS);
+        pool.borrow();
+
+        pool.borrow();
+    }
+
+    @Test
+    public void borrowWhilePrewarmingDoesNotExceedMaxSize() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch created = new CountDownLatch(1);
+        AlgorithmInstancePool pool = new AlgorithmInstancePool(() -> {
+            creating.countDown();
+            created.await(5, TimeUnit.SECONDS);
+            return new StatefulAlgorithm();
+        }, 1, 5, TimeUnit.SECONDS);
+        executor.submit(pool::prewarm);
+        creating.await(5, TimeUnit.SECONDS);
+
+        Future<IAlgorithm> borrowing = executor.submit(pool::borrow);
+        try {
+            borrowing.get(200, TimeUnit.MILLISECONDS);
+            throw new AssertionError("borrowed an instance still being created");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        created.countDown();
+
+        MatcherAssert.assertThat(borrowing.get(5, TimeUnit.SECONDS) != null, Is.is(true));
+        MatcherAssert.assertThat(instances.get(), Is.is(1));
+        MatcherAssert.assertThat(pool.getSize(), Is.is(1));
+    }
+
+    @Test
+    public void concurrentExecutionsRunOnSeparateInstances() throws Exception {
+        StatefulAlgorithm registered = new StatefulAlgorithm();
+        AlgorithmInstancePool pool = new AlgorithmInstancePool(StatefulAlgorithm::new, 2, 5, TimeUnit.SECONDS);
+        List<Future<Map<String, IData>>> executions = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            PooledAlgorithm algorithm = new PooledAlgorithm(registered, pool);
+            executions.add(executor.submit(() -> algorithm.run(Collections.singletonMap("wait", Collections.<IData>emptyList()))));
+        }
+        for (Future<Map<String, IData>> execution : executions) {
+            execution.get(5, TimeUnit.SECONDS);
+        }
+
+        MatcherAssert.assertThat(bothRunning.getCount(), Is.is(0L));
+        MatcherAssert.assertThat(registered.executions, Is.is(0));
+        MatcherAssert.assertThat(pool.getSize(), Is.is(2));
+        MatcherAssert.assertThat(pool.getIdleCount(), Is.is(2));
+    }
+
+    @Test
+    public void failedInstanceIsDiscarded() throws Exception {
+        AlgorithmInstancePool pool = new AlgorithmInstancePool(StatefulAlgorithm::new, 1, 5, TimeUnit.SECONDS);
+        PooledAlgorithm algorithm = new PooledAlgorithm(new StatefulAlgorithm(), pool);
+
+        try {
+            algorithm.run(null);
+            throw new AssertionError("execution should have failed");
+        } catch (ExceptionReport e) {
+            // expected
+        }
+
+        MatcherAssert.assertThat(algorithm.getErrors(), Is.is(Collections.singletonList("no inputs")));
+        MatcherAssert.assertThat(pool.getSize(), Is.is(0));
+        algorithm.run(Collections.<String, List<IData>>emptyMap());
+        MatcherAssert.assertThat(algorithm.getErrors().isEmpty(), Is.is(true));
+        MatcherAssert.assertThat(pool.getIdleCount(), Is.is(1));
+    }
+
+    @Test
+    public void observersFollowTheBorrowedInstance() throws Exception {
+        AlgorithmInstancePool pool = new AlgorithmInstancePool(ObservableAlgorithm::new, 1, 5, TimeUnit.SECONDS);
+        PooledAlgorithm algorithm = PooledAlgorithm.create(new ObservableAlgorithm(), pool);
+        List<Object> states = new ArrayList<>();
+        IObserver observer = subject -> states.add(subject.getState());
+
+        MatcherAssert.assertThat(algorithm instanceof ISubject, Is.is(true));
+        ((ISubject) algorithm).addObserver(observer);
+        algorithm.run(Collections.<String, List<IData>>emptyMap());
+
+        MatcherAssert.assertThat(states, Is.is(Collections.<Object>singletonList(50)));
+        ObservableAlgorithm instance = (ObservableAlgorithm) pool.borrow();
+        MatcherAssert.assertThat(instance.observers.isEmpty(), Is.is(true));
+    }
+
+    private class StatefulAlgorithm implements IAlgorithm {
+
+        private final List<String> errors = new ArrayList<>();
+
+        private int executions;
+
+        private boolean running;
+
+        StatefulAlgorithm() {
+            instances.incrementAndGet();
+        }
+
+        @Override
+        public Map<String, IData> run(Map<String, List<IData>> inputData) throws ExceptionReport {
+            if (inputData == null) {
+                errors.add("no inputs");
+                throw new ExceptionReport("no inputs", ExceptionReport.NO_APPLICABLE_CODE);
+            }
+            if (running) {
+                throw new IllegalStateException("instance is shared by concurrent executions");
+            }
+            running = true;
+            executions++;
+            try {
+                if (inputData.containsKey("wait")) {
+                    bothRunning.countDown();
+                    bothRunning.await(5, TimeUnit.SECONDS);
+                }
+                return Collections.emptyMap();
+            } catch (InterruptedException e) {
+                throw new ExceptionReport("interrupted", ExceptionReport.NO_APPLICABLE_CODE, e);
+            } finally {
+                running = false;
+            }
+        }
+
+        @Override
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        @Override
+        public ProcessDescription getDescription() {
+            return null;
+        }
+
+        @Override
+        public String getWellKnownName() {
+            return "stateful";
+        }
+
+        @Override
+        public boolean processDescriptionIsValid(String version) {
+            return true;
+        }
+
+        @Override
+        public Class<?> getInputDataType(String id) {
+            return null;
+        }
+
+        @Override
+        public Class<?> getOutputDataType(String id) {
+            return null;
+        }
+
+    }
+
+    private class ObservableAlgorithm extends StatefulAlgorithm implements ISubject {
+
+        private final List<IObserver> observers = new ArrayList<>();
+
+        private Object state;
+
+        @Override
+        public Map<String, IData> run(Map<String, List<IData>> inputData) throws ExceptionReport {
+            update(50);
+            return super.run(inputData);
+        }
+
+        @Override
+        public void addObserver(IObserver o) {
+            observers.add(o);
+        }
+
+        @Override
+        public void removeObserver(IObserver o) {
+            observers.remove(o);
+        }
+
+        @Override
+        public Object getState() {
+            return state;
+        }
+
+        @Override
+        public void update(Object state) {
+            this.state = state;
+            observers.forEach(observer -> observer.update(this));
+        }
+
+    }
+
+}
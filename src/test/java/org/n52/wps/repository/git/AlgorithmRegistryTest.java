@@ -0,0 +1,126 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.n52.wps.server.IAlgorithm;
+import org.n52.wps.server.ProcessDescription;
+
+public class AlgorithmRegistryTest {
+
+    private static RegisteredAlgorithm createAlgorithm(String file, String identifier) {
+        IAlgorithm algorithm = Mockito.mock(IAlgorithm.class);
+        Mockito.when(algorithm.getWellKnownName()).thenReturn(identifier);
+        return new RegisteredAlgorithm(new File(file), algorithm, new ProcessDescription(), null);
+    }
+
+    @Test
+    public void publishedSnapshotIsNotAffectedByLaterChanges() {
+        RegisteredAlgorithm first = createAlgorithm("First.java", "first");
+        AlgorithmRegistry snapshot = AlgorithmRegistry.EMPTY.toBuilder().put(first).build();
+
+        AlgorithmRegistry next = snapshot.toBuilder()
+                .put(createAlgorithm("Second.java", "second"))
+                .build();
+
+        MatcherAssert.assertThat(snapshot.getAlgorithmNames().size(), Is.is(1));
+        MatcherAssert.assertThat(next.getAlgorithmNames().size(), Is.is(2));
+        MatcherAssert.assertThat(snapshot.getAlgorithm("first"), Is.is(first.getAlgorithm()));
+        MatcherAssert.assertThat(AlgorithmRegistry.EMPTY.getAlgorithmNames().isEmpty(), Is.is(true));
+    }
+
+    @Test
+    public void renamedIdentifierReplacesPreviousOne() {
+        AlgorithmRegistry registry = AlgorithmRegistry.EMPTY.toBuilder()
+                .put(createAlgorithm("Algorithm.java", "old"))
+                .build()
+                .toBuilder()
+                .put(createAlgorithm("Algorithm.java", "new"))
+                .build();
+
+        MatcherAssert.assertThat(registry.containsAlgorithm("old"), Is.is(false));
+        MatcherAssert.assertThat(registry.containsAlgorithm("new"), Is.is(true));
+        MatcherAssert.assertThat(registry.getAlgorithmName(new File("Algorithm.java")), Is.is("new"));
+    }
+
+    @Test
+    public void removeFile() {
+        AlgorithmRegistry.Builder builder = AlgorithmRegistry.EMPTY.toBuilder()
+                .put(createAlgorithm("Algorithm.java", "algorithm"));
+
+        MatcherAssert.assertThat(builder.remove(new File("Algorithm.java")), Is.is("algorithm"));
+        MatcherAssert.assertThat(builder.remove(new File("Unknown.java")), IsNull.nullValue());
+        AlgorithmRegistry registry = builder.build();
+        MatcherAssert.assertThat(registry.containsAlgorithm("algorithm"), Is.is(false));
+        MatcherAssert.assertThat(registry.getProcessDescription("algorithm"), IsNull.nullValue());
+    }
+
+    @Test
+    public void eachPublishedSnapshotIsANewGeneration() {
+        AlgorithmRegistry first = AlgorithmRegistry.EMPTY.toBuilder()
+                .put(createAlgorithm("First.java", "first"))
+                .build();
+        AlgorithmRegistry second = first.toBuilder()
+                .put(createAlgorithm("Second.java", "second"))
+                .build();
+
+        MatcherAssert.assertThat(AlgorithmRegistry.EMPTY.getGeneration(), Is.is(0L));
+        MatcherAssert.assertThat(first.getGeneration(), Is.is(1L));
+        MatcherAssert.assertThat(second.getGeneration(), Is.is(2L));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void algorithmNamesAreUnmodifiable() {
+        AlgorithmRegistry.EMPTY.toBuilder()
+                .put(createAlgorithm("Algorithm.java", "algorithm"))
+                .build()
+                .getAlgorithmNames()
+                .clear();
+    }
+
+    @Test
+    public void lookupRegisteredAlgorithmByFile() {
+        RegisteredAlgorithm algorithm = createAlgorithm("Algorithm.java", "algorithm");
+        AlgorithmRegistry registry = AlgorithmRegistry.EMPTY.toBuilder()
+                .put(algorithm)
+                .build();
+
+        MatcherAssert.assertThat(registry.getRegisteredAlgorithm(new File("Algorithm.java")), Is.is(algorithm));
+        MatcherAssert.assertThat(registry.getRegisteredAlgorithm(new File("Unknown.java")), IsNull.nullValue());
+        MatcherAssert.assertThat(registry.getFiles().size(), Is.is(1));
+        MatcherAssert.assertThat(registry.getFiles().contains(new File("Algorithm.java")), Is.is(true));
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class AlgorithmSourceTest {
+
+    @Rule
+    public TestRepositories testRoot = new TestRepositories();
+
+    private Git developer;
+
+    private List<AlgorithmSource> sources = new ArrayList<>();
+
+    @Before
+    public void setup() throws GitAPIException, IOException {
+        developer = testRoot.init("developer");
+        testRoot.commit(developer, "algorithms/Algorithm.java", "package algorithms;\npublic class Algorithm { }");
+        testRoot.commit(developer, "other/Other.java", "package other;\npublic class Other { }");
+    }
+
+    @After
+    public void tearDown() {
+        sources.forEach(AlgorithmSource::close);
+    }
+
+    private AlgorithmSource initSource(String path) throws IOException, GitAPIException {
+        String url = developer.getRepository().getDirectory().toURI().toString();
+        AlgorithmSource source = AlgorithmSource.parse(url + " master " + path, testRoot.getRoot(), 1, "master").get(0);
+        sources.add(source);
+        source.init(testRoot.newFolder());
+        return source;
+    }
+
+    @Test
+    public void parseSources() {
+        File base = testRoot.getRoot();
+        List<AlgorithmSource> parsed = AlgorithmSource.parse("https://example.org/a.git;\n"
+                + " https://example.org/b.git develop /algorithms/ \n\n", base, 1, "master");
+
+        MatcherAssert.assertThat(parsed.size(), Is.is(2));
+        MatcherAssert.assertThat(parsed.get(0).getPrecedence(), Is.is(1));
+        MatcherAssert.assertThat(parsed.get(0).getBranch(), Is.is("master"));
+        MatcherAssert.assertThat(parsed.get(1).getPrecedence(), Is.is(2));
+        MatcherAssert.assertThat(parsed.get(1).getBranch(), Is.is("develop"));
+        MatcherAssert.assertThat(parsed.get(1).toString(), Is.is("https://example.org/b.git (develop, algorithms)"));
+        MatcherAssert.assertThat(parsed.get(0).getDirectory().equals(parsed.get(1).getDirectory()), Is.is(false));
+        MatcherAssert.assertThat(AlgorithmSource.parse("", base, 1, "master").isEmpty(), Is.is(true));
+    }
+
+    @Test
+    public void findAlgorithmFilesWithinPath() throws IOException, GitAPIException {
+        AlgorithmSource source = initSource("algorithms");
+
+        List<File> files = source.findAlgorithmFiles(Pattern.compile(".*\\.java"));
+
+        MatcherAssert.assertThat(files.size(), Is.is(1));
+        MatcherAssert.assertThat(files.get(0), Is.is(new File(source.getDirectory(), "algorithms/Algorithm.java")));
+        MatcherAssert.assertThat(source.contains(files.get(0)), Is.is(true));
+        MatcherAssert.assertThat(source.contains(new File(testRoot.getRoot(), "Algorithm.java")), Is.is(false));
+    }
+
+    @Test
+    public void updateReportsChangesWithinPath() throws IOException, GitAPIException {
+        AlgorithmSource source = initSource("algorithms");
+        MatcherAssert.assertThat(source.update().isEmpty(), Is.is(true));
+
+        testRoot.commit(developer, "algorithms/Algorithm.java", "package algorithms;\npublic class Algorithm { int value; }");
+        testRoot.commit(developer, "other/Other.java", "package other;\npublic class Other { int value; }");
+        Collection<DiffEntry> changes = source.update();
+
+        MatcherAssert.assertThat(changes.size(), Is.is(1));
+        DiffEntry change = changes.iterator().next();
+        MatcherAssert.assertThat(change.getChangeType(), Is.is(DiffEntry.ChangeType.MODIFY));
+        MatcherAssert.assertThat(change.getNewPath(), Is.is("algorithms/Algorithm.java"));
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CachingJavaCompilerTest {
+
+    @Rule
+    public TestRepositories testRoot = new TestRepositories();
+
+    private File sourceRoot;
+
+    private File cacheDirectory;
+
+    private RecordingCompiler delegate;
+
+    @Before
+    public void setup() throws IOException {
+        sourceRoot = testRoot.newFolder("sources");
+        cacheDirectory = testRoot.newFolder("cache");
+        delegate = new RecordingCompiler(new InMemoryJavaCompiler(sourceRoot));
+    }
+
+    @Test
+    public void unchangedSourceIsNotRecompiled() throws IOException {
+        File algorithm = testRoot.write(sourceRoot, "Algorithm.java", "public class Algorithm {}");
+
+        new CachingJavaCompiler(delegate, cacheDirectory, sourceRoot).compile(Arrays.asList(algorithm));
+        // a new instance simulates a restart
+        CompilationResult result = new CachingJavaCompiler(delegate, cacheDirectory, sourceRoot).compile(Arrays.asList(algorithm));
+
+        MatcherAssert.assertThat(delegate.compiled.size(), Is.is(1));
+        MatcherAssert.assertThat(result.getPrimaryClassName(algorithm), Is.is("Algorithm"));
+        MatcherAssert.assertThat(result.getBlobId(algorithm), Is.is(GitBlobs.idOf(algorithm)));
+    }
+
+    @Test
+    public void changedSourceIsRecompiled() throws IOException {
+        File algorithm = testRoot.write(sourceRoot, "Algorithm.java", "public class Algorithm {}");
+        CachingJavaCompiler compiler = new CachingJavaCompiler(delegate, cacheDirectory, sourceRoot);
+        compiler.compile(Arrays.asList(algorithm));
+
+        testRoot.write(sourceRoot, "Algorithm.java", "public class Algorithm { int value; }");
+        compiler.compile(Arrays.asList(algorithm));
+
+        MatcherAssert.assertThat(delegate.compiled.size(), Is.is(2));
+    }
+
+    @Test
+    public void changedHelperInvalidatesDependentSource() throws IOException {
+        testRoot.write(sourceRoot, "Helper.java", "public class Helper {}");
+        File algorithm = testRoot.write(sourceRoot, "Algorithm.java", "public class Algorithm { Helper helper; }");
+        CachingJavaCompiler compiler = new CachingJavaCompiler(delegate, cacheDirectory, sourceRoot);
+
+        CompilationResult first = compiler.compile(Arrays.asList(algorithm));
+        CompilationResult second = compiler.compile(Arrays.asList(algorithm));
+        MatcherAssert.assertThat(delegate.compiled.size(), Is.is(1));
+        MatcherAssert.assertThat(first.getClasses().containsKey("Helper"), Is.is(true));
+        MatcherAssert.assertThat(second.getClasses().containsKey("Helper"), Is.is(true));
+
+        testRoot.write(sourceRoot, "Helper.java", "public class Helper { int value; }");
+        compiler.compile(Arrays.asList(algorithm));
+        MatcherAssert.assertThat(delegate.compiled.size(), Is.is(2));
+    }
+
+    @Test
+    public void changedSourceOfSameBatchInvalidatesDependentSource() throws IOException {
+        File helper = testRoot.write(sourceRoot, "Helper.java", "public class Helper {}");
+        File algorithm = testRoot.write(sourceRoot, "Algorithm.java", "public class Algorithm { Helper helper; }");
+        CachingJavaCompiler compiler = new CachingJavaCompiler(delegate, cacheDirectory, sourceRoot);
+        compiler.compile(Arrays.asList(helper, algorithm));
+
+        testRoot.write(sourceRoot, "Helper.java", "public class Helper { int value; }");
+        compiler.compile(Arrays.asList(algorithm));
+
+        MatcherAssert.assertThat(delegate.compiled.size(), Is.is(2));
+    }
+
+    @Test
+    public void changedHelperKeepsIndependentSourceCached() throws IOException {
+        testRoot.write(sourceRoot, "Helper.java", "public class Helper {}");
+        File first = testRoot.write(sourceRoot, "First.java", "public class First { Helper helper; }");
+        File second = testRoot.write(sourceRoot, "Second.java", "public class Second {}");
+        CachingJavaCompiler compiler = new CachingJavaCompiler(delegate, cacheDirectory, sourceRoot);
+        compiler.compile(Arrays.asList(first, second));
+
+        testRoot.write(sourceRoot, "Helper.java", "public class Helper { int value; }");
+        CompilationResult result = compiler.compile(Arrays.asList(second));
+
+        MatcherAssert.assertThat(delegate.compiled.size(), Is.is(1));
+        MatcherAssert.assertThat(result.getPrimaryClassName(second), Is.is("Second"));
+    }
+
+    @Test
+    public void resultContainsDependenciesOfCompiledAndCachedSources() throws IOException {
+        File helper = testRoot.write(sourceRoot, "Helper.java", "public class Helper {}");
+        File algorithm = testRoot.write(sourceRoot, "Algorithm.java", "public class Algorithm { Helper helper; }");
+        CachingJavaCompiler compiler = new CachingJavaCompiler(delegate, cacheDirectory, sourceRoot);
+
+        CompilationResult compiled = compiler.compile(Arrays.asList(algorithm));
+        CompilationResult cached = compiler.compile(Arrays.asList(algorithm));
+
+        MatcherAssert.assertThat(delegate.compiled.size(), Is.is(1));
+        for (CompilationResult result : Arrays.asList(compiled, cached)) {
+            MatcherAssert.assertThat(result.getDependencies(algorithm), Is.is(Collections.singleton(helper)));
+            MatcherAssert.assertThat(result.getBlobId(helper), Is.is(GitBlobs.idOf(helper)));
+        }
+    }
+
+    @Test
+    public void sharedDependencyIsHashedOncePerCompilation() throws IOException {
+        testRoot.write(sourceRoot, "Helper.java", "public class Helper {}");
+        File first = testRoot.write(sourceRoot, "First.java", "public class First { Helper helper; }");
+        File second = testRoot.write(sourceRoot, "Second.java", "public class Second { Helper helper; }");
+        new CachingJavaCompiler(delegate, cacheDirectory, sourceRoot).compile(Arrays.asList(first, second));
+
+        CountingSourceTree sourceTree = new CountingSourceTree(new WorkingCopySourceTree(sourceRoot));
+        new CachingJavaCompiler(delegate, cacheDirectory, sourceTree).compile(Arrays.asList(first, second));
+
+        MatcherAssert.assertThat(delegate.compiled.size(), Is.is(1));
+        MatcherAssert.assertThat(sourceTree.hashed.size(), Is.is(3));
+        MatcherAssert.assertThat(new HashSet<>(sourceTree.hashed),
+                Is.is(new HashSet<>(Arrays.asList(first, second, new File(sourceRoot, "Helper.java")))));
+    }
+
+    private static class CountingSourceTree implements SourceTree {
+
+        private final SourceTree delegate;
+
+        private final List<File> hashed = new ArrayList<>();
+
+        CountingSourceTree(SourceTree delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public File getRoot() {
+            return delegate.getRoot();
+        }
+
+        @Override
+        public ObjectId getBlobId(File source) throws IOException {
+            hashed.add(source);
+            return delegate.getBlobId(source);
+        }
+
+        @Override
+        public byte[] read(File source) throws IOException {
+            return delegate.read(source);
+        }
+
+        @Override
+        public List<File> listSources(String packagePath) throws IOException {
+            return delegate.listSources(packagePath);
+        }
+    }
+
+    private static class RecordingCompiler implements JavaAlgorithmCompiler {
+
+        private final JavaAlgorithmCompiler delegate;
+
+        private final List<Collection<File>> compiled = new ArrayList<>();
+
+        RecordingCompiler(JavaAlgorithmCompiler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompilationResult compile(Collection<File> sources) {
+            compiled.add(sources);
+            return delegate.compile(sources);
+        }
+
+        @Override
+        public String getFingerprint() {
+            return delegate.getFingerprint();
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.n52.wps.algorithm.annotation.Algorithm;
+import org.n52.wps.repository.git.benchmark.BenchmarkRepositories;
+
+/**
+ * Verifies that classes of a replaced algorithm are unloaded after a reload.
+ */
+public class ClassUnloadingTest {
+
+    private static final String IDENTIFIER = "algorithms.UnloadedAlgorithm";
+
+    @Rule
+    public TestRepositories testRoot = new TestRepositories();
+
+    private GitAlgorithmRepository repository;
+
+    @After
+    public void shutdown() {
+        if (repository != null) {
+            repository.shutdown();
+        }
+    }
+
+    private static String algorithm(String version) {
+        return "package algorithms;\n"
+                + "\n"
+                + "import org.n52.wps.algorithm.annotation.Algorithm;\n"
+                + "import org.n52.wps.algorithm.annotation.Execute;\n"
+                + "import org.n52.wps.server.AbstractAnnotatedAlgorithm;\n"
+                + "\n"
+                + "@Algorithm(identifier = \"" + IDENTIFIER + "\", version = \"" + version + "\")\n"
+                + "public class UnloadedAlgorithm extends AbstractAnnotatedAlgorithm {\n"
+                + "\n"
+                + "    @Execute\n"
+                + "    public void run() {\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    @Test
+    public void replacedAlgorithmClassesAreUnloaded() throws Exception {
+        Git remote = testRoot.init("remote");
+        testRoot.commit(remote, "algorithms/UnloadedAlgorithm.java", algorithm("1.0.0"));
+        repository = BenchmarkRepositories.open(remote.getRepository().getDirectory(),
+                new File(testRoot.getRoot(), "local"), false, 0);
+        WeakReference<Class<?>> firstClass = new WeakReference<>(getAlgorithmClass());
+        WeakReference<ClassLoader> firstLoader = new WeakReference<>(firstClass.get().getClassLoader());
+        MatcherAssert.assertThat(firstLoader.get() instanceof BytecodeClassLoader, Is.is(true));
+
+        testRoot.commit(remote, "algorithms/UnloadedAlgorithm.java", algorithm("2.0.0"));
+        repository.refresh();
+
+        awaitCollection(firstLoader);
+        MatcherAssert.assertThat(firstLoader.get(), IsNull.nullValue());
+        MatcherAssert.assertThat(firstClass.get(), IsNull.nullValue());
+        MatcherAssert.assertThat(getAlgorithmClass().getAnnotation(Algorithm.class).version(), Is.is("2.0.0"));
+    }
+
+    /**
+     * The instance is not kept beyond this call, so that only the repository
+     * may hold on to it.
+     */
+    private Class<?> getAlgorithmClass() {
+        return repository.getAlgorithm(IDENTIFIER).getClass();
+    }
+
+    private static void awaitCollection(WeakReference<?> reference) throws InterruptedException {
+        List<byte[]> pressure = new ArrayList<>();
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            pressure.add(new byte[1024 * 1024]);
+            Thread.sleep(20);
+        }
+    }
+
+}
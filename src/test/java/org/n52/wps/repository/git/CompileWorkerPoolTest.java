@@ -0,0 +1,213 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.After;
+import org.junit.Test;
+
+public class CompileWorkerPoolTest {
+
+    private final File root = new File("/not/on/disk");
+
+    private final InMemorySourceTree sourceTree = new InMemorySourceTree(root);
+
+    private CompileWorkerPool workers;
+
+    @After
+    public void close() {
+        if (workers != null) {
+            workers.close();
+        }
+    }
+
+    @Test
+    public void compilesSourcesReadThroughThePipe() {
+        workers = new CompileWorkerPool(1, 128, 60, TimeUnit.SECONDS);
+        sourceTree.add("pkg/Helper.java", "package pkg; public class Helper { static String greet() { return \"hello\"; } }");
+        File algorithm = sourceTree.add("pkg/Algorithm.java", "package pkg; public class Algorithm { String call() { return Helper.greet(); } }");
+        WorkerJavaCompiler compiler = new WorkerJavaCompiler(sourceTree, workers);
+
+        CompilationResult result = compiler.compile(Collections.singletonList(algorithm));
+        CompilationResult again = compiler.compile(Collections.singletonList(algorithm));
+
+        MatcherAssert.assertThat(result.getFailedSources().isEmpty(), Is.is(true));
+        MatcherAssert.assertThat(result.getPrimaryClassName(algorithm), Is.is("pkg.Algorithm"));
+        MatcherAssert.assertThat(result.getClasses().get("pkg.Helper"), IsNull.notNullValue());
+        MatcherAssert.assertThat(again.getClasses().keySet(), Is.is(result.getClasses().keySet()));
+        MatcherAssert.assertThat(workers.getStartedCount(), Is.is(1));
+        MatcherAssert.assertThat(workers.getIdleCount(), Is.is(1));
+    }
+
+    @Test
+    public void reportsErrorsPerSource() {
+        workers = new CompileWorkerPool(1, 128, 60, TimeUnit.SECONDS);
+        File broken = sourceTree.add("pkg/Broken.java", "package pkg; public class Broken { int x }");
+        File valid = sourceTree.add("pkg/Valid.java", "package pkg; public class Valid {}");
+
+        CompilationResult result = new WorkerJavaCompiler(sourceTree, workers).compile(Arrays.asList(broken, valid));
+
+        MatcherAssert.assertThat(result.getFailedSources(), Is.is(Collections.singleton(broken)));
+        MatcherAssert.assertThat(result.getPrimaryClassName(valid), Is.is("pkg.Valid"));
+    }
+
+    @Test
+    public void compilesSourcesOfTimedOutBatchesOneByOne() {
+        workers = new CompileWorkerPool(1, 128, 1, TimeUnit.MILLISECONDS);
+        List<File> sources = new ArrayList<>();
+        for (String name : Arrays.asList("First", "Second", "Third", "Fourth")) {
+            sources.add(sourceTree.add("pkg/" + name + ".java", "package pkg; public class " + name + " {}"));
+        }
+
+        CompilationResult result = new WorkerJavaCompiler(sourceTree, workers).compile(sources);
+
+        for (File source : sources) {
+            MatcherAssert.assertThat(result.getErrors(source).get(0).contains("Timed out"), Is.is(true));
+        }
+        // the batch and each of its sources, not split recursively
+        MatcherAssert.assertThat(workers.getStartedCount(), Is.is(5));
+        MatcherAssert.assertThat(workers.getIdleCount(), Is.is(0));
+    }
+
+    @Test
+    public void closeKillsBusyWorkers() throws Exception {
+        workers = new CompileWorkerPool(1, 128, 60, TimeUnit.SECONDS);
+        CountDownLatch reading = new CountDownLatch(1);
+        File source = sourceTree.add("pkg/Stuck.java", "package pkg; public class Stuck {}");
+        SourceTree stuckTree = new InMemorySourceTree(root) {
+            @Override
+            public byte[] read(File file) throws IOException {
+                reading.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return sourceTree.read(file);
+            }
+        };
+        Future<CompilationResult> compilation = workers.submit(stuckTree, Collections.singletonList(source));
+        MatcherAssert.assertThat(reading.await(30, TimeUnit.SECONDS), Is.is(true));
+        MatcherAssert.assertThat(workers.getBusyCount(), Is.is(1));
+
+        workers.close();
+
+        CompilationResult result = compilation.get(10, TimeUnit.SECONDS);
+        MatcherAssert.assertThat(result.getFailedSources(), Is.is(Collections.singleton(source)));
+        MatcherAssert.assertThat(workers.getBusyCount(), Is.is(0));
+    }
+
+    @Test
+    public void refusesToReadOutsideOfTheSourceRoot() {
+        workers = new CompileWorkerPool(1, 128, 60, TimeUnit.SECONDS);
+        File outside = sourceTree.add("../elsewhere/pkg/Outside.java", "package pkg; public class Outside {}");
+
+        CompilationResult result = new WorkerJavaCompiler(sourceTree, workers).compile(Collections.singletonList(outside));
+
+        MatcherAssert.assertThat(result.getFailedSources(), Is.is(Collections.singleton(outside)));
+        MatcherAssert.assertThat(String.join("\n", result.getErrors(outside)).contains("Not within the source root"), Is.is(true));
+    }
+
+    @Test
+    public void sharesFingerprintWithInMemoryCompiler() {
+        workers = new CompileWorkerPool(1, 128, 60, TimeUnit.SECONDS);
+
+        MatcherAssert.assertThat(new WorkerJavaCompiler(sourceTree, workers).getFingerprint(),
+                Is.is(new InMemoryJavaCompiler(sourceTree).getFingerprint()));
+    }
+
+    /**
+     * Sources which do not exist on disk, like those of a bare repository.
+     */
+    private static class InMemorySourceTree implements SourceTree {
+
+        private final File root;
+
+        private final Map<File, byte[]> sources = new HashMap<>();
+
+        InMemorySourceTree(File root) {
+            this.root = root;
+        }
+
+        File add(String path, String content) {
+            File source = new File(root, path);
+            sources.put(source, content.getBytes(StandardCharsets.UTF_8));
+            return source;
+        }
+
+        @Override
+        public File getRoot() {
+            return root;
+        }
+
+        @Override
+        public ObjectId getBlobId(File source) {
+            return sources.containsKey(source)
+                    ? GitBlobs.idOf(sources.get(source))
+                    : null;
+        }
+
+        @Override
+        public byte[] read(File source) throws IOException {
+            if ( !sources.containsKey(source)) {
+                throw new IOException("No such source: " + source);
+            }
+            return sources.get(source);
+        }
+
+        @Override
+        public List<File> listSources(String packagePath) {
+            List<File> listed = new ArrayList<>();
+            File directory = new File(root, packagePath);
+            for (File source : sources.keySet()) {
+                if (directory.equals(source.getParentFile())) {
+                    listed.add(source);
+                }
+            }
+            return listed;
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyGraphTest {
+
+    private static final ObjectId BLOB_ID = ObjectId.fromString("0123456789012345678901234567890123456789");
+
+    @Rule
+    public TemporaryFolder testRoot = new TemporaryFolder();
+
+    private final File constants = new File("/sources/Constants.java").getAbsoluteFile();
+
+    private final File helper = new File("/sources/Helper.java").getAbsoluteFile();
+
+    private final File first = new File("/sources/First.java").getAbsoluteFile();
+
+    private final File second = new File("/sources/Second.java").getAbsoluteFile();
+
+    private DependencyGraph createGraph() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.update(constants, BLOB_ID, Collections.<File>emptySet());
+        graph.update(helper, BLOB_ID, Collections.singleton(constants));
+        graph.update(first, BLOB_ID, Collections.singleton(helper));
+        graph.update(second, BLOB_ID, Collections.<File>emptySet());
+        return graph;
+    }
+
+    @Test
+    public void dependentsAreTransitive() {
+        DependencyGraph graph = createGraph();
+
+        MatcherAssert.assertThat(graph.getDependents(Collections.singleton(constants)),
+                Is.is(new HashSet<>(Arrays.asList(helper, first))));
+        MatcherAssert.assertThat(graph.getDependents(Collections.singleton(helper)), Is.is(Collections.singleton(first)));
+        MatcherAssert.assertThat(graph.getDependents(Collections.singleton(second)), Is.is(Collections.<File>emptySet()));
+    }
+
+    @Test
+    public void dependentsOfRemovedSourcesAreKept() {
+        DependencyGraph graph = createGraph();
+        graph.remove(helper);
+
+        MatcherAssert.assertThat(graph.getBlobId(helper), IsNull.nullValue());
+        MatcherAssert.assertThat(graph.getDependents(Collections.singleton(helper)), Is.is(Collections.singleton(first)));
+        MatcherAssert.assertThat(graph.getDependents(Collections.singleton(constants)), Is.is(Collections.<File>emptySet()));
+    }
+
+    @Test
+    public void writtenGraphCanBeRead() throws IOException {
+        File graphFile = new File(testRoot.getRoot(), "dependencies");
+        createGraph().write(graphFile);
+
+        DependencyGraph graph = new DependencyGraph();
+        MatcherAssert.assertThat(graph.read(graphFile), Is.is(true));
+
+        MatcherAssert.assertThat(graph.getSources(), Is.is(new HashSet<>(Arrays.asList(constants, helper, first, second))));
+        MatcherAssert.assertThat(graph.getBlobId(first), Is.is(BLOB_ID));
+        MatcherAssert.assertThat(graph.getDependents(Collections.singleton(constants)),
+                Is.is(new HashSet<>(Arrays.asList(helper, first))));
+    }
+
+    @Test
+    public void missingGraphIsNotRead() throws IOException {
+        DependencyGraph graph = createGraph();
+
+        MatcherAssert.assertThat(graph.read(new File(testRoot.getRoot(), "missing")), Is.is(false));
+        MatcherAssert.assertThat(graph.getSources().size(), Is.is(4));
+    }
+
+}
@@ -28,14 +28,23 @@
  */
 package org.n52.wps.repository.git;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.UUID;
 
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.n52.wps.repository.git.DirectoryWatcher;
@@ -63,17 +72,9 @@ public class DirectoryWatcherTest {
         logger.info("Starting to watch  directory {}", tmpWatchedDir);
 
         DirectoryWatcher watcher = new DirectoryWatcher(tmpWatchedDir, watchlistener);
+        // directories are registered before start() returns
         watcher.start();
 
-        //give the watcher a little time
-        try {
-            Thread.sleep(1000);
-        } catch (Exception e) {
-            /*
-             * ignore
-             */
-        }
-
         File newfile = new File(tmpWatchedDir + File.separator + "newFile.txt");
 
         try {
@@ -86,7 +87,66 @@ public class DirectoryWatcherTest {
             logger.error(e.getMessage());
         }
 
-        verify(watchlistener).handleNewFile(newfile.getAbsolutePath());
+        ArgumentCaptor<FileChanges> changes = ArgumentCaptor.forClass(FileChanges.class);
+        verify(watchlistener, timeout(10000)).handleChanges(changes.capture());
+        MatcherAssert.assertThat(changes.getValue().getCreated().contains(newfile.getAbsoluteFile()), Is.is(true));
+        watcher.stop();
+    }
+
+    @Test
+    public void testCoalesceEventsWithinQuietPeriod() throws IOException {
+        File watchedDir = new File(System.getProperty("java.io.tmpdir"), "tmp-git-dir-" + UUID.randomUUID().toString().substring(0, 5));
+        watchedDir.mkdir();
+
+        DirectoryWatcher watcher = new DirectoryWatcher(watchedDir, watchlistener, 500);
+        watcher.start();
+
+        File newfile = new File(watchedDir, "newFile.txt");
+        for (int i = 0; i < 10; i++) {
+            Files.write(newfile.toPath(), ("line " + i + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        File deletedFile = new File(watchedDir, "deleted.txt");
+        deletedFile.createNewFile();
+        deletedFile.delete();
+
+        ArgumentCaptor<FileChanges> changes = ArgumentCaptor.forClass(FileChanges.class);
+        verify(watchlistener, timeout(10000)).handleChanges(changes.capture());
+        // no further batch once two more quiet periods passed
+        verify(watchlistener, after(1000).times(1)).handleChanges(any(FileChanges.class));
+
+        FileChanges batch = changes.getValue();
+        MatcherAssert.assertThat(batch.size(), Is.is(1));
+        MatcherAssert.assertThat(batch.getCreated().contains(newfile.getAbsoluteFile()), Is.is(true));
+        MatcherAssert.assertThat(watcher.getDetectedChangeCount() > batch.size(), Is.is(true));
+        MatcherAssert.assertThat(watcher.getPendingChangeCount(), Is.is(0));
+        watcher.stop();
+    }
+
+    @Test
+    public void testWatchNewSubdirectories() throws IOException {
+        File watchedDir = new File(System.getProperty("java.io.tmpdir"), "tmp-git-dir-" + UUID.randomUUID().toString().substring(0, 5));
+        File existingDir = new File(watchedDir, "org");
+        existingDir.mkdirs();
+
+        DirectoryWatcher watcher = new DirectoryWatcher(watchedDir, watchlistener, 500);
+        watcher.start();
+
+        File nestedFile = new File(existingDir, "Nested.java");
+        nestedFile.createNewFile();
+        File newDir = new File(existingDir, "example");
+        newDir.mkdir();
+        File fileInNewDir = new File(newDir, "New.java");
+        fileInNewDir.createNewFile();
+
+        ArgumentCaptor<FileChanges> changes = ArgumentCaptor.forClass(FileChanges.class);
+        verify(watchlistener, timeout(10000)).handleChanges(changes.capture());
+
+        FileChanges batch = changes.getValue();
+        MatcherAssert.assertThat(batch.getCreated().contains(nestedFile.getAbsoluteFile()), Is.is(true));
+        MatcherAssert.assertThat(batch.getCreated().contains(fileInNewDir.getAbsoluteFile()), Is.is(true));
+        MatcherAssert.assertThat(batch.getCreated().contains(newDir.getAbsoluteFile()), Is.is(false));
+        watcher.stop();
     }
 
 }
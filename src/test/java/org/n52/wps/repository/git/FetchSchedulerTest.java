@@ -0,0 +1,122 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class FetchSchedulerTest {
+
+    @Rule
+    public TestRepositories testRoot = new TestRepositories();
+
+    private Git developer;
+
+    private Git node;
+
+    private final List<ObjectId> handled = new ArrayList<>();
+
+    @Before
+    public void setup() throws GitAPIException, IOException {
+        File remote = testRoot.initBare("remote.git");
+        developer = testRoot.clone(remote, "developer");
+        testRoot.commitAndPush(developer, "Algorithm.java", "public class Algorithm {}");
+
+        node = testRoot.clone(remote, "node");
+    }
+
+    private FetchScheduler createScheduler() {
+        return new FetchScheduler(node.getRepository(), Constants.DEFAULT_REMOTE_NAME, 1, 0, TimeUnit.HOURS, handled::add);
+    }
+
+    @Test
+    public void unchangedRemoteIsNotHandled() throws Exception {
+        FetchScheduler scheduler = createScheduler().start();
+        try {
+            MatcherAssert.assertThat(scheduler.fetchAndHandleChanges(), Is.is(false));
+            MatcherAssert.assertThat(handled.isEmpty(), Is.is(true));
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void movedRemoteIsHandledOnce() throws Exception {
+        FetchScheduler scheduler = createScheduler().start();
+        try {
+            RevCommit pushed = testRoot.commitAndPush(developer, "Algorithm.java", "public class Algorithm { int value; }");
+
+            MatcherAssert.assertThat(scheduler.fetchAndHandleChanges(), Is.is(true));
+            MatcherAssert.assertThat(scheduler.fetchAndHandleChanges(), Is.is(false));
+            MatcherAssert.assertThat(handled.size(), Is.is(1));
+            MatcherAssert.assertThat(handled.get(0), Is.<ObjectId>is(pushed));
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void failedHandlingIsRetried() throws Exception {
+        List<ObjectId> attempts = new ArrayList<>();
+        FetchScheduler scheduler = new FetchScheduler(node.getRepository(), Constants.DEFAULT_REMOTE_NAME, 1, 0, TimeUnit.HOURS, remoteId -> {
+            attempts.add(remoteId);
+            if (attempts.size() == 1) {
+                throw new UpdateGitAlgorithmsRepositoryException("merge failed");
+            }
+        }).start();
+        try {
+            testRoot.commitAndPush(developer, "Algorithm.java", "public class Algorithm { int value; }");
+            try {
+                scheduler.fetchAndHandleChanges();
+            } catch (UpdateGitAlgorithmsRepositoryException e) {
+                // expected
+            }
+
+            MatcherAssert.assertThat(scheduler.fetchAndHandleChanges(), Is.is(true));
+            MatcherAssert.assertThat(attempts.size(), Is.is(2));
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.Test;
+
+public class FileChangesTest {
+
+    private final File file = new File("Algorithm.java");
+
+    @Test
+    public void createdAndModifiedIsCreated() {
+        FileChanges changes = new FileChanges();
+        changes.created(file);
+        changes.modified(file);
+        changes.modified(file);
+
+        MatcherAssert.assertThat(changes.getCreated().contains(file), Is.is(true));
+        MatcherAssert.assertThat(changes.getModified().isEmpty(), Is.is(true));
+    }
+
+    @Test
+    public void createdAndDeletedIsNoChange() {
+        FileChanges changes = new FileChanges();
+        changes.created(file);
+        changes.modified(file);
+        changes.deleted(file);
+
+        MatcherAssert.assertThat(changes.isEmpty(), Is.is(true));
+    }
+
+    @Test
+    public void deletedAndCreatedIsModified() {
+        FileChanges changes = new FileChanges();
+        changes.deleted(file);
+        changes.created(file);
+
+        MatcherAssert.assertThat(changes.getModified().contains(file), Is.is(true));
+        MatcherAssert.assertThat(changes.size(), Is.is(1));
+    }
+
+    @Test
+    public void modifiedAndDeletedIsDeleted() {
+        FileChanges changes = new FileChanges();
+        changes.modified(file);
+        changes.deleted(file);
+
+        MatcherAssert.assertThat(changes.getDeleted().contains(file), Is.is(true));
+        MatcherAssert.assertThat(changes.size(), Is.is(1));
+    }
+
+}
@@ -36,9 +36,15 @@ package org.n52.wps.repository.git;
 import com.google.common.io.Files;
 import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
@@ -56,6 +62,12 @@ import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.n52.wps.server.IAlgorithm;
+import org.n52.wps.repository.git.module.GitAlgorithmRepositoryCM;
+import org.n52.wps.webapp.api.ConfigurationModule;
+import org.n52.wps.webapp.api.types.ConfigurationEntry;
+import org.n52.wps.webapp.api.types.IntegerConfigurationEntry;
+import org.n52.wps.webapp.api.types.StringConfigurationEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,17 +82,98 @@ public class GitAlgorithmRepositoryTest {
     @Rule
     public TemporaryFolder testRoot = new TemporaryFolder();
 
+    @Rule
+    public TestRepositories remotes = new TestRepositories();
+
     @Mock
     private GitAlgorithmRepository gitAlgorithmRepository;
 
     private Path cleanRepository;
 
+    private final List<GitAlgorithmRepository> repositories = new ArrayList<>();
+
     @Before
     public void setup() throws GitAPIException, IOException {
         cleanRepository = initRepository();
         MockitoAnnotations.initMocks(this);
     }
 
+    @After
+    public void shutdownRepositories() {
+        repositories.forEach(GitAlgorithmRepository::shutdown);
+    }
+
+    private GitAlgorithmRepository open(Git remote, ConfigurationEntry<?>... settings) throws Exception {
+        return open(remote, false, settings);
+    }
+
+    private GitAlgorithmRepository open(Git remote, boolean detectChanges, ConfigurationEntry<?>... settings) throws Exception {
+        GitAlgorithmRepository repository = create(remote, detectChanges, settings);
+        MatcherAssert.assertThat(repository.awaitInitialization(1, TimeUnit.MINUTES), Is.is(true));
+        return repository;
+    }
+
+    private GitAlgorithmRepository create(Git remote, boolean detectChanges, ConfigurationEntry<?>... settings) throws Exception {
+        final List<ConfigurationEntry<?>> entries = new ArrayList<>(Arrays.asList(
+                new StringConfigurationEntry(GitAlgorithmRepositoryCM.repositoryURLKey, "", "", true,
+                        remote.getRepository().getDirectory().toURI().toString()),
+                new StringConfigurationEntry(GitAlgorithmRepositoryCM.localRepositoryDirectoryKey, "", "", true,
+                        new File(remotes.getRoot(), "local").getAbsolutePath()),
+                new StringConfigurationEntry(GitAlgorithmRepositoryCM.fileNameRegexKey, "", "", true, "^.*Algorithm\\.java$"),
+                new IntegerConfigurationEntry(GitAlgorithmRepositoryCM.fetchIntervalKey, "", "", true, 0)));
+        entries.addAll(Arrays.asList(settings));
+        ConfigurationModule configurationModule = new GitAlgorithmRepositoryCM() {
+            @Override
+            public List<? extends ConfigurationEntry<?>> getConfigurationEntries() {
+                return entries;
+            }
+        };
+        GitAlgorithmRepository repository = new GitAlgorithmRepository(configurationModule, detectChanges);
+        repositories.add(repository);
+        return repository;
+    }
+
+    private void shutdown(GitAlgorithmRepository repository) {
+        repositories.remove(repository);
+        repository.shutdown();
+    }
+
+    private static String algorithm(String className, String result) {
+        return "package algorithms;\n"
+                + "\n"
+                + "import org.n52.wps.algorithm.annotation.Algorithm;\n"
+                + "import org.n52.wps.algorithm.annotation.Execute;\n"
+                + "import org.n52.wps.algorithm.annotation.LiteralDataOutput;\n"
+                + "import org.n52.wps.server.AbstractAnnotatedAlgorithm;\n"
+                + "\n"
+                + "@Algorithm(identifier = \"algorithms." + className + "\", version = \"1.0.0\")\n"
+                + "public class " + className + " extends AbstractAnnotatedAlgorithm {\n"
+                + "\n"
+                + "    private int result;\n"
+                + "\n"
+                + "    @LiteralDataOutput(identifier = \"result\")\n"
+                + "    public int getResult() {\n"
+                + "        return result;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Execute\n"
+                + "    public void compute() {\n"
+                + "        result = " + result + ";\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    private static String helper(String className, String value) {
+        return "package algorithms;\n"
+                + "\n"
+                + "public class " + className + " {\n"
+                + "\n"
+                + "    public static int value() {\n"
+                + "        return " + value + ";\n"
+                + "    }\n"
+                + "}\n";
+    }
+
     private Path initRepository() throws GitAPIException, IOException {
         File repository = testRoot.newFolder("repository");
         Git.init().setDirectory(repository).call();
@@ -112,4 +205,161 @@ public class GitAlgorithmRepositoryTest {
         MatcherAssert.assertThat(i , Is.is(1));
     }
 
+    @Test
+    public void refreshReloadsOnlyPulledAlgorithmsOnce() throws Exception {
+        Git remote = remotes.init("remote");
+        remotes.commit(remote, "algorithms/ChangedAlgorithm.java", algorithm("ChangedAlgorithm", "1"));
+        remotes.commit(remote, "algorithms/UntouchedAlgorithm.java", algorithm("UntouchedAlgorithm", "1"));
+        GitAlgorithmRepository repository = open(remote);
+        IAlgorithm untouched = repository.getAlgorithm("algorithms.UntouchedAlgorithm");
+        long generation = repository.getMetrics().getRegistryGeneration();
+
+        remotes.commit(remote, "algorithms/ChangedAlgorithm.java", algorithm("ChangedAlgorithm", "2"));
+        repository.refresh();
+        IAlgorithm changed = repository.getAlgorithm("algorithms.ChangedAlgorithm");
+        // the change detection reports the pulled file afterwards
+        FileChanges pulled = new FileChanges();
+        pulled.modified(new File(remotes.getRoot(), "local/algorithms/ChangedAlgorithm.java"));
+        repository.handleDetectedChanges(pulled);
+
+        MatcherAssert.assertThat(repository.getMetrics().getRegistryGeneration(), Is.is(generation + 1));
+        MatcherAssert.assertThat(repository.getAlgorithm("algorithms.ChangedAlgorithm") == changed, Is.is(true));
+        MatcherAssert.assertThat(repository.getAlgorithm("algorithms.UntouchedAlgorithm") == untouched, Is.is(true));
+    }
+
+    @Test
+    public void conflictingPullIsRolledBack() throws Exception {
+        Git remote = remotes.init("remote");
+        remotes.commit(remote, "algorithms/ConflictAlgorithm.java", algorithm("ConflictAlgorithm", "1"));
+        GitAlgorithmRepository repository = open(remote);
+        Git local = remotes.track(Git.open(new File(remotes.getRoot(), "local")));
+        RevCommit localCommit = remotes.commit(local, "algorithms/ConflictAlgorithm.java", algorithm("ConflictAlgorithm", "2"));
+
+        remotes.commit(remote, "algorithms/ConflictAlgorithm.java", algorithm("ConflictAlgorithm", "3"));
+        repository.refresh();
+
+        MatcherAssert.assertThat(local.getRepository().resolve("HEAD"), Is.is(localCommit.getId()));
+        MatcherAssert.assertThat(local.status().call().isClean(), Is.is(true));
+        MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.ConflictAlgorithm"), Is.is(true));
+    }
+
+    @Test
+    public void lookupsAreServedFromSnapshotWhileInitializing() throws Exception {
+        Git remote = remotes.init("remote");
+        remotes.commit(remote, "algorithms/RestoredAlgorithm.java", algorithm("RestoredAlgorithm", "1"));
+        shutdown(open(remote));
+
+        GitAlgorithmRepository repository;
+        try (ServerSocket unresponsive = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            // the source is cloned until the connection is closed
+            repository = create(remote, false, new StringConfigurationEntry(GitAlgorithmRepositoryCM.additionalSourcesKey, "", "",
+                    false, "git://127.0.0.1:" + unresponsive.getLocalPort() + "/unresponsive.git"));
+
+            MatcherAssert.assertThat(repository.awaitInitialization(500, TimeUnit.MILLISECONDS), Is.is(false));
+            MatcherAssert.assertThat(repository.getInitializationState() == InitializationState.READY, Is.is(false));
+            MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.RestoredAlgorithm"), Is.is(true));
+            MatcherAssert.assertThat(repository.getAlgorithm("algorithms.RestoredAlgorithm") != null, Is.is(true));
+        }
+        MatcherAssert.assertThat(repository.awaitInitialization(1, TimeUnit.MINUTES), Is.is(true));
+        MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.RestoredAlgorithm"), Is.is(true));
+    }
+
+    @Test
+    public void failedSourceKeepsRestoredAlgorithms() throws Exception {
+        Git remote = remotes.init("remote");
+        remotes.commit(remote, "algorithms/LocalAlgorithm.java", algorithm("LocalAlgorithm", "1"));
+        Git sourceRemote = remotes.init("source");
+        remotes.commit(sourceRemote, "algorithms/SourceAlgorithm.java", algorithm("SourceAlgorithm", "1"));
+        ConfigurationEntry<?> additionalSources = new StringConfigurationEntry(GitAlgorithmRepositoryCM.additionalSourcesKey, "", "",
+                false, sourceRemote.getRepository().getDirectory().toURI().toString());
+        GitAlgorithmRepository first = open(remote, false, additionalSources);
+        MatcherAssert.assertThat(first.containsAlgorithm("algorithms.SourceAlgorithm"), Is.is(true));
+        shutdown(first);
+
+        // fetching the source fails from now on
+        sourceRemote.close();
+        FileUtils.deleteDirectory(sourceRemote.getRepository().getWorkTree());
+        GitAlgorithmRepository repository = open(remote, false, additionalSources);
+
+        MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.LocalAlgorithm"), Is.is(true));
+        MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.SourceAlgorithm"), Is.is(true));
+        MatcherAssert.assertThat(repository.getAlgorithm("algorithms.SourceAlgorithm") != null, Is.is(true));
+    }
+
+    @Test
+    public void algorithmsAreLoadedConcurrently() throws Exception {
+        Git remote = remotes.init("remote");
+        for (int i = 0; i < 8; i++) {
+            remotes.commit(remote, "algorithms/Concurrent" + i + "Algorithm.java", algorithm("Concurrent" + i + "Algorithm", String.valueOf(i)));
+        }
+        GitAlgorithmRepository repository = open(remote,
+                new IntegerConfigurationEntry(GitAlgorithmRepositoryCM.workerThreadsKey, "", "", false, 4));
+
+        MatcherAssert.assertThat(repository.getAlgorithmNames().size(), Is.is(8));
+        MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.Concurrent7Algorithm"), Is.is(true));
+    }
+
+    @Test
+    public void loadFailureDoesNotAffectOtherAlgorithms() throws Exception {
+        Git remote = remotes.init("remote");
+        remotes.commit(remote, "algorithms/FirstAlgorithm.java", algorithm("FirstAlgorithm", "1"));
+        // compiles, but declares no class named like the file
+        remotes.commit(remote, "algorithms/MisnamedAlgorithm.java", "package algorithms;\n\nclass Misnamed {\n}\n");
+        remotes.commit(remote, "algorithms/SecondAlgorithm.java", algorithm("SecondAlgorithm", "2"));
+        GitAlgorithmRepository repository = open(remote,
+                new IntegerConfigurationEntry(GitAlgorithmRepositoryCM.workerThreadsKey, "", "", false, 4));
+
+        MatcherAssert.assertThat(repository.getAlgorithmNames().size(), Is.is(2));
+        MatcherAssert.assertThat(repository.getFailedAlgorithms().size(), Is.is(1));
+        MatcherAssert.assertThat(repository.getFailedAlgorithms().get(0).getPath().endsWith("MisnamedAlgorithm.java"), Is.is(true));
+    }
+
+    @Test
+    public void algorithmFailingOnBrokenHelperIsLoadedOnceTheHelperIsFixed() throws Exception {
+        Git remote = remotes.init("remote");
+        // not mentioned by the algorithm, only by the helper it uses
+        remotes.commit(remote, "algorithms/Constants.java", helper("Constants", "1 +"));
+        remotes.commit(remote, "algorithms/Helper.java", helper("Helper", "Constants.value()"));
+        remotes.commit(remote, "algorithms/HelperAlgorithm.java", algorithm("HelperAlgorithm", "Helper.value()"));
+        GitAlgorithmRepository repository = open(remote);
+        MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.HelperAlgorithm"), Is.is(false));
+
+        remotes.commit(remote, "algorithms/Constants.java", helper("Constants", "1"));
+        repository.refresh();
+
+        MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.HelperAlgorithm"), Is.is(true));
+        MatcherAssert.assertThat(repository.getFailedAlgorithms().isEmpty(), Is.is(true));
+    }
+
+    @Test
+    public void brokenHelperDoesNotPreventUnrelatedAlgorithms() throws Exception {
+        Git remote = remotes.init("remote");
+        remotes.commit(remote, "algorithms/Helper.java", helper("Helper", "1 +"));
+        remotes.commit(remote, "algorithms/HelperAlgorithm.java", algorithm("HelperAlgorithm", "Helper.value()"));
+        remotes.commit(remote, "algorithms/UnrelatedAlgorithm.java", algorithm("UnrelatedAlgorithm", "1"));
+        GitAlgorithmRepository repository = open(remote);
+
+        MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.HelperAlgorithm"), Is.is(false));
+        MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.UnrelatedAlgorithm"), Is.is(true));
+    }
+
+    @Test
+    public void invalidAlgorithmIsNotPublished() throws Exception {
+        Git remote = remotes.init("remote");
+        remotes.commit(remote, "algorithms/InvalidAlgorithm.java", algorithm("InvalidAlgorithm", "1")
+                .replace("    @Execute", "    @Override\n"
+                        + "    public boolean processDescriptionIsValid(String version) {\n"
+                        + "        return false;\n"
+                        + "    }\n"
+                        + "\n"
+                        + "    @Execute"));
+        remotes.commit(remote, "algorithms/ValidAlgorithm.java", algorithm("ValidAlgorithm", "1"));
+        GitAlgorithmRepository repository = open(remote);
+
+        MatcherAssert.assertThat(repository.getAlgorithmNames().size(), Is.is(1));
+        MatcherAssert.assertThat(repository.containsAlgorithm("algorithms.InvalidAlgorithm"), Is.is(false));
+        MatcherAssert.assertThat(repository.getProcessDescription("algorithms.ValidAlgorithm") != null, Is.is(true));
+        MatcherAssert.assertThat(repository.getFailedAlgorithms().size(), Is.is(1));
+    }
+
 }
@@ -0,0 +1,114 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class GitChangeDetectorTest {
+
+    @Rule
+    public TestRepositories testRoot = new TestRepositories();
+
+    private Git git;
+
+    private File workingCopy;
+
+    private GitChangeDetector detector;
+
+    @Before
+    public void setup() throws GitAPIException, IOException {
+        git = testRoot.init("repository");
+        workingCopy = git.getRepository().getWorkTree();
+        testRoot.write(workingCopy, "Committed.java", "public class Committed {}");
+        testRoot.commit(git, "Committed.java");
+        detector = new GitChangeDetector(git.getRepository(), workingCopy, Mockito.mock(WatchListener.class), 3600000).start();
+    }
+
+    @After
+    public void tearDown() {
+        detector.stop();
+    }
+
+    @Test
+    public void noChangesAreDetectedInitially() throws IOException {
+        MatcherAssert.assertThat(detector.detectChanges().isEmpty(), Is.is(true));
+    }
+
+    @Test
+    public void workingTreeChangesAreDetected() throws IOException {
+        File modified = testRoot.write(workingCopy, "Committed.java", "public class Committed { int value; }");
+        File created = testRoot.write(workingCopy, "org/example/Untracked.java", "public class Untracked {}");
+
+        FileChanges changes = detector.detectChanges();
+        MatcherAssert.assertThat(changes.getModified().contains(modified), Is.is(true));
+        MatcherAssert.assertThat(changes.getCreated().contains(created), Is.is(true));
+        MatcherAssert.assertThat(changes.size(), Is.is(2));
+        MatcherAssert.assertThat(detector.detectChanges().isEmpty(), Is.is(true));
+
+        created.delete();
+        changes = detector.detectChanges();
+        MatcherAssert.assertThat(changes.getDeleted().contains(created), Is.is(true));
+        MatcherAssert.assertThat(changes.size(), Is.is(1));
+    }
+
+    @Test
+    public void committingUnchangedContentIsNoChange() throws IOException, GitAPIException {
+        testRoot.write(workingCopy, "Algorithm.java", "public class Algorithm {}");
+        detector.detectChanges();
+
+        testRoot.commit(git, "Algorithm.java");
+        MatcherAssert.assertThat(detector.detectChanges().isEmpty(), Is.is(true));
+    }
+
+    @Test
+    public void movedHeadIsDetected() throws IOException, GitAPIException {
+        File removed = new File(workingCopy, "Committed.java");
+        git.rm().addFilepattern("Committed.java").call();
+        File added = testRoot.write(workingCopy, "Added.java", "public class Added {}");
+        git.add().addFilepattern("Added.java").call();
+        git.commit().setMessage("replace").call();
+
+        FileChanges changes = detector.detectChanges();
+        MatcherAssert.assertThat(changes.getDeleted().contains(removed), Is.is(true));
+        MatcherAssert.assertThat(changes.getCreated().contains(added), Is.is(true));
+        MatcherAssert.assertThat(changes.size(), Is.is(2));
+    }
+
+}
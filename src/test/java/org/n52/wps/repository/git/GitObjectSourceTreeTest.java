@@ -0,0 +1,127 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class GitObjectSourceTreeTest {
+
+    @Rule
+    public TestRepositories testRoot = new TestRepositories();
+
+    private Git developer;
+
+    private Git bare;
+
+    private File sourceRoot;
+
+    @Before
+    public void setup() throws GitAPIException, IOException {
+        developer = testRoot.init("developer");
+        testRoot.commit(developer, "org/example/Algorithm.java", "package org.example;\n"
+                + "public class Algorithm { Helper helper = new Helper(); }");
+        testRoot.commit(developer, "org/example/Helper.java", "package org.example;\n"
+                + "public class Helper { }");
+        testRoot.commit(developer, "script.R", "# R script");
+
+        sourceRoot = testRoot.newFolder("bare.git");
+        bare = testRoot.track(Git.cloneRepository()
+                .setURI(developer.getRepository().getDirectory().toURI().toString())
+                .setDirectory(sourceRoot)
+                .setBare(true)
+                .call());
+    }
+
+    private GitObjectSourceTree createSourceTree() throws IOException {
+        ObjectId head = bare.getRepository().resolve("HEAD^{tree}");
+        return new GitObjectSourceTree(bare.getRepository(), sourceRoot, head);
+    }
+
+    @Test
+    public void findFilesOfTree() throws IOException {
+        List<File> files = createSourceTree().findFiles(Pattern.compile(".*\\.java"));
+
+        MatcherAssert.assertThat(files.size(), Is.is(2));
+        MatcherAssert.assertThat(files.contains(new File(sourceRoot, "org/example/Algorithm.java")), Is.is(true));
+        MatcherAssert.assertThat(files.contains(new File(sourceRoot, "org/example/Helper.java")), Is.is(true));
+    }
+
+    @Test
+    public void readBlobOfTree() throws IOException {
+        GitObjectSourceTree sourceTree = createSourceTree();
+        File helper = new File(sourceRoot, "org/example/Helper.java");
+
+        String content = new String(sourceTree.read(helper), StandardCharsets.UTF_8);
+        MatcherAssert.assertThat(content, Is.is("package org.example;\npublic class Helper { }"));
+        MatcherAssert.assertThat(sourceTree.getBlobId(helper), Is.is(GitBlobs.idOf(content.getBytes(StandardCharsets.UTF_8))));
+        MatcherAssert.assertThat(sourceTree.getBlobId(new File(sourceRoot, "org/example/Missing.java")), IsNull.nullValue());
+        MatcherAssert.assertThat(sourceTree.listSources("org/example").size(), Is.is(2));
+    }
+
+    @Test
+    public void compileFromObjectDatabase() throws IOException {
+        GitObjectSourceTree sourceTree = createSourceTree();
+        File algorithm = new File(sourceRoot, "org/example/Algorithm.java");
+
+        CompilationResult result = new InMemoryJavaCompiler(sourceTree).compile(Arrays.asList(algorithm));
+
+        MatcherAssert.assertThat(result.hasErrors(algorithm), Is.is(false));
+        MatcherAssert.assertThat(result.getPrimaryClassName(algorithm), Is.is("org.example.Algorithm"));
+        MatcherAssert.assertThat(result.getClasses().containsKey("org.example.Helper"), Is.is(true));
+    }
+
+    @Test
+    public void fetchMovesTree() throws IOException, GitAPIException {
+        GitObjectSourceTree sourceTree = createSourceTree();
+        File helper = new File(sourceRoot, "org/example/Helper.java");
+        ObjectId before = sourceTree.getBlobId(helper);
+
+        testRoot.commit(developer, "org/example/Helper.java", "package org.example;\npublic class Helper { int value; }");
+        bare.fetch().call();
+        sourceTree.setTree(bare.getRepository().resolve("HEAD^{tree}"));
+
+        MatcherAssert.assertThat(sourceTree.getBlobId(helper).equals(before), Is.is(false));
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class InMemoryJavaCompilerTest {
+
+    @Rule
+    public TestRepositories testRoot = new TestRepositories();
+
+    private File sourceRoot;
+
+    private InMemoryJavaCompiler compiler;
+
+    @Before
+    public void setup() throws IOException {
+        sourceRoot = testRoot.newFolder("sources");
+        compiler = new InMemoryJavaCompiler(sourceRoot);
+    }
+
+    @Test
+    public void compileWithHelperInnerClassAndPackage() throws Exception {
+        testRoot.write(sourceRoot, "pkg/Helper.java", "package pkg; public class Helper { static String greet() { return \"hello\"; } }");
+        File algorithm = testRoot.write(sourceRoot, "pkg/Algorithm.java", "package pkg;"
+                + "public class Algorithm implements java.util.concurrent.Callable<String> {"
+                + "  class Inner { String value() { return Helper.greet(); } }"
+                + "  public String call() { return new Inner().value(); }"
+                + "}");
+
+        CompilationResult result = compiler.compile(Arrays.asList(algorithm));
+
+        MatcherAssert.assertThat(result.getFailedSources().isEmpty(), Is.is(true));
+        MatcherAssert.assertThat(result.getPrimaryClassName(algorithm), Is.is("pkg.Algorithm"));
+        MatcherAssert.assertThat(result.getClasses().containsKey("pkg.Algorithm$Inner"), Is.is(true));
+        MatcherAssert.assertThat(result.getClasses().containsKey("pkg.Helper"), Is.is(true));
+
+        ClassLoader classLoader = new BytecodeClassLoader(getClass().getClassLoader(), result.getClasses());
+        Callable<?> instance = (Callable<?>) classLoader.loadClass("pkg.Algorithm").newInstance();
+        MatcherAssert.assertThat(instance.call(), Is.<Object>is("hello"));
+    }
+
+    @Test
+    public void noClassFilesWrittenToSourceDirectory() throws IOException {
+        File algorithm = testRoot.write(sourceRoot, "Algorithm.java", "public class Algorithm {}");
+
+        compiler.compile(Arrays.asList(algorithm));
+
+        MatcherAssert.assertThat(new File(sourceRoot, "Algorithm.class").exists(), Is.is(false));
+    }
+
+    @Test
+    public void brokenSourceDoesNotPreventOthers() throws IOException {
+        File broken = testRoot.write(sourceRoot, "Broken.java", "public class Broken { int value = \"no int\"; }");
+        File valid = testRoot.write(sourceRoot, "Valid.java", "public class Valid {}");
+
+        CompilationResult result = compiler.compile(Arrays.asList(broken, valid));
+
+        MatcherAssert.assertThat(result.hasErrors(broken), Is.is(true));
+        MatcherAssert.assertThat(result.getErrors(broken).isEmpty(), Is.is(false));
+        MatcherAssert.assertThat(result.hasErrors(valid), Is.is(false));
+        MatcherAssert.assertThat(result.getPrimaryClassName(valid), Is.is("Valid"));
+        MatcherAssert.assertThat(result.getPrimaryClassName(broken), IsNull.nullValue());
+    }
+
+    @Test
+    public void brokenHelperFailsOnlySourcesReferencingIt() throws IOException {
+        File helper = testRoot.write(sourceRoot, "Helper.java", "public class Helper { static int value = \"no int\"; }");
+        File referencing = testRoot.write(sourceRoot, "Referencing.java", "public class Referencing { int value = Helper.value; }");
+        File unrelated = testRoot.write(sourceRoot, "Unrelated.java", "public class Unrelated {}");
+        File other = testRoot.write(sourceRoot, "Other.java", "public class Other {}");
+
+        CompilationResult result = compiler.compile(Arrays.asList(referencing, unrelated, other));
+
+        MatcherAssert.assertThat(result.hasErrors(referencing), Is.is(true));
+        MatcherAssert.assertThat(result.hasErrors(helper), Is.is(true));
+        MatcherAssert.assertThat(result.getErrors(helper).size(), Is.is(1));
+        MatcherAssert.assertThat(result.hasErrors(unrelated), Is.is(false));
+        MatcherAssert.assertThat(result.getPrimaryClassName(unrelated), Is.is("Unrelated"));
+        MatcherAssert.assertThat(result.getPrimaryClassName(other), Is.is("Other"));
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.xmlbeans.XmlException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.n52.wps.server.IAlgorithm;
+import org.n52.wps.server.ProcessDescription;
+
+public class RegistrySnapshotTest {
+
+    @Rule
+    public TemporaryFolder testRoot = new TemporaryFolder();
+
+    private static RegisteredAlgorithm createAlgorithm(String file, String identifier, ClassLoader classLoader) {
+        return createAlgorithm(file, identifier, classLoader, new CachedProcessDescription(new ProcessDescription()));
+    }
+
+    private static RegisteredAlgorithm createAlgorithm(String file, String identifier, ClassLoader classLoader,
+            CachedProcessDescription description) {
+        IAlgorithm algorithm = Mockito.mock(IAlgorithm.class);
+        Mockito.when(algorithm.getWellKnownName()).thenReturn(identifier);
+        ObjectId blobId = GitBlobs.idOf(identifier.getBytes(StandardCharsets.UTF_8));
+        return new RegisteredAlgorithm(new File(file), "org.example." + identifier, algorithm, description, classLoader, blobId);
+    }
+
+    @Test
+    public void restoreWrittenSnapshot() throws IOException, XmlException {
+        Map<String, byte[]> classes = new HashMap<>();
+        classes.put("org.example.first", new byte[] {1, 2, 3});
+        classes.put("org.example.second", new byte[] {4, 5});
+        AlgorithmRegistry registry = AlgorithmRegistry.EMPTY.toBuilder()
+                .put(createAlgorithm("First.java", "first", new BytecodeClassLoader(null, classes)))
+                .put(createAlgorithm("Second.java", "second", new BytecodeClassLoader(null, classes)))
+                .build();
+        ObjectId commitId = GitBlobs.idOf("commit".getBytes(StandardCharsets.UTF_8));
+        File snapshotFile = new File(testRoot.getRoot(), "registry.snapshot");
+
+        MatcherAssert.assertThat(RegistrySnapshot.write(snapshotFile, commitId, registry), Is.is(2));
+        RegistrySnapshot snapshot = RegistrySnapshot.read(snapshotFile);
+
+        MatcherAssert.assertThat(snapshot.getCommitId(), Is.is(commitId));
+        MatcherAssert.assertThat(snapshot.getEntries().size(), Is.is(2));
+        RegistrySnapshot.Entry first = snapshot.getEntries().get(0).getIdentifier().equals("first")
+                ? snapshot.getEntries().get(0)
+                : snapshot.getEntries().get(1);
+        RegistrySnapshot.Entry second = first == snapshot.getEntries().get(0)
+                ? snapshot.getEntries().get(1)
+                : snapshot.getEntries().get(0);
+        MatcherAssert.assertThat(first.getFile(), Is.is(new File("First.java").getAbsoluteFile()));
+        MatcherAssert.assertThat(first.getClassName(), Is.is("org.example.first"));
+        MatcherAssert.assertThat(first.getBlobId(), Is.is(registry.getRegisteredAlgorithm(new File("First.java")).getBlobId()));
+        MatcherAssert.assertThat(Arrays.equals(first.getClasses().get("org.example.second"), new byte[] {4, 5}), Is.is(true));
+        MatcherAssert.assertThat(first.hasDescription(), Is.is(true));
+        MatcherAssert.assertThat(first.getDescription(), IsNull.notNullValue());
+        // bytecode compiled in the same run is written and restored once
+        MatcherAssert.assertThat(first.getClasses() == second.getClasses(), Is.is(true));
+    }
+
+    @Test
+    public void algorithmsWithoutBytecodeAreNotWritten() throws IOException {
+        AlgorithmRegistry registry = AlgorithmRegistry.EMPTY.toBuilder()
+                .put(createAlgorithm("Algorithm.java", "algorithm", getClass().getClassLoader()))
+                .build();
+        File snapshotFile = new File(testRoot.getRoot(), "registry.snapshot");
+
+        RegistrySnapshot.write(snapshotFile, ObjectId.zeroId(), registry);
+
+        MatcherAssert.assertThat(RegistrySnapshot.read(snapshotFile).getEntries().isEmpty(), Is.is(true));
+    }
+
+    @Test
+    public void descriptionsNotBuiltYetAreNotWritten() throws IOException, XmlException {
+        CachedProcessDescription lazyDescription = new CachedProcessDescription(() -> {
+            throw new AssertionError("description must not be built for the snapshot");
+        });
+        AlgorithmRegistry registry = AlgorithmRegistry.EMPTY.toBuilder()
+                .put(createAlgorithm("Algorithm.java", "algorithm", new BytecodeClassLoader(null, new HashMap<>()), lazyDescription))
+                .build();
+        File snapshotFile = new File(testRoot.getRoot(), "registry.snapshot");
+
+        RegistrySnapshot.write(snapshotFile, ObjectId.zeroId(), registry);
+
+        RegistrySnapshot.Entry entry = RegistrySnapshot.read(snapshotFile).getEntries().get(0);
+        MatcherAssert.assertThat(entry.hasDescription(), Is.is(false));
+        MatcherAssert.assertThat(entry.getDescription(), IsNull.nullValue());
+    }
+
+    @Test
+    public void missingSnapshot() throws IOException {
+        MatcherAssert.assertThat(RegistrySnapshot.read(new File(testRoot.getRoot(), "missing.snapshot")), IsNull.nullValue());
+    }
+
+    @Test
+    public void restoredAlgorithmIsInstantiatedOnFirstAccess() {
+        IAlgorithm algorithm = Mockito.mock(IAlgorithm.class);
+        RegisteredAlgorithm restored = new RegisteredAlgorithm(new File("Algorithm.java"), "algorithm", "org.example.Algorithm",
+                () -> algorithm, new CachedProcessDescription(new ProcessDescription()), null, ObjectId.zeroId());
+
+        MatcherAssert.assertThat(restored.getIdentifier(), Is.is("algorithm"));
+        MatcherAssert.assertThat(restored.isInstantiated(), Is.is(false));
+        MatcherAssert.assertThat(restored.getAlgorithm(), Is.is(algorithm));
+        MatcherAssert.assertThat(restored.isInstantiated(), Is.is(true));
+    }
+
+}
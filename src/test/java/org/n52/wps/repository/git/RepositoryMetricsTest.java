@@ -0,0 +1,154 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.n52.wps.server.IAlgorithm;
+import org.n52.wps.server.ProcessDescription;
+
+public class RepositoryMetricsTest {
+
+    @Rule
+    public TestRepositories testRoot = new TestRepositories();
+
+    private final AtomicReference<AlgorithmRegistry> registry = new AtomicReference<>(AlgorithmRegistry.EMPTY);
+
+    private final AlgorithmFailures failures = new AlgorithmFailures();
+
+    private final RepositoryMetrics metrics = new RepositoryMetrics(registry::get, () -> null, failures::getFailures);
+
+    @After
+    public void unregister() {
+        metrics.unregister();
+    }
+
+    @Test
+    public void recordsDurationsInMillis() {
+        metrics.recordCompile(TimeUnit.MILLISECONDS.toNanos(30));
+        metrics.recordCompile(TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.recordAlgorithmLoad("slow", TimeUnit.MILLISECONDS.toNanos(200));
+        metrics.recordAlgorithmLoad("fast", TimeUnit.MILLISECONDS.toNanos(2));
+        metrics.removeAlgorithm("fast");
+
+        MatcherAssert.assertThat(metrics.getCompileCount(), Is.is(2L));
+        MatcherAssert.assertThat(metrics.getCompileTimeTotal(), Is.is(40L));
+        MatcherAssert.assertThat(metrics.getCompileTimeMax(), Is.is(30L));
+        MatcherAssert.assertThat(metrics.getCompileTimeLast(), Is.is(10L));
+        MatcherAssert.assertThat(metrics.getAlgorithmLoadCount(), Is.is(2L));
+        MatcherAssert.assertThat(metrics.getAlgorithmLoadTimes(), Is.is(Collections.singletonMap("slow", 200L)));
+    }
+
+    @Test
+    public void countsFailuresByFile() {
+        File algorithm = new File("Algorithm.java");
+        metrics.recordAlgorithmFailure(algorithm);
+        metrics.recordAlgorithmFailure(algorithm);
+
+        MatcherAssert.assertThat(metrics.getAlgorithmFailureCount(), Is.is(2L));
+        MatcherAssert.assertThat(metrics.getAlgorithmFailures(), Is.is(Collections.singletonMap(algorithm.getPath(), 2L)));
+    }
+
+    @Test
+    public void syncBytesAreThePackGrowth() throws GitAPIException, IOException {
+        File remote = testRoot.newFolder("remote");
+        try (Git developer = Git.init().setDirectory(remote).call()) {
+            testRoot.commit(developer, "Algorithm.java", "public class Algorithm {}");
+            try (Git node = Git.cloneRepository().setURI(remote.toURI().toString()).setDirectory(testRoot.newFolder("node")).call()) {
+                metrics.recordSync(0, node.getRepository());
+                long cloned = metrics.getSyncBytesLast();
+
+                testRoot.commit(developer, "Helper.java", "public class Helper {}");
+                node.fetch().call();
+                metrics.recordSync(0, node.getRepository());
+
+                MatcherAssert.assertThat(cloned > 0, Is.is(true));
+                MatcherAssert.assertThat(metrics.getSyncBytesLast() > 0, Is.is(true));
+                MatcherAssert.assertThat(metrics.getSyncBytesTotal(), Is.is(cloned + metrics.getSyncBytesLast()));
+                MatcherAssert.assertThat(metrics.getSyncCount(), Is.is(2L));
+            }
+        }
+    }
+
+    @Test
+    public void exposesRegistryViaJmx() throws JMException {
+        IAlgorithm algorithm = Mockito.mock(IAlgorithm.class);
+        Mockito.when(algorithm.getWellKnownName()).thenReturn("algorithm");
+        registry.set(AlgorithmRegistry.EMPTY.toBuilder()
+                .put(new RegisteredAlgorithm(new File("Algorithm.java"), algorithm, new ProcessDescription(), null))
+                .build());
+        metrics.recordDiff(3);
+
+        metrics.register(testRoot.getRoot().getAbsolutePath());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.n52.wps.repository.git:type=GitAlgorithmRepository,name="
+                + ObjectName.quote(testRoot.getRoot().getAbsolutePath()));
+        MatcherAssert.assertThat(server.getAttribute(name, "RegistrySize"), Is.is((Object) 1));
+        MatcherAssert.assertThat(server.getAttribute(name, "RegistryGeneration"), Is.is((Object) 1L));
+        MatcherAssert.assertThat(server.getAttribute(name, "DiffEntriesLast"), Is.is((Object) 3L));
+        MatcherAssert.assertThat(server.getAttribute(name, "PendingChangeCount"), Is.is((Object) 0));
+    }
+
+    @Test
+    public void exposesFailedAlgorithmsViaJmx() throws JMException {
+        failures.record(new File("Broken.java"), ObjectId.zeroId(), AlgorithmFailure.Kind.CONTENT, "';' expected");
+
+        metrics.register(testRoot.getRoot().getAbsolutePath());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.n52.wps.repository.git:type=GitAlgorithmRepository,name="
+                + ObjectName.quote(testRoot.getRoot().getAbsolutePath()));
+        CompositeData[] failed = (CompositeData[]) server.getAttribute(name, "FailedAlgorithms");
+        MatcherAssert.assertThat(failed.length, Is.is(1));
+        MatcherAssert.assertThat(failed[0].get("path"), Is.is((Object) "Broken.java"));
+        MatcherAssert.assertThat(failed[0].get("kind"), Is.is((Object) "CONTENT"));
+        MatcherAssert.assertThat(failed[0].get("diagnostics"), Is.is((Object) "';' expected"));
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class SourceDependenciesTest {
+
+    @Rule
+    public TestRepositories testRoot = new TestRepositories();
+
+    private SourceTree sourceTree;
+
+    @Before
+    public void setup() throws IOException {
+        sourceTree = new WorkingCopySourceTree(testRoot.getRoot());
+    }
+
+    private Map<File, Set<File>> compile(File... sources) {
+        CompilationResult result = new InMemoryJavaCompiler(sourceTree).compile(Arrays.asList(sources));
+        return SourceDependencies.of(result, sourceTree);
+    }
+
+    @Test
+    public void referencedClassesAreDependencies() throws IOException {
+        File helper = testRoot.write(testRoot.getRoot(), "org/example/util/Helper.java",
+                "package org.example.util; public class Helper { public static int twice(int value) { return 2 * value; } }");
+        File base = testRoot.write(testRoot.getRoot(), "org/example/Base.java", "package org.example; public abstract class Base {}");
+        File algorithm = testRoot.write(testRoot.getRoot(), "org/example/Algorithm.java", "package org.example; "
+                + "public class Algorithm extends Base { int run() { return org.example.util.Helper.twice(1); } }");
+
+        Map<File, Set<File>> dependencies = compile(algorithm);
+
+        MatcherAssert.assertThat(dependencies.get(algorithm), Is.is(new HashSet<>(Arrays.asList(helper, base))));
+        MatcherAssert.assertThat(dependencies.get(helper), Is.is(Collections.<File>emptySet()));
+    }
+
+    @Test
+    public void inlinedConstantsAreDependencies() throws IOException {
+        File constants = testRoot.write(testRoot.getRoot(), "Constants.java", "public class Constants { public static final String NAME = \"name\"; }");
+        File algorithm = testRoot.write(testRoot.getRoot(), "Algorithm.java", "public class Algorithm { String name() { return Constants.NAME; } }");
+        File other = testRoot.write(testRoot.getRoot(), "Other.java", "public class Other { String name() { return \"other\"; } }");
+
+        Map<File, Set<File>> dependencies = compile(algorithm, constants, other);
+
+        MatcherAssert.assertThat(dependencies.get(algorithm), Is.is(Collections.singleton(constants)));
+        MatcherAssert.assertThat(dependencies.get(other), Is.is(Collections.<File>emptySet()));
+    }
+
+    @Test
+    public void failedSourcesDependOnMentionedSources() throws IOException {
+        File helper = testRoot.write(testRoot.getRoot(), "Helper.java", "public class Helper {}");
+        File broken = testRoot.write(testRoot.getRoot(), "Broken.java", "public class Broken { Helper helper = new Helper(1); }");
+
+        Map<File, Set<File>> dependencies = compile(broken, helper);
+
+        MatcherAssert.assertThat(dependencies.get(broken), Is.is(Collections.singleton(helper)));
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.errors.CheckoutConflictException;
+import org.eclipse.jgit.lib.Constants;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class SparseCheckoutTest {
+
+    @Rule
+    public TestRepositories testRoot = new TestRepositories();
+
+    private Git developer;
+
+    private Git node;
+
+    private SparseCheckout sparseCheckout;
+
+    @Before
+    public void setup() throws GitAPIException, IOException {
+        File remote = testRoot.initBare("remote.git");
+        developer = testRoot.clone(remote, "developer");
+        testRoot.write(developer, "org/example/Algorithm.java", "public class Algorithm {}");
+        testRoot.write(developer, "data/large.tif", "lots of test data");
+        testRoot.commitAndPush(developer, ".");
+
+        node = testRoot.track(Git.cloneRepository()
+                .setURI(remote.toURI().toString())
+                .setDirectory(testRoot.newFolder("node"))
+                .setNoCheckout(true)
+                .call());
+        sparseCheckout = new SparseCheckout(node.getRepository(), Constants.DEFAULT_REMOTE_NAME, Pattern.compile(".*\\.java"));
+        sparseCheckout.checkout("master");
+    }
+
+    private File nodeFile(String filename) {
+        return new File(node.getRepository().getWorkTree(), filename);
+    }
+
+    @Test
+    public void onlyMatchingFilesAreCheckedOut() throws IOException {
+        MatcherAssert.assertThat(nodeFile("org/example/Algorithm.java").isFile(), Is.is(true));
+        MatcherAssert.assertThat(nodeFile("data/large.tif").exists(), Is.is(false));
+        MatcherAssert.assertThat(node.getRepository().getBranch(), Is.is("master"));
+
+        DirCache index = node.getRepository().readDirCache();
+        MatcherAssert.assertThat(index.getEntryCount(), Is.is(1));
+        MatcherAssert.assertThat(index.getEntry(0).getPathString(), Is.is("org/example/Algorithm.java"));
+    }
+
+    @Test
+    public void updateWritesOnlyMatchingChanges() throws IOException, GitAPIException {
+        testRoot.write(developer, "org/example/Algorithm.java", "public class Algorithm { int value; }");
+        testRoot.write(developer, "org/example/Added.java", "public class Added {}");
+        testRoot.write(developer, "data/large.tif", "even more test data");
+        testRoot.commitAndPush(developer, ".");
+        node.fetch().call();
+
+        List<DiffEntry> changes = sparseCheckout.update();
+
+        MatcherAssert.assertThat(changes.size(), Is.is(2));
+        MatcherAssert.assertThat(new String(Files.readAllBytes(nodeFile("org/example/Algorithm.java").toPath()), StandardCharsets.UTF_8),
+                Is.is("public class Algorithm { int value; }"));
+        MatcherAssert.assertThat(nodeFile("org/example/Added.java").isFile(), Is.is(true));
+        MatcherAssert.assertThat(nodeFile("data/large.tif").exists(), Is.is(false));
+        MatcherAssert.assertThat(node.getRepository().resolve(Constants.HEAD),
+                Is.is(developer.getRepository().resolve(Constants.HEAD)));
+        MatcherAssert.assertThat(node.getRepository().readDirCache().getEntryCount(), Is.is(2));
+        MatcherAssert.assertThat(sparseCheckout.update().isEmpty(), Is.is(true));
+    }
+
+    @Test(expected = CheckoutConflictException.class)
+    public void localChangesPreventUpdate() throws IOException, GitAPIException {
+        testRoot.write(developer, "org/example/Algorithm.java", "public class Algorithm { int value; }");
+        testRoot.commitAndPush(developer, ".");
+        node.fetch().call();
+        testRoot.write(node, "org/example/Algorithm.java", "public class Algorithm { String local; }");
+
+        sparseCheckout.update();
+    }
+
+}
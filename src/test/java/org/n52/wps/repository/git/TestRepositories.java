@@ -0,0 +1,136 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Temporary folder providing the fixtures shared by the tests: writing files
+ * and committing them to git repositories within the folder. Repositories
+ * created or opened through the rule are closed after each test.
+ */
+public class TestRepositories extends TemporaryFolder {
+
+    private final List<Git> repositories = new ArrayList<>();
+
+    /**
+     * @param name the folder name
+     * @return a new repository with a working copy
+     */
+    public Git init(String name) throws IOException, GitAPIException {
+        return track(Git.init().setDirectory(newFolder(name)).call());
+    }
+
+    /**
+     * @param name the folder name
+     * @return the directory of a new bare repository
+     */
+    public File initBare(String name) throws IOException, GitAPIException {
+        File directory = newFolder(name);
+        Git.init().setBare(true).setDirectory(directory).call().close();
+        return directory;
+    }
+
+    /**
+     * @param remote the directory of the repository to clone
+     * @param name the folder name
+     * @return the clone with its working copy checked out
+     */
+    public Git clone(File remote, String name) throws IOException, GitAPIException {
+        return track(Git.cloneRepository()
+                .setURI(remote.toURI().toString())
+                .setDirectory(newFolder(name))
+                .call());
+    }
+
+    /**
+     * Closes the repository after the test.
+     */
+    public Git track(Git git) {
+        repositories.add(git);
+        return git;
+    }
+
+    public File write(File root, String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    public File write(Git git, String path, String content) throws IOException {
+        return write(git.getRepository().getWorkTree(), path, content);
+    }
+
+    /**
+     * Commits the current content of a file.
+     */
+    public RevCommit commit(Git git, String path) throws GitAPIException {
+        git.add().addFilepattern(path).call();
+        return git.commit().setMessage("update " + path).call();
+    }
+
+    public RevCommit commit(Git git, String path, String content) throws IOException, GitAPIException {
+        write(git, path, content);
+        return commit(git, path);
+    }
+
+    /**
+     * Commits the current content of a file, or all files below a directory,
+     * and pushes the commit.
+     */
+    public RevCommit commitAndPush(Git git, String path) throws GitAPIException {
+        RevCommit commit = commit(git, path);
+        git.push().call();
+        return commit;
+    }
+
+    public RevCommit commitAndPush(Git git, String path, String content) throws IOException, GitAPIException {
+        write(git, path, content);
+        return commitAndPush(git, path);
+    }
+
+    @Override
+    protected void after() {
+        repositories.forEach(Git::close);
+        repositories.clear();
+        super.after();
+    }
+
+}
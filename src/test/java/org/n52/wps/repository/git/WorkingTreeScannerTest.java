@@ -0,0 +1,100 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.core.Is;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class WorkingTreeScannerTest {
+
+    @Rule
+    public TestRepositories workingCopy = new TestRepositories();
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = workingCopy.getRoot();
+        workingCopy.write(root, "Root.java", "");
+        workingCopy.write(root, "readme.txt", "");
+        workingCopy.write(root, "org/example/Nested.java", "");
+        workingCopy.write(root, "org/example/deep/Deeper.java", "");
+        workingCopy.write(root, ".git/objects/Object.java", "");
+        workingCopy.write(root, "build/Generated.java", "");
+        workingCopy.write(root, "org/example/Ignored.java", "");
+        workingCopy.write(root, "org/example/Excluded.java", "");
+        workingCopy.write(root, "org/example/Reincluded.java", "");
+        workingCopy.write(root, ".gitignore", "build/\nReincluded.java\n");
+        workingCopy.write(root, "org/example/.gitignore", "Ignored.java\n!Reincluded.java\n");
+        workingCopy.write(root, ".git/info/exclude", "Excluded.java\n");
+    }
+
+    @Test
+    public void testScanFindsMatchingFilesInSubdirectories() {
+        Set<String> found = scan(".*\\.java");
+        MatcherAssert.assertThat(found.contains("Root.java"), Is.is(true));
+        MatcherAssert.assertThat(found.contains("org/example/Nested.java"), Is.is(true));
+        MatcherAssert.assertThat(found.contains("org/example/deep/Deeper.java"), Is.is(true));
+        MatcherAssert.assertThat(found.contains("readme.txt"), Is.is(false));
+    }
+
+    @Test
+    public void testScanSkipsGitDirectory() {
+        MatcherAssert.assertThat(scan(".*\\.java").contains(".git/objects/Object.java"), Is.is(false));
+    }
+
+    @Test
+    public void testScanRespectsIgnoreFiles() {
+        Set<String> found = scan(".*\\.java");
+        MatcherAssert.assertThat(found.contains("build/Generated.java"), Is.is(false));
+        MatcherAssert.assertThat(found.contains("org/example/Ignored.java"), Is.is(false));
+        MatcherAssert.assertThat(found.contains("org/example/Excluded.java"), Is.is(false));
+        MatcherAssert.assertThat(found.contains("org/example/Reincluded.java"), Is.is(true));
+        MatcherAssert.assertThat(found.size(), Is.is(4));
+    }
+
+    private Set<String> scan(String filenameRegex) {
+        List<File> files = new WorkingTreeScanner(root, filenameRegex).scan();
+        Set<String> relativePaths = new HashSet<>();
+        for (File file : files) {
+            relativePaths.add(root.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
+        }
+        return relativePaths;
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.n52.wps.repository.git.GitAlgorithmRepository;
+import org.n52.wps.repository.git.GitAlgorithmsRepositoryConfigException;
+import org.n52.wps.repository.git.InitializationState;
+import org.n52.wps.repository.git.UpdateGitAlgorithmsRepositoryException;
+import org.n52.wps.repository.git.module.GitAlgorithmRepositoryCM;
+import org.n52.wps.webapp.api.ConfigurationModule;
+import org.n52.wps.webapp.api.types.BooleanConfigurationEntry;
+import org.n52.wps.webapp.api.types.ConfigurationEntry;
+import org.n52.wps.webapp.api.types.IntegerConfigurationEntry;
+import org.n52.wps.webapp.api.types.StringConfigurationEntry;
+
+/**
+ * Creates {@link GitAlgorithmRepository repositories} for benchmarks without
+ * a running WPS. Background fetching and change detection are disabled.
+ */
+public final class BenchmarkRepositories {
+
+    private static final long INITIALIZATION_TIMEOUT_MINUTES = 10;
+
+    private BenchmarkRepositories() {
+    }
+
+    /**
+     * @param remote the repository to clone
+     * @param local the local repository directory
+     * @param warmStart whether to restore the registry snapshot
+     * @param instancePoolSize the maximum number of instances per algorithm
+     * @return the initialized repository
+     * @throws IllegalStateException if the repository could not be initialized
+     */
+    public static GitAlgorithmRepository open(File remote, File local, boolean warmStart, int instancePoolSize)
+            throws UpdateGitAlgorithmsRepositoryException, GitAlgorithmsRepositoryConfigException, InterruptedException {
+        GitAlgorithmRepository repository = new GitAlgorithmRepository(configure(remote, local, warmStart, instancePoolSize), false);
+        if ( !repository.awaitInitialization(INITIALIZATION_TIMEOUT_MINUTES, TimeUnit.MINUTES)
+                || repository.getInitializationState() != InitializationState.READY) {
+            repository.shutdown();
+            throw new IllegalStateException("Repository " + local + " is " + repository.getInitializationState());
+        }
+        return repository;
+    }
+
+    private static ConfigurationModule configure(File remote, File local, boolean warmStart, int instancePoolSize) {
+        final List<? extends ConfigurationEntry<?>> entries = Arrays.asList(
+                new StringConfigurationEntry(GitAlgorithmRepositoryCM.repositoryURLKey, "", "", true, remote.toURI().toString()),
+                new StringConfigurationEntry(GitAlgorithmRepositoryCM.localRepositoryDirectoryKey, "", "", true, local.getAbsolutePath()),
+                new StringConfigurationEntry(GitAlgorithmRepositoryCM.fileNameRegexKey, "", "", true, "^.*\\.java$"),
+                new IntegerConfigurationEntry(GitAlgorithmRepositoryCM.workerThreadsKey, "", "", true,
+                        Runtime.getRuntime().availableProcessors()),
+                new IntegerConfigurationEntry(GitAlgorithmRepositoryCM.fetchIntervalKey, "", "", true, 0),
+                new BooleanConfigurationEntry(GitAlgorithmRepositoryCM.warmStartKey, "", "", false, warmStart),
+                new IntegerConfigurationEntry(GitAlgorithmRepositoryCM.instancePoolSizeKey, "", "", false, instancePoolSize));
+        return new GitAlgorithmRepositoryCM() {
+            @Override
+            public List<? extends ConfigurationEntry<?>> getConfigurationEntries() {
+                return entries;
+            }
+        };
+    }
+
+    /**
+     * Deletes the local repository along with the bytecode cache and the
+     * registry snapshot kept next to it.
+     *
+     * @param local the local repository directory
+     * @throws IOException if deleting fails
+     */
+    public static void deleteLocal(File local) throws IOException {
+        SyntheticRepositoryGenerator.delete(local);
+        SyntheticRepositoryGenerator.delete(new File(local.getPath() + "-bytecode-cache"));
+        new File(local.getPath() + "-registry.snapshot").delete();
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.n52.wps.repository.git.BytecodeCache;
+import org.n52.wps.repository.git.CachingJavaCompiler;
+import org.n52.wps.repository.git.CompilationResult;
+import org.n52.wps.repository.git.GitBlobs;
+import org.n52.wps.repository.git.JavaAlgorithmCompiler;
+import org.n52.wps.repository.git.WorkingTreeScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how detecting changed sources against the bytecode cache scales
+ * with the number of algorithms and the number of changed sources. Every
+ * cached algorithm depends on all sources of its compilation batch, as
+ * recorded by the {@link CachingJavaCompiler}. Changed sources are passed to
+ * a compiler doing nothing, so that only change detection is measured.
+ * <p>
+ * Run with <code>mvn -Pbenchmark verify -Dbenchmark=ChangeDetectionBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ChangeDetectionBenchmark {
+
+    private static final String FINGERPRINT = "change-detection-benchmark";
+
+    @Param({"100", "500", "2000"})
+    public int algorithms;
+
+    @Param({"0", "10", "100"})
+    public int changedSources;
+
+    @Param({"20"})
+    public int batchSize;
+
+    private File root;
+
+    private File workingCopy;
+
+    private File cacheDirectory;
+
+    private List<File> sources;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException, GitAPIException {
+        root = Files.createTempDirectory("change-detection-benchmark").toFile();
+        workingCopy = new SyntheticRepositoryGenerator(1, algorithms, 0, 0).generate(new File(root, "repository"));
+        cacheDirectory = new File(root, "cache");
+        sources = new WorkingTreeScanner(workingCopy, "^.*\\.java$").scan();
+        Collections.sort(sources);
+
+        BytecodeCache cache = new BytecodeCache(cacheDirectory, FINGERPRINT);
+        for (int batchStart = 0; batchStart < sources.size(); batchStart += batchSize) {
+            List<File> batch = sources.subList(batchStart, Math.min(batchStart + batchSize, sources.size()));
+            Map<String, ObjectId> dependencies = new HashMap<>();
+            for (File source : batch) {
+                dependencies.put(toRelativePath(source), GitBlobs.idOf(source));
+            }
+            for (File source : batch) {
+                Map<String, ObjectId> otherSources = new HashMap<>(dependencies);
+                otherSources.remove(toRelativePath(source));
+                cache.store(GitBlobs.idOf(source), Collections.singletonMap(source.getName(), new byte[0]), otherSources);
+            }
+        }
+
+        // spread the changes over the repository
+        int step = Math.max(1, sources.size() / Math.max(1, changedSources));
+        for (int i = 0, changed = 0; i < sources.size() && changed < changedSources; i += step, changed++) {
+            Files.write(sources.get(i).toPath(), "// changed\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        SyntheticRepositoryGenerator.delete(root);
+    }
+
+    @Benchmark
+    public CompilationResult detectChangedSources() {
+        return new CachingJavaCompiler(new NoopCompiler(), cacheDirectory, workingCopy).compile(sources);
+    }
+
+    private String toRelativePath(File source) {
+        return workingCopy.toPath().relativize(source.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    private static class NoopCompiler implements JavaAlgorithmCompiler {
+
+        @Override
+        public CompilationResult compile(Collection<File> sources) {
+            return new CompilationResult();
+        }
+
+        @Override
+        public String getFingerprint() {
+            return FINGERPRINT;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChangeDetectionBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.n52.wps.repository.git.SparseCheckout;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares a full clone with a sparse checkout of algorithm files from a
+ * synthetic repository with large test data files. Besides the clone time the
+ * bytes on disk are reported as secondary metrics.
+ * <p>
+ * Run with <code>mvn -Pbenchmark verify -Dbenchmark=CloneBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CloneBenchmark {
+
+    private static final Pattern ALGORITHM_FILES = Pattern.compile("^.*\\.java$|^.*\\.R$");
+
+    @Param({"50"})
+    public int commits;
+
+    @Param({"200"})
+    public int algorithms;
+
+    @Param({"20"})
+    public int dataFiles;
+
+    @Param({"1048576"})
+    public int dataFileSize;
+
+    private File root;
+
+    private String remoteUri;
+
+    private File target;
+
+    @Setup(Level.Trial)
+    public void generateRepository() throws IOException, GitAPIException {
+        root = Files.createTempDirectory("clone-benchmark").toFile();
+        File remote = new SyntheticRepositoryGenerator(commits, algorithms, dataFiles, dataFileSize)
+                .generate(new File(root, "remote"));
+        remoteUri = remote.toURI().toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteRepository() throws IOException {
+        SyntheticRepositoryGenerator.delete(root);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareTarget() {
+        target = new File(root, "clone");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteTarget() throws IOException {
+        SyntheticRepositoryGenerator.delete(target);
+    }
+
+    @Benchmark
+    public void fullClone(DiskFootprint footprint) throws GitAPIException, IOException {
+        Git.cloneRepository()
+                .setURI(remoteUri)
+                .setDirectory(target)
+                .call()
+                .close();
+        footprint.record(target);
+    }
+
+    @Benchmark
+    public void sparseClone(DiskFootprint footprint) throws GitAPIException, IOException {
+        try (Git git = Git.cloneRepository()
+                .setURI(remoteUri)
+                .setDirectory(target)
+                .setNoCheckout(true)
+                .call()) {
+            new SparseCheckout(git.getRepository(), Constants.DEFAULT_REMOTE_NAME, ALGORITHM_FILES)
+                    .checkout(git.getRepository().getBranch());
+        }
+        footprint.record(target);
+    }
+
+    /**
+     * Bytes on disk after a clone, reported next to the clone time.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class DiskFootprint {
+
+        public long workingCopyBytes;
+
+        public long totalBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            workingCopyBytes = 0;
+            totalBytes = 0;
+        }
+
+        void record(File clone) throws IOException {
+            workingCopyBytes += SyntheticRepositoryGenerator.sizeOf(clone, false);
+            totalBytes += SyntheticRepositoryGenerator.sizeOf(clone, true);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CloneBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.n52.wps.repository.git.GitAlgorithmRepository;
+import org.n52.wps.repository.git.GitAlgorithmsRepositoryConfigException;
+import org.n52.wps.repository.git.UpdateGitAlgorithmsRepositoryException;
+import org.n52.wps.server.IAlgorithm;
+import org.n52.wps.server.ProcessDescription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the throughput of algorithm and process description lookups by
+ * concurrent requests, cycling through all algorithms of a repository.
+ * <p>
+ * Run with <code>mvn -Pbenchmark verify -Dbenchmark=LookupBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class LookupBenchmark {
+
+    @Param({"500"})
+    public int algorithms;
+
+    @Param({"0", "8"})
+    public int instancePoolSize;
+
+    private File root;
+
+    private GitAlgorithmRepository repository;
+
+    private String[] identifiers;
+
+    @Setup(Level.Trial)
+    public void openRepository() throws IOException, GitAPIException, UpdateGitAlgorithmsRepositoryException,
+            GitAlgorithmsRepositoryConfigException, InterruptedException {
+        root = Files.createTempDirectory("lookup-benchmark").toFile();
+        File remote = new SyntheticRepositoryGenerator(1, algorithms, 0, 0, true).generate(new File(root, "remote"));
+        repository = BenchmarkRepositories.open(remote, new File(root, "local"), false, instancePoolSize);
+        identifiers = repository.getAlgorithmNames().toArray(new String[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteRepository() throws IOException {
+        repository.shutdown();
+        SyntheticRepositoryGenerator.delete(root);
+    }
+
+    /**
+     * Each thread cycles through the algorithms on its own.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        String nextIdentifier(String[] identifiers) {
+            next = (next + 1) % identifiers.length;
+            return identifiers[next];
+        }
+    }
+
+    @Benchmark
+    public IAlgorithm getAlgorithm(Cursor cursor) {
+        return repository.getAlgorithm(cursor.nextIdentifier(identifiers));
+    }
+
+    @Benchmark
+    public ProcessDescription getProcessDescription(Cursor cursor) {
+        return repository.getProcessDescription(cursor.nextIdentifier(identifiers));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LookupBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+}
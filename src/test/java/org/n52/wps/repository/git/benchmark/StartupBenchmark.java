@@ -0,0 +1,133 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.n52.wps.repository.git.GitAlgorithmRepository;
+import org.n52.wps.repository.git.GitAlgorithmsRepositoryConfigException;
+import org.n52.wps.repository.git.UpdateGitAlgorithmsRepositoryException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the time until all algorithms of a repository are loaded. A cold
+ * start clones the repository and compiles all algorithms without bytecode
+ * cache and registry snapshot, a warm restart finds the local repository, the
+ * bytecode cache and the snapshot written on the previous shutdown.
+ * <p>
+ * Run with <code>mvn -Pbenchmark verify -Dbenchmark=StartupBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    @Param({"100", "500"})
+    public int algorithms;
+
+    @Param({"false", "true"})
+    public boolean warmStart;
+
+    private File root;
+
+    private File remote;
+
+    private File local;
+
+    private GitAlgorithmRepository repository;
+
+    @Setup(Level.Trial)
+    public void generateRepository() throws IOException, GitAPIException, UpdateGitAlgorithmsRepositoryException,
+            GitAlgorithmsRepositoryConfigException, InterruptedException {
+        root = Files.createTempDirectory("startup-benchmark").toFile();
+        remote = new SyntheticRepositoryGenerator(10, algorithms, 0, 0, true).generate(new File(root, "remote"));
+        local = new File(root, "local");
+        if (warmStart) {
+            // the first start leaves the local repository, cache and snapshot behind
+            BenchmarkRepositories.open(remote, local, true, 0).shutdown();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteRepository() throws IOException {
+        SyntheticRepositoryGenerator.delete(root);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareLocal() throws IOException {
+        if ( !warmStart) {
+            BenchmarkRepositories.deleteLocal(local);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void shutdown() {
+        if (repository != null) {
+            repository.shutdown();
+            repository = null;
+        }
+    }
+
+    @Benchmark
+    public GitAlgorithmRepository start() throws UpdateGitAlgorithmsRepositoryException, GitAlgorithmsRepositoryConfigException,
+            InterruptedException {
+        repository = BenchmarkRepositories.open(remote, local, warmStart, 0);
+        return repository;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StartupBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * ﻿Copyright (C) 2018 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *       • Apache License, version 2.0
+ *       • Apache Software License, version 1.0
+ *       • GNU Lesser General Public License, version 3
+ *       • Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *       • Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.wps.repository.git.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+/**
+ * Generates git repositories resembling a grown algorithm repository: a
+ * history of commits, each changing some algorithm sources and rewriting some
+ * (incompressible) test data files. Algorithms are plain classes or annotated
+ * WPS algorithms which can be loaded by the repository.
+ */
+public class SyntheticRepositoryGenerator {
+
+    private final int commits;
+
+    private final int algorithms;
+
+    private final int dataFiles;
+
+    private final int dataFileSize;
+
+    private final boolean wpsAlgorithms;
+
+    private int revision;
+
+    private final Random random = new Random(42);
+
+    /**
+     * @param commits number of commits
+     * @param algorithms number of algorithm sources, spread over packages
+     * @param dataFiles number of test data files
+     * @param dataFileSize size of each test data file in bytes
+     */
+    public SyntheticRepositoryGenerator(int commits, int algorithms, int dataFiles, int dataFileSize) {
+        this(commits, algorithms, dataFiles, dataFileSize, false);
+    }
+
+    /**
+     * @param commits number of commits
+     * @param algorithms number of algorithm sources, spread over packages
+     * @param dataFiles number of test data files
+     * @param dataFileSize size of each test data file in bytes
+     * @param wpsAlgorithms whether to generate annotated WPS algorithms instead
+     * of plain classes
+     */
+    public SyntheticRepositoryGenerator(int commits, int algorithms, int dataFiles, int dataFileSize, boolean wpsAlgorithms) {
+        this.commits = commits;
+        this.algorithms = algorithms;
+        this.dataFiles = dataFiles;
+        this.dataFileSize = dataFileSize;
+        this.wpsAlgorithms = wpsAlgorithms;
+    }
+
+    /**
+     * @param directory the directory to create the repository in
+     * @return the directory of the generated (non-bare) repository
+     * @throws IOException if writing files fails
+     * @throws GitAPIException if committing fails
+     */
+    public File generate(File directory) throws IOException, GitAPIException {
+        try (Git git = Git.init().setDirectory(directory).call()) {
+            for (int commit = 0; commit < commits; commit++, revision++) {
+                for (int i = 0; i < algorithms; i++) {
+                    if (commit == 0 || random.nextInt(10) == 0) {
+                        writeAlgorithm(directory, i, revision);
+                    }
+                }
+                for (int i = 0; i < dataFiles; i++) {
+                    if (commit == 0 || random.nextInt(4) == 0) {
+                        writeDataFile(directory, i);
+                    }
+                }
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("Commit " + commit).call();
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Commits a change of the given number of algorithms, spread over all
+     * algorithms of a repository generated before.
+     *
+     * @param directory the directory of the generated repository
+     * @param changedAlgorithms number of algorithms to change
+     * @throws IOException if writing files fails
+     * @throws GitAPIException if committing fails
+     */
+    public void commitChanges(File directory, int changedAlgorithms) throws IOException, GitAPIException {
+        int step = Math.max(1, algorithms / Math.max(1, changedAlgorithms));
+        for (int i = 0, changed = 0; i < algorithms && changed < changedAlgorithms; i += step, changed++) {
+            writeAlgorithm(directory, i, revision);
+        }
+        try (Git git = Git.open(directory)) {
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("Change " + changedAlgorithms + " algorithm(s)").call();
+        }
+        revision++;
+    }
+
+    private void writeAlgorithm(File directory, int index, int revision) throws IOException {
+        String packageName = "org.n52.wps.algorithms.group" + (index % 10);
+        String className = "Algorithm" + index;
+        String source = wpsAlgorithms
+                ? createWpsAlgorithm(packageName, className, revision)
+                : createPlainClass(packageName, className, revision);
+        write(new File(directory, packageName.replace('.', '/') + "/" + className + ".java"), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String createPlainClass(String packageName, String className, int revision) {
+        return "package " + packageName + ";\n"
+                + "\n"
+                + "public class " + className + " {\n"
+                + "    // revision " + revision + "\n"
+                + "    public int compute(int value) {\n"
+                + "        return value * " + random.nextInt(1000) + ";\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    private String createWpsAlgorithm(String packageName, String className, int revision) {
+        return "package " + packageName + ";\n"
+                + "\n"
+                + "import org.n52.wps.algorithm.annotation.Algorithm;\n"
+                + "import org.n52.wps.algorithm.annotation.Execute;\n"
+                + "import org.n52.wps.algorithm.annotation.LiteralDataInput;\n"
+                + "import org.n52.wps.algorithm.annotation.LiteralDataOutput;\n"
+                + "import org.n52.wps.server.AbstractAnnotatedAlgorithm;\n"
+                + "\n"
+                + "@Algorithm(identifier = \"" + packageName + "." + className + "\", version = \"1.0." + revision + "\")\n"
+                + "public class " + className + " extends AbstractAnnotatedAlgorithm {\n"
+                + "\n"
+                + "    private int value;\n"
+                + "\n"
+                + "    private int result;\n"
+                + "\n"
+                + "    @LiteralDataInput(identifier = \"value\")\n"
+                + "    public void setValue(int value) {\n"
+                + "        this.value = value;\n"
+                + "    }\n"
+                + "\n"
+                + "    @LiteralDataOutput(identifier = \"result\")\n"
+                + "    public int getResult() {\n"
+                + "        return result;\n"
+                + "    }\n"
+                + "\n"
+                + "    @Execute\n"
+                + "    public void compute() {\n"
+                + "        result = value * " + random.nextInt(1000) + ";\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    private void writeDataFile(File directory, int index) throws IOException {
+        byte[] content = new byte[dataFileSize];
+        random.nextBytes(content);
+        write(new File(directory, "testdata/data" + index + ".bin"), content);
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content);
+    }
+
+    /**
+     * @param directory the directory to measure
+     * @param includeGitDirectory whether to include the <code>.git</code>
+     * directory
+     * @return the size of all files within the directory in bytes
+     * @throws IOException if walking the directory fails
+     */
+    public static long sizeOf(File directory, final boolean includeGitDirectory) throws IOException {
+        final AtomicLong size = new AtomicLong();
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return !includeGitDirectory && ".git".equals(dir.getFileName().toString())
+                        ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                size.addAndGet(attrs.size());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size.get();
+    }
+
+    /**
+     * @param directory the directory to delete including its contents
+     * @throws IOException if deleting fails
+     */
+    public static void delete(File directory) throws IOException {
+        if ( !directory.exists()) {
+            return;
+        }
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}